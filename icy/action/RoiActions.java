@@ -930,10 +930,17 @@ public class RoiActions
                             return false;
                     }
 
-                    for (ROI roi : sequence.getSelectedROIs())
-                        DataIteratorUtil.set(new SequenceDataIterator(sequence, roi, true), value);
-
-                    sequence.dataChanged();
+                    // modified images notify their changes (only modified data is used to update bounds)
+                    sequence.beginUpdate();
+                    try
+                    {
+                        for (ROI roi : sequence.getSelectedROIs())
+                            DataIteratorUtil.set(new SequenceDataIterator(sequence, roi, true), value);
+                    }
+                    finally
+                    {
+                        sequence.endUpdate();
+                    }
 
                     // no undo, clear undo manager after modification
                     if (!canUndo)
@@ -990,9 +997,16 @@ public class RoiActions
                         final ROI roiSeq = new ROI5DStackRectangle(sequence.getBounds5D());
                         final ROI roi = roiSeq.getSubtraction(roiUnion);
 
-                        DataIteratorUtil.set(new SequenceDataIterator(sequence, roi), value);
-
-                        sequence.dataChanged();
+                        // modified images notify their changes (only modified data is used to update bounds)
+                        sequence.beginUpdate();
+                        try
+                        {
+                            DataIteratorUtil.set(new SequenceDataIterator(sequence, roi), value);
+                        }
+                        finally
+                        {
+                            sequence.endUpdate();
+                        }
 
                         // no undo, clear undo manager after modification
                         if (!canUndo)
@@ -1113,10 +1113,17 @@ public class SequenceOperationActions
                 {
                     final double value = mainFrame.getMainRibbon().getSequenceOperationTask().getFillValue();
 
-                    for (ROI roi : sequence.getSelectedROIs())
-                        DataIteratorUtil.set(new SequenceDataIterator(sequence, roi, true), value);
-
-                    sequence.dataChanged();
+                    // modified images notify their changes (only modified data is used to update bounds)
+                    sequence.beginUpdate();
+                    try
+                    {
+                        for (ROI roi : sequence.getSelectedROIs())
+                            DataIteratorUtil.set(new SequenceDataIterator(sequence, roi, true), value);
+                    }
+                    finally
+                    {
+                        sequence.endUpdate();
+                    }
 
                     return true;
                 }
@@ -49,7 +49,15 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
@@ -68,6 +76,7 @@ import icy.gui.util.GuiUtil;
 import icy.gui.viewer.Viewer;
 import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageUtil;
+import icy.image.ImageProvider;
 import icy.image.ImageUtil;
 import icy.image.lut.LUT;
 import icy.main.Icy;
@@ -85,11 +94,20 @@ import icy.preferences.XMLPreferences;
 import icy.resource.ResourceUtil;
 import icy.resource.icon.IcyIcon;
 import icy.roi.ROI;
+import icy.roi.ROI.ROIPainter;
 import icy.sequence.DimensionId;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
 import icy.system.thread.SingleProcessor;
 import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.Array2DUtil;
+import icy.type.collection.array.ArrayUtil;
+import icy.type.point.Point5D;
 import icy.type.rectangle.Rectangle2DUtil;
 import icy.type.rectangle.Rectangle5D;
 import icy.util.EventUtil;
@@ -112,6 +130,10 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
     private static final long serialVersionUID = 8850168605044063031L;
 
     static final int ICON_SIZE = 20;
+    /**
+     * Distance (in canvas pixel) around mouse position where a ROI can get the focus
+     */
+    static final int MOUSE_ROI_MARGIN = 32;
     static final int ICON_TARGET_SIZE = 20;
 
     static final Image ICON_CENTER_IMAGE = ResourceUtil.ICON_CENTER_IMAGE;
@@ -148,9 +170,9 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
 
             final List<ImageCacheTile> tiles = canvasView.imageCache.getImageAsTiles();
 
-            // draw image
+            // draw image (low resolution tiles are scaled to their region)
             for (ImageCacheTile tile : tiles)
-                g.drawImage(tile.image, tile.rect.x, tile.rect.y, null);
+                g.drawImage(tile.image, tile.rect.x, tile.rect.y, tile.rect.width, tile.rect.height, null);
 
             if (tiles.isEmpty())
             {
@@ -546,9 +568,13 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
                 // draw image
                 for (ImageCacheTile tile : tiles)
                 {
-                    trans.translate(tile.rect.getX(), tile.rect.getY());
-                    g2.drawImage(tile.image, trans, null);
-                    trans.translate(-tile.rect.getX(), -tile.rect.getY());
+                    final AffineTransform tileTrans = new AffineTransform(trans);
+
+                    tileTrans.translate(tile.rect.getX(), tile.rect.getY());
+                    // low resolution tiles are scaled to their region
+                    tileTrans.scale(tile.rect.getWidth() / tile.image.getWidth(),
+                            tile.rect.getHeight() / tile.image.getHeight());
+                    g2.drawImage(tile.image, tileTrans, null);
                 }
                 // if (img != null)
                 // g2.drawImage(img, trans, null);
@@ -618,9 +644,15 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
         {
             public class ImageCacheTile
             {
-                final static int TILE_SIZE = 2048;
+                final static int TILE_SIZE = 512;
 
+                /**
+                 * tile region (image coordinates)
+                 */
                 public Rectangle rect;
+                /**
+                 * tile image (can be smaller than tile region for low resolution tiles)
+                 */
                 public BufferedImage image;
 
                 public ImageCacheTile(Rectangle r, BufferedImage img)
@@ -638,7 +670,63 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
             }
 
             /**
-             * image cache
+             * Tile rendering task: get tile data (from cache if possible) then apply LUT
+             */
+            private class TileRenderer implements Callable<ImageCacheTile>
+            {
+                final IcyBufferedImage image;
+                final LUT lut;
+                final TileKey key;
+                final Rectangle rect;
+                // data version when rendering started
+                final int dataVersion;
+
+                TileRenderer(IcyBufferedImage image, LUT lut, TileKey key, Rectangle rect, int dataVersion)
+                {
+                    super();
+
+                    this.image = image;
+                    this.lut = lut;
+                    this.key = key;
+                    this.rect = rect;
+                    this.dataVersion = dataVersion;
+                }
+
+                @Override
+                public ImageCacheTile call() throws Exception
+                {
+                    // tile data doesn't depend from LUT
+                    final TileKey dataKey = new TileKey(ImageCache.this, key.t, key.z, key.c, key.level, key.x, key.y,
+                            -1);
+                    IcyBufferedImage data = getDataTile(dataKey);
+
+                    // not in cache ? --> read it from image
+                    if (data == null)
+                    {
+                        data = getTileData(image, key.t, key.z, rect, key.level);
+                        if (data == null)
+                            return null;
+
+                        putDataTile(dataKey, data, dataVersion);
+                    }
+
+                    // scaling (LUT) pass
+                    final ImageCacheTile result = new ImageCacheTile(rect,
+                            IcyBufferedImageUtil.toBufferedImage(data, null, lut));
+
+                    putARGBTile(key, result, dataVersion);
+
+                    return result;
+                }
+            }
+
+            /**
+             * Maximum size (in pixel) of the overview image
+             */
+            private final static int OVERVIEW_SIZE = 1024;
+
+            /**
+             * displayed tiles
              */
             private List<ImageCacheTile> tiles;
 
@@ -646,11 +734,17 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
              * processor
              */
             private final SingleProcessor processor;
+            private final Processor tileProcessor;
             /**
              * internals
              */
             private boolean needRebuild;
             private boolean notEnoughMemory;
+            private volatile int lutVersion;
+            // incremented on each data change so tiles rendered from old data are not cached
+            private volatile int dataVersion;
+            // sequence data modified (image provider data is not anymore valid)
+            private boolean sourceModified;
 
             public ImageCache()
             {
@@ -659,16 +753,60 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
                 processor = new SingleProcessor(true, "Canvas2D renderer");
                 // we want the processor to stay alive for sometime
                 processor.setKeepAliveTime(3, TimeUnit.SECONDS);
+                tileProcessor = new Processor(Math.max(1, SystemUtil.getNumberOfCPUs()));
+                tileProcessor.setThreadName("Canvas2D tile renderer");
 
                 tiles = new ArrayList<ImageCacheTile>();
                 needRebuild = true;
                 notEnoughMemory = false;
+                lutVersion = 0;
+                dataVersion = 0;
+                sourceModified = false;
 
                 // build cache
                 processor.submit(this);
             }
 
+            /**
+             * Image data changed, clear tiles cache.
+             */
             public void invalidCache()
+            {
+                synchronized (TilesCache.instance)
+                {
+                    dataVersion++;
+                    TilesCache.instance.remove(this, true);
+                }
+
+                needRebuild = true;
+            }
+
+            /**
+             * Sequence data modified, sub resolution data cannot be retrieved from the image provider anymore.
+             */
+            public void setSourceModified()
+            {
+                sourceModified = true;
+            }
+
+            /**
+             * LUT changed, only the scaling pass need to be done again (tiles data are preserved).
+             */
+            public void lutChanged()
+            {
+                synchronized (TilesCache.instance)
+                {
+                    lutVersion++;
+                    TilesCache.instance.remove(this, false);
+                }
+
+                needRebuild = true;
+            }
+
+            /**
+             * View (position, offset, scale...) changed, visible tiles need to be updated.
+             */
+            public void viewChanged()
             {
                 needRebuild = true;
             }
@@ -706,6 +844,9 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
                 return IcyBufferedImageUtil.toBufferedImage(icyImage, null);
             }
 
+            /**
+             * Returns displayed tiles, lower resolution tiles come first.
+             */
             public List<ImageCacheTile> getImageAsTiles()
             {
                 synchronized (tiles)
@@ -720,74 +861,358 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
                 return notEnoughMemory;
             }
 
+            IcyBufferedImage getDataTile(TileKey key)
+            {
+                return (IcyBufferedImage) TilesCache.instance.get(key);
+            }
+
+            void putDataTile(TileKey key, IcyBufferedImage tile, int version)
+            {
+                synchronized (TilesCache.instance)
+                {
+                    // data changed in the meantime ? --> don't cache it
+                    if (version != dataVersion)
+                        return;
+
+                    TilesCache.instance.put(key, tile);
+                }
+            }
+
+            ImageCacheTile getARGBTile(TileKey key)
+            {
+                return (ImageCacheTile) TilesCache.instance.get(key);
+            }
+
+            void putARGBTile(TileKey key, ImageCacheTile tile, int version)
+            {
+                synchronized (TilesCache.instance)
+                {
+                    // LUT or data changed in the meantime ? --> don't cache it
+                    if ((key.lutVersion != lutVersion) || (version != dataVersion))
+                        return;
+
+                    TilesCache.instance.put(key, tile);
+                }
+            }
+
+            /**
+             * Returns the resolution level to use for the current zoom factor (each level divide the resolution by 2)
+             */
+            private int getZoomLevel()
+            {
+                final double scale = Math.max(getScaleX(), getScaleY());
+                int level = 0;
+
+                while ((level < 30) && ((scale * (1 << (level + 1))) <= 1d))
+                    level++;
+
+                return level;
+            }
+
+            /**
+             * Returns the resolution level so the whole image fit in the overview size
+             */
+            private int getOverviewLevel(IcyBufferedImage image)
+            {
+                final int size = Math.max(image.getSizeX(), image.getSizeY());
+                int level = 0;
+
+                while ((level < 30) && ((size >> level) > OVERVIEW_SIZE))
+                    level++;
+
+                return level;
+            }
+
+            /**
+             * Returns image data of the specified region at the given resolution level
+             */
+            IcyBufferedImage getTileData(IcyBufferedImage image, int t, int z, Rectangle rect, int level)
+            {
+                IcyBufferedImage result;
+
+                // full resolution
+                if (level == 0)
+                    result = IcyBufferedImageUtil.getSubImage(image, rect);
+                // directly get the resolution level from the image provider if possible (no full resolution read)
+                else if ((result = getProviderTileData(image, t, z, rect, level)) == null)
+                {
+                    final int step = 1 << level;
+                    final int w = (rect.width + (step - 1)) / step;
+                    final int h = (rect.height + (step - 1)) / step;
+                    final int sizeC = image.getSizeC();
+                    final DataType dataType = image.getDataType_();
+                    final Object[] data = Array2DUtil.createArray(dataType, sizeC);
+
+                    for (int c = 0; c < sizeC; c++)
+                    {
+                        data[c] = Array1DUtil.createArray(dataType, w * h);
+                        subsample(image.getDataXY(c), image.getSizeX(), data[c], w, h, rect.x, rect.y, step);
+                    }
+
+                    result = new IcyBufferedImage(w, h, data, dataType.isSigned(), false);
+                }
+
+                // be sure that we don't keep that in cache (useless and waste cache space)
+                if (result != null)
+                    result.setVolatile(false);
+
+                return result;
+            }
+
+            /**
+             * Returns image data of the specified region at the given resolution level from the sequence image
+             * provider or <code>null</code> if the image provider cannot be used (resolution not available, sequence
+             * data modified or sequence not containing the whole original image).
+             */
+            private IcyBufferedImage getProviderTileData(IcyBufferedImage image, int t, int z, Rectangle rect,
+                    int level)
+            {
+                final Sequence seq = getSequence();
+
+                if ((seq == null) || sourceModified)
+                    return null;
+
+                final ImageProvider provider = seq.getImageProvider();
+
+                // sequence should contain the whole original image
+                if ((provider == null) || (seq.getOriginResolution() != 0) || (seq.getOriginXYRegion() != null)
+                        || (seq.getOriginZMin() != -1) || (seq.getOriginZMax() != -1) || (seq.getOriginTMin() != -1)
+                        || (seq.getOriginTMax() != -1) || (seq.getOriginChannel() != -1))
+                    return null;
+
+                try
+                {
+                    final int series = seq.getSeries();
+
+                    if (!provider.isResolutionAvailable(series, level))
+                        return null;
+
+                    final IcyBufferedImage result = provider.getImage(series, level, rect, z, t);
+
+                    // check we got compatible data
+                    if ((result != null) && (result.getSizeC() == image.getSizeC())
+                            && (result.getDataType_() == image.getDataType_()))
+                        return result;
+                }
+                catch (Exception e)
+                {
+                    // cannot use the image provider, we will sub sample the image instead
+                }
+
+                return null;
+            }
+
+            /**
+             * Sub sample (nearest value) source data in destination array
+             */
+            private void subsample(Object src, int srcW, Object dst, int w, int h, int x0, int y0, int step)
+            {
+                int off = 0;
+
+                switch (ArrayUtil.getDataType(src))
+                {
+                    case BYTE:
+                    {
+                        final byte[] s = (byte[]) src;
+                        final byte[] d = (byte[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    case SHORT:
+                    {
+                        final short[] s = (short[]) src;
+                        final short[] d = (short[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    case INT:
+                    {
+                        final int[] s = (int[]) src;
+                        final int[] d = (int[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    case LONG:
+                    {
+                        final long[] s = (long[]) src;
+                        final long[] d = (long[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    case FLOAT:
+                    {
+                        final float[] s = (float[]) src;
+                        final float[] d = (float[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    case DOUBLE:
+                    {
+                        final double[] s = (double[]) src;
+                        final double[] d = (double[]) dst;
+
+                        for (int y = 0; y < h; y++)
+                        {
+                            int srcOff = ((y0 + (y * step)) * srcW) + x0;
+                            for (int x = 0; x < w; x++, srcOff += step)
+                                d[off++] = s[srcOff];
+                        }
+                        break;
+                    }
+
+                    default:
+                        break;
+                }
+            }
+
+            /**
+             * Render (or get from cache) tiles of the specified level intersecting the given image region
+             */
+            private void renderTiles(IcyBufferedImage image, LUT lut, int t, int z, int c, int version,
+                    int dataVer, int level, Rectangle region, List<ImageCacheTile> result)
+            {
+                final Rectangle imgRect = image.getBounds();
+                final int tileImageSize = ImageCacheTile.TILE_SIZE << level;
+                final int startX = region.x / tileImageSize;
+                final int startY = region.y / tileImageSize;
+                final int endX = ((region.x + region.width) - 1) / tileImageSize;
+                final int endY = ((region.y + region.height) - 1) / tileImageSize;
+                final List<Future<ImageCacheTile>> futures = new ArrayList<Future<ImageCacheTile>>();
+
+                for (int ty = startY; ty <= endY; ty++)
+                {
+                    for (int tx = startX; tx <= endX; tx++)
+                    {
+                        final TileKey key = new TileKey(this, t, z, c, level, tx, ty, version);
+                        final ImageCacheTile tile = getARGBTile(key);
+
+                        if (tile != null)
+                            result.add(tile);
+                        else
+                        {
+                            final Rectangle rect = new Rectangle(tx * tileImageSize, ty * tileImageSize,
+                                    tileImageSize, tileImageSize).intersection(imgRect);
+
+                            // render tile in parallel
+                            futures.add(tileProcessor.submit(new TileRenderer(image, lut, key, rect, dataVer)));
+                        }
+                    }
+                }
+
+                for (Future<ImageCacheTile> future : futures)
+                {
+                    try
+                    {
+                        final ImageCacheTile tile = future.get();
+
+                        if (tile != null)
+                            result.add(tile);
+                    }
+                    catch (ExecutionException e)
+                    {
+                        if (e.getCause() instanceof OutOfMemoryError)
+                            notEnoughMemory = true;
+                        else
+                            IcyExceptionHandler.showErrorMessage(e.getCause(), false, false);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // ignore
+                    }
+                }
+            }
+
+            private void setTiles(List<ImageCacheTile> newTiles)
+            {
+                synchronized (tiles)
+                {
+                    tiles = new ArrayList<ImageCacheTile>(newTiles);
+                }
+
+                // repaint now
+                getViewComponent().repaint();
+            }
+
             @Override
             public void run()
             {
                 // important to set it to false at beginning
                 needRebuild = false;
 
+                final int t = getPositionT();
+                final int z = getPositionZ();
+                final int c = getPositionC();
                 // get original image
-                final IcyBufferedImage icyImage = Canvas2D.this.getImage(getPositionT(), getPositionZ(),
-                        getPositionC());
+                final IcyBufferedImage icyImage = Canvas2D.this.getImage(t, z, c);
 
                 // clear cache so we know we don't have any image at this position
                 if (icyImage == null)
-                    tiles.clear();
+                    setTiles(new ArrayList<ImageCacheTile>());
                 else
                 {
                     try
                     {
-                        {
-                            final Rectangle imgRect = icyImage.getBounds();
-                            // get tiles list
-                            final List<Rectangle> newTiles = ImageUtil.getTileList(icyImage.getSizeX(),
-                                    icyImage.getSizeY(), ImageCacheTile.TILE_SIZE, ImageCacheTile.TILE_SIZE);
-                            final int len = newTiles.size();
-
-                            int indNewTiles = 0;
-                            // compare with previous tile list
-                            for (ImageCacheTile tile : tiles)
-                            {
-                                if (indNewTiles < len)
-                                {
-                                    final Rectangle oldRect = tile.rect;
-                                    final Rectangle newRect = newTiles.get(indNewTiles).intersection(imgRect);
-
-                                    // size changed ? --> re alloc image
-                                    if ((oldRect.width != newRect.width) || (oldRect.height != newRect.height))
-                                        tile.image = new BufferedImage(newRect.width, newRect.height,
-                                                BufferedImage.TYPE_INT_ARGB);
-                                    // adjust rect (position) if needed
-                                    tile.rect = newRect;
-                                }
-
-                                indNewTiles++;
-                            }
+                        final LUT l = getLut();
+                        final int version = lutVersion;
+                        final int dataVer = dataVersion;
+                        final Rectangle imgRect = icyImage.getBounds();
+                        final List<ImageCacheTile> newTiles = new ArrayList<ImageCacheTile>();
+                        final int overviewLevel = getOverviewLevel(icyImage);
+
+                        notEnoughMemory = false;
+
+                        // whole image at low resolution first (fast display and used by the map)
+                        renderTiles(icyImage, l, t, z, c, version, dataVer, overviewLevel, imgRect, newTiles);
+                        setTiles(newTiles);
+
+                        final int level = getZoomLevel();
 
-                            // remove extras tiles
-                            while (tiles.size() > len)
-                                tiles.remove(tiles.size() - 1);
-                            // add extras tiles
-                            while (indNewTiles < len)
-                                tiles.add(new ImageCacheTile(newTiles.get(indNewTiles++)));
+                        // then refine visible region at the zoom appropriate resolution
+                        if ((level < overviewLevel) && !needRebuild)
+                        {
+                            final Rectangle visibleRect = getImageVisibleRect().getBounds().intersection(imgRect);
 
-                            // rebuild images
-                            final LUT l = getLut();
-                            for (ImageCacheTile tile : tiles)
+                            if (!visibleRect.isEmpty())
                             {
-                                final IcyBufferedImage icyTile = IcyBufferedImageUtil.getSubImage(icyImage, tile.rect);
-
-                                if (icyTile != null)
-                                {
-                                    // be sure that we don't keep that in cache (useless and waste cache space)
-                                    icyTile.setVolatile(false);
-                                    // convert to buffered image
-                                    tile.image = IcyBufferedImageUtil.toBufferedImage(icyTile, tile.image, l);
-                                }
+                                renderTiles(icyImage, l, t, z, c, version, dataVer, level, visibleRect, newTiles);
+                                setTiles(newTiles);
                             }
                         }
-
-                        notEnoughMemory = false;
                     }
                     catch (OutOfMemoryError e)
                     {
@@ -946,6 +1371,8 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
             rotationInfoTimer.removeActionListener(this);
             zoomInfoAlphaMover.shutDown();
             rotationInfoAlphaMover.shutDown();
+            // release tiles from the shared cache
+            imageCache.invalidCache();
         }
 
         /**
@@ -1142,12 +1569,14 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
                         final Rectangle5D area5d = new Rectangle5D.Double(area.getX(), area.getY(), getPositionZ(),
                                 getPositionT(), Double.NEGATIVE_INFINITY, area.getWidth(), area.getHeight(), 1d, 1d,
                                 Double.POSITIVE_INFINITY);
+                        // use sequence ROI spatial index to retrieve ROI in area
+                        final Set<ROI> areaRois = new HashSet<ROI>(seq.getROIsIntersecting(area5d, false));
 
                         seq.beginUpdate();
                         try
                         {
                             for (ROI roi : rois)
-                                roi.setSelected(roi.intersects(area5d));
+                                roi.setSelected(areaRois.contains(roi));
                         }
                         finally
                         {
@@ -1773,6 +2202,16 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
             imageCache.invalidCache();
         }
 
+        public void lutChanged()
+        {
+            imageCache.lutChanged();
+        }
+
+        public void viewChanged()
+        {
+            imageCache.viewChanged();
+        }
+
         public void layersChanged()
         {
             // nothing here
@@ -1839,6 +2278,154 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
         }
     }
 
+    /**
+     * Tile identifier (owner image cache, image position, resolution level, tile position and LUT version).<br>
+     * Data tiles use -1 as LUT version.
+     */
+    static class TileKey
+    {
+        final Object owner;
+        final int t;
+        final int z;
+        final int c;
+        final int level;
+        final int x;
+        final int y;
+        final int lutVersion;
+
+        TileKey(Object owner, int t, int z, int c, int level, int x, int y, int lutVersion)
+        {
+            super();
+
+            this.owner = owner;
+            this.t = t;
+            this.z = z;
+            this.c = c;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.lutVersion = lutVersion;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(owner);
+
+            result = (result * 31) + t;
+            result = (result * 31) + z;
+            result = (result * 31) + c;
+            result = (result * 31) + level;
+            result = (result * 31) + x;
+            result = (result * 31) + y;
+            result = (result * 31) + lutVersion;
+
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof TileKey)
+            {
+                final TileKey key = (TileKey) obj;
+
+                return (key.owner == owner) && (key.t == t) && (key.z == z) && (key.c == c) && (key.level == level)
+                        && (key.x == x) && (key.y == y) && (key.lutVersion == lutVersion);
+            }
+
+            return super.equals(obj);
+        }
+    }
+
+    /**
+     * Tiles cache (LRU) shared by all Canvas2D so they all use a single memory budget.<br>
+     * It contains both data tiles ({@link IcyBufferedImage}) and ARGB tiles ({@link ImageCacheTile}).
+     */
+    static class TilesCache
+    {
+        /**
+         * shared instance
+         */
+        static final TilesCache instance = new TilesCache();
+
+        private final LinkedHashMap<TileKey, Object> tiles;
+        private final long maxSize;
+        private long size;
+
+        private TilesCache()
+        {
+            super();
+
+            // access ordered map for LRU
+            tiles = new LinkedHashMap<TileKey, Object>(256, 0.75f, true);
+            // all canvas can use up to 1/8 of max memory (limited to 512 MB)
+            maxSize = Math.min(512L * 1024L * 1024L, SystemUtil.getJavaMaxMemory() / 8);
+            size = 0L;
+        }
+
+        synchronized Object get(TileKey key)
+        {
+            return tiles.get(key);
+        }
+
+        synchronized void put(TileKey key, Object tile)
+        {
+            final Object old = tiles.put(key, tile);
+
+            if (old != null)
+                size -= getSize(old);
+            size += getSize(tile);
+
+            // remove least recently used tiles
+            final Iterator<Object> it = tiles.values().iterator();
+            while ((size > maxSize) && it.hasNext())
+            {
+                size -= getSize(it.next());
+                it.remove();
+            }
+        }
+
+        /**
+         * Remove tiles of the specified owner (ARGB tiles only if <code>dataTiles</code> is <code>false</code>)
+         */
+        synchronized void remove(Object owner, boolean dataTiles)
+        {
+            final Iterator<Entry<TileKey, Object>> it = tiles.entrySet().iterator();
+
+            while (it.hasNext())
+            {
+                final Entry<TileKey, Object> entry = it.next();
+                final TileKey key = entry.getKey();
+
+                if ((key.owner == owner) && (dataTiles || (key.lutVersion != -1)))
+                {
+                    size -= getSize(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        private static long getSize(Object tile)
+        {
+            if (tile instanceof IcyBufferedImage)
+            {
+                final IcyBufferedImage image = (IcyBufferedImage) tile;
+
+                return (long) image.getSizeX() * (long) image.getSizeY() * image.getSizeC()
+                        * image.getDataType_().getSize();
+            }
+            if (tile instanceof ImageCacheTile)
+            {
+                final BufferedImage image = ((ImageCacheTile) tile).image;
+
+                return (long) image.getWidth() * (long) image.getHeight() * 4L;
+            }
+
+            return 0L;
+        }
+    }
+
     /**
      * * index 0 : translation X (int) index 1 : translation Y (int) index 2 :
      * scale X (double) index 3 : scale Y (double) index 4 : rotation angle
@@ -3159,12 +3746,12 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
         switch (type)
         {
             case POSITION_CHANGED:
-                // image has changed
-                canvasView.imageChanged();
-
             case OFFSET_CHANGED:
             case SCALE_CHANGED:
             case ROTATION_CHANGED:
+                // displayed image or visible region has changed
+                canvasView.viewChanged();
+
                 // update mouse image position from mouse canvas position
                 setMouseImagePos(canvasToImage(getMousePos()));
 
@@ -3256,15 +3843,61 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
         }
     }
 
+    /**
+     * Forward mouse move event to the overlays.<br>
+     * ROI overlays far from the mouse position (retrieved from the sequence ROI spatial index) which are neither
+     * focused nor selected are not processed as they cannot change their state.
+     */
+    @Override
+    public void mouseMove(MouseEvent event, Point5D.Double pt)
+    {
+        final Sequence seq = getSequence();
+
+        // no sequence or mouse position --> default processing
+        if ((seq == null) || (pt == null))
+        {
+            super.mouseMove(event, pt);
+            return;
+        }
+
+        // area around mouse position where a ROI can get the focus
+        final double margin = ROI.getAdjustedStroke(this, MOUSE_ROI_MARGIN);
+        final Rectangle5D area5d = new Rectangle5D.Double(pt.getX() - margin, pt.getY() - margin, getPositionZ(),
+                getPositionT(), Double.NEGATIVE_INFINITY, margin * 2d, margin * 2d, 1d, 1d, Double.POSITIVE_INFINITY);
+        final Set<ROI> areaRois = new HashSet<ROI>(seq.getROIsIntersecting(area5d, false));
+        final boolean globalVisible = isLayersVisible();
+
+        // send mouse event to overlays after so mouse canvas position is ok
+        for (Layer layer : getLayers(true))
+        {
+            if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
+            {
+                final Overlay overlay = layer.getOverlay();
+
+                if (overlay instanceof ROIPainter)
+                {
+                    final ROI roi = ((ROIPainter) overlay).getROI();
+
+                    // ROI far from mouse and without focus nor selection --> nothing to update
+                    if (!areaRois.contains(roi) && !roi.isFocused() && !roi.isSelected() && !roi.isCreating()
+                            && seq.contains(roi))
+                        continue;
+                }
+
+                overlay.mouseMove(event, pt, this);
+            }
+        }
+    }
+
     @Override
     protected void lutChanged(int component)
     {
         super.lutChanged(component);
 
-        // refresh image
+        // refresh image (only LUT scaling need to be done again)
         if (canvasView != null)
         {
-            canvasView.imageChanged();
+            canvasView.lutChanged();
             canvasView.refresh();
         }
     }
@@ -3307,6 +3940,9 @@ public class Canvas2D extends IcyCanvas2D implements ROITaskListener
         // refresh image
         if (canvasView != null)
         {
+            // data modified --> sub resolution data cannot be retrieved from the image provider anymore
+            if (type == SequenceEventType.CHANGED)
+                canvasView.imageCache.setSourceModified();
             canvasView.imageChanged();
             canvasView.refresh();
         }
@@ -23,8 +23,10 @@ import icy.system.thread.ThreadUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Utility class to handle <code>Update</code> type event.
@@ -44,9 +46,13 @@ public class UpdateEventHandler
      */
     private int updateCnt;
     /**
-     * internal pending change events
+     * internal pending change events (used to find equivalent event to collapse with)
      */
-    private final LinkedHashMap<CollapsibleEvent, CollapsibleEvent> pendingChanges;
+    private final ConcurrentHashMap<CollapsibleEvent, CollapsibleEvent> pendingChanges;
+    /**
+     * internal pending change events in arrival order
+     */
+    private final ConcurrentLinkedQueue<CollapsibleEvent> pendingChangesOrder;
 
     /**
      * 
@@ -59,7 +65,8 @@ public class UpdateEventHandler
         this.awtDispatch = awtDispatch;
 
         updateCnt = 0;
-        pendingChanges = new LinkedHashMap<CollapsibleEvent, CollapsibleEvent>();
+        pendingChanges = new ConcurrentHashMap<CollapsibleEvent, CollapsibleEvent>();
+        pendingChangesOrder = new ConcurrentLinkedQueue<CollapsibleEvent>();
     }
 
     /**
@@ -89,7 +96,7 @@ public class UpdateEventHandler
 
     public Collection<CollapsibleEvent> getPendingChanges()
     {
-        return pendingChanges.values();
+        return Collections.unmodifiableCollection(pendingChangesOrder);
     }
 
     public void beginUpdate()
@@ -102,17 +109,19 @@ public class UpdateEventHandler
         updateCnt--;
         if (updateCnt <= 0)
         {
-            final List<CollapsibleEvent> events;
+            final List<CollapsibleEvent> events = new ArrayList<CollapsibleEvent>(pendingChanges.size());
+            CollapsibleEvent event;
 
-            synchronized (pendingChanges)
+            // retrieve pending events in arrival order (an event collapsed after its removal is still dispatched)
+            while ((event = pendingChangesOrder.poll()) != null)
             {
-                events = new ArrayList<CollapsibleEvent>(pendingChanges.values());
-                pendingChanges.clear();
+                pendingChanges.remove(event);
+                events.add(event);
             }
 
-            // dispatch all contained events (use copy to avoid concurrent changes)
-            for (CollapsibleEvent event : events)
-                dispatchOnChanged(event);
+            // dispatch all contained events
+            if (!events.isEmpty())
+                dispatchOnChanged(events);
         }
     }
 
@@ -128,22 +137,14 @@ public class UpdateEventHandler
 
     protected void addPendingChange(CollapsibleEvent change)
     {
-        final CollapsibleEvent previousChange;
-
-        // TODO: can take sometime (select all on many ROI)
-        // TODO: check how fast is it now...
-        synchronized (pendingChanges)
-        {
-            // search in pending changes if we have an equivalent change
-            previousChange = pendingChanges.get(change);
-
-            // not already existing ? --> just add the new change
-            if (previousChange == null)
-                pendingChanges.put(change, change);
-        }
+        // search in pending changes if we have an equivalent change (add the new one if not)
+        final CollapsibleEvent previousChange = pendingChanges.putIfAbsent(change, change);
 
+        // not already existing ? --> just add the new change
+        if (previousChange == null)
+            pendingChangesOrder.add(change);
         // found an equivalent previous change ? --> collapse the new change into the old one
-        if (previousChange != null)
+        else
             previousChange.collapse(change);
     }
 
@@ -174,4 +175,31 @@ public class UpdateEventHandler
         else
             parent.onChanged(e);
     }
+
+    /**
+     * Dispatch the specified events (in a single AWT Dispatch Thread call if needed)
+     */
+    protected void dispatchOnChanged(List<CollapsibleEvent> events)
+    {
+        final List<CollapsibleEvent> e = events;
+
+        if (awtDispatch)
+        {
+            // dispatch all events on AWT Dispatch Thread now
+            ThreadUtil.invokeNow(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (CollapsibleEvent event : e)
+                        parent.onChanged(event);
+                }
+            });
+        }
+        else
+        {
+            for (CollapsibleEvent event : e)
+                parent.onChanged(event);
+        }
+    }
 }
\ No newline at end of file
@@ -27,11 +27,15 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import icy.common.exception.UnsupportedFormatException;
 import icy.file.SequenceFileSticher.SequenceFileGroup;
@@ -59,6 +63,7 @@ import icy.sequence.SequencePersistent;
 import icy.sequence.SequenceUtil;
 import icy.system.IcyExceptionHandler;
 import icy.system.SystemUtil;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.type.DataType;
 import icy.type.collection.CollectionUtil;
@@ -167,6 +172,52 @@ public class Loader
         }
     }
 
+    /**
+     * Load a single image (plane) from an importer (used for parallel loading)
+     */
+    private static class ImageLoaderWorker implements Callable<IcyBufferedImage>
+    {
+        final SequenceIdImporter importer;
+        final int series;
+        final int resolution;
+        final Rectangle region;
+        final int t;
+        final int z;
+        final int c;
+
+        public ImageLoaderWorker(SequenceIdImporter importer, int series, int resolution, Rectangle region, int t,
+                int z, int c)
+        {
+            super();
+
+            this.importer = importer;
+            this.series = series;
+            this.resolution = resolution;
+            this.region = region;
+            this.t = t;
+            this.z = z;
+            this.c = c;
+        }
+
+        @Override
+        public IcyBufferedImage call() throws Exception
+        {
+            final IcyBufferedImage result;
+
+            if (c == -1)
+                result = importer.getImage(series, resolution, region, z, t);
+            else
+                result = importer.getImage(series, resolution, region, z, t, c);
+
+            // we want data in memory
+            result.setVolatile(false);
+            // set image source information so data can be reloaded if needed
+            result.setImageSourceInfo(importer, series, resolution, region, t, z, c);
+
+            return result;
+        }
+    }
+
     // private final static Set<String> nonImageExtensions = new
     // HashSet<String>(CollectionUtil.asList(new String[] {
     // "xml", "txt", "pdf", "xls", "doc", "docx", "rtf", "exe", "wav", "mp3", "app"}));
@@ -3674,6 +3725,14 @@ public class Loader
             result.beginUpdate();
             try
             {
+                // image data should stay in memory ? --> load all images now using parallel loading
+                if (!volatileImage && (numImage > 1) && GeneralPreferences.getParallelLoading())
+                {
+                    internalLoadImages(result, importer, series, resolution, adjRegion, adjMinZ, adjMaxZ, adjMinT,
+                            adjMaxT, channel, loadingFrame);
+                    return result;
+                }
+
                 for (int t = adjMinT; t <= adjMaxT; t++)
                 {
                     for (int z = adjMinZ; z <= adjMaxZ; z++)
@@ -3732,6 +3791,100 @@ public class Loader
         return result;
     }
 
+    /**
+     * <b>Internal use only !</b><br>
+     * Load all images of the specified Z and T range from the given importer and set them in the result Sequence.<br>
+     * Images are loaded concurrently (importer should support concurrent access) but are set in the Sequence in (T, Z)
+     * order, the number of loaded images waiting to be set in the Sequence is limited to bound memory usage.<br>
+     * If <i>loadingFrame</i> is not <code>null</code> then it has 100 steps allocated to the loading of the images.
+     */
+    static void internalLoadImages(Sequence result, SequenceIdImporter importer, int series, int resolution,
+            Rectangle region, int minZ, int maxZ, int minT, int maxT, int channel, FileFrame loadingFrame)
+            throws IOException, UnsupportedFormatException, OutOfMemoryError
+    {
+        final List<ImageLoaderWorker> workers = new ArrayList<ImageLoaderWorker>();
+
+        for (int t = minT; t <= maxT; t++)
+            for (int z = minZ; z <= maxZ; z++)
+                workers.add(new ImageLoaderWorker(importer, series, resolution, region, t, z, channel));
+
+        final int numThread = Math.max(1, Math.min(SystemUtil.getNumberOfCPUs(), workers.size()));
+        // maximum number of submitted images (bound memory used by loaded images not yet set in the sequence)
+        final int maxPending = numThread * 2;
+        final Processor processor = new Processor(numThread);
+        final LinkedList<Future<IcyBufferedImage>> futures = new LinkedList<Future<IcyBufferedImage>>();
+        final double progressStep = 100d / workers.size();
+        double progress = 0d;
+        int next = 0;
+
+        processor.setThreadName("Image loader");
+
+        if (loadingFrame != null)
+            progress = loadingFrame.getPosition();
+
+        try
+        {
+            for (ImageLoaderWorker worker : workers)
+            {
+                // submit next images
+                while ((next < workers.size()) && (futures.size() < maxPending))
+                    futures.add(processor.submit(workers.get(next++)));
+
+                if (loadingFrame != null)
+                {
+                    // cancel requested ? --> stop loading here...
+                    if (loadingFrame.isCancelRequested())
+                        return;
+
+                    // special group importer ? --> use internal file path
+                    if (importer instanceof SequenceFileGroupImporter)
+                        loadingFrame.setFilename(((SequenceFileGroupImporter) importer).getPath(worker.z, worker.t,
+                                (channel != -1) ? channel : 0));
+                }
+
+                final IcyBufferedImage image;
+
+                try
+                {
+                    // wait for image in (T, Z) order
+                    image = futures.removeFirst().get();
+                }
+                catch (ExecutionException e)
+                {
+                    final Throwable cause = e.getCause();
+
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof UnsupportedFormatException)
+                        throw (UnsupportedFormatException) cause;
+                    if (cause instanceof OutOfMemoryError)
+                        throw (OutOfMemoryError) cause;
+
+                    throw new IOException(cause);
+                }
+
+                // set image into the sequence
+                result.setImage(worker.t - minT, worker.z - minZ, image);
+
+                progress += progressStep;
+
+                // notify progress to loader frame
+                if (loadingFrame != null)
+                    loadingFrame.setPosition(progress);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // loading interrupted --> restore interrupted state and stop here (same as cancel)
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            // cancel remaining tasks
+            processor.shutdownNow();
+        }
+    }
+
     /**
      * <b>Internal use only !</b><br>
      * Load a single file and return result as Sequence list (for multi series).<br>
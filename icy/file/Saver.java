@@ -32,14 +32,25 @@ import icy.roi.ROI;
 import icy.sequence.MetaDataUtil;
 import icy.sequence.Sequence;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.ThreadUtil;
 import icy.type.DataType;
+import icy.type.collection.array.ByteArrayConvert;
 import icy.util.OMEUtil;
 import icy.util.StringUtil;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import loci.common.services.ServiceException;
 import loci.formats.FormatException;
@@ -65,6 +76,73 @@ import ome.xml.meta.OMEXMLMetadata;
  */
 public class Saver
 {
+    /**
+     * Maximum size (in bytes) of a data block given to the writer in a single call (larger planes are written by
+     * blocks of rows).
+     */
+    private static final long MAX_BLOCK_SIZE = 256L * 1024L * 1024L;
+    /**
+     * Maximum size (in bytes) of block data prepared in advance (see {@link #saveBlocks}).
+     */
+    private static final long MAX_PIPELINE_SIZE = 512L * 1024L * 1024L;
+
+    /**
+     * Block of image data to save (whole plane or block of rows)
+     */
+    private static class SaveBlock implements Callable<byte[]>
+    {
+        final Sequence sequence;
+        final int t;
+        final int z;
+        final int c;
+        final int numC;
+        final int y;
+        final int h;
+        final boolean littleEndian;
+        // writer image index
+        final int imageIndex;
+        // last block of the plane (T, Z position)
+        final boolean lastOfPlane;
+
+        SaveBlock(Sequence sequence, int t, int z, int c, int numC, int y, int h, boolean littleEndian,
+                int imageIndex, boolean lastOfPlane)
+        {
+            super();
+
+            this.sequence = sequence;
+            this.t = t;
+            this.z = z;
+            this.c = c;
+            this.numC = numC;
+            this.y = y;
+            this.h = h;
+            this.littleEndian = littleEndian;
+            this.imageIndex = imageIndex;
+            this.lastOfPlane = lastOfPlane;
+        }
+
+        /**
+         * Fetch (load volatile data if needed) and convert block data to raw bytes
+         */
+        @Override
+        public byte[] call() throws Exception
+        {
+            final IcyBufferedImage image = sequence.getImage(t, z);
+
+            if (image == null)
+                return null;
+
+            final int w = image.getSizeX();
+            final int len = w * h * image.getDataType_().getSize();
+            final byte[] result = new byte[len * numC];
+
+            for (int i = 0; i < numC; i++)
+                ByteArrayConvert.toByteArray(image.getDataXY(c + i), y * w, result, i * len, len, littleEndian);
+
+            return result;
+        }
+    }
+
     /**
      * @deprecated use {@link OMEUtil#generateMetaData(int, int, int, int, int, DataType, boolean)} instead
      */
@@ -1084,56 +1162,46 @@ public class Saver
         writer.setWriteSequentially(true);
 
         final int sizeC = compatibleSequence.getSizeC();
+        final int sizeX = compatibleSequence.getSizeX();
+        final int sizeY = compatibleSequence.getSizeY();
         // get endianess
         final boolean littleEndian = !writer.getMetadataRetrieve().getPixelsBinDataBigEndian(0, 0).booleanValue();
-        byte[] data = null;
+        // number of channel given to the writer at once
+        final int numC = separateChannel ? 1 : sizeC;
+        final long rowSize = (long) sizeX * numC * compatibleSequence.getDataType_().getSize();
+        // block height (whole plane unless plane is too large and writer supports region saving)
+        final int blockH;
+        if (writer instanceof TiffWriter)
+            blockH = (int) Math.max(1L, Math.min(sizeY, MAX_BLOCK_SIZE / Math.max(1L, rowSize)));
+        else
+            blockH = sizeY;
+        final List<SaveBlock> blocks = new ArrayList<SaveBlock>();
 
-        try
+        int imageIndex = 0;
+        // XYCZT order is important here (see metadata)
+        for (int t = tMin; t <= tMax; t++)
         {
-            int imageIndex = 0;
-            // XYCZT order is important here (see metadata)
-            for (int t = tMin; t <= tMax; t++)
+            for (int z = zMin; z <= zMax; z++)
             {
-                for (int z = zMin; z <= zMax; z++)
+                for (int c = 0; c < sizeC; c += numC)
                 {
-                    // interrupt process (partial save)
-                    if ((saveFrame != null) && saveFrame.isCancelRequested())
-                        return compatibleSequence;
-
-                    final IcyBufferedImage image = compatibleSequence.getImage(t, z);
-
-                    // separated channel data
-                    if (separateChannel)
+                    for (int y = 0; y < sizeY; y += blockH)
                     {
-                        for (int c = 0; c < sizeC; c++)
-                        {
-                            if (image != null)
-                            {
-                                // avoid multiple allocation
-                                data = image.getRawData(c, data, 0, littleEndian);
-                                writer.saveBytes(imageIndex, data);
-                            }
-
-                            imageIndex++;
-                        }
-                    }
-                    else
-                    {
-                        if (image != null)
-                        {
-                            // avoid multiple allocation
-                            data = image.getRawData(data, 0, littleEndian);
-                            writer.saveBytes(imageIndex, data);
-                        }
-
-                        imageIndex++;
+                        final int h = Math.min(blockH, sizeY - y);
+
+                        blocks.add(new SaveBlock(compatibleSequence, t, z, c, numC, y, h, littleEndian, imageIndex,
+                                ((c + numC) >= sizeC) && ((y + h) >= sizeY)));
                     }
 
-                    if (saveFrame != null)
-                        saveFrame.incPosition();
+                    imageIndex++;
                 }
             }
         }
+
+        try
+        {
+            saveBlocks(writer, blocks, sizeX, sizeY, rowSize * blockH, saveFrame);
+        }
         finally
         {
             // always close writer after a file has been saved
@@ -1143,6 +1211,84 @@ public class Saver
         return compatibleSequence;
     }
 
+    /**
+     * Save image blocks with parallel block preparation: blocks data are fetched (volatile data loaded) and converted
+     * to raw bytes in parallel (bounded number of block in advance).<br>
+     * Blocks are then given in order to the writer from the calling thread, so encoding / compression done by the
+     * writer is still sequential.<br>
+     * Partial plane blocks are only supported by <code>TiffWriter</code>.
+     * 
+     * @throws InterruptedIOException
+     *         if the calling thread is interrupted (file is partially saved)
+     */
+    private static void saveBlocks(IFormatWriter writer, List<SaveBlock> blocks, int sizeX, int sizeY, long blockSize,
+            FileFrame saveFrame) throws FormatException, IOException
+    {
+        final int maxInFlight = (int) Math.max(1L,
+                Math.min(SystemUtil.getNumberOfCPUs() * 2, MAX_PIPELINE_SIZE / Math.max(1L, blockSize)));
+        final ExecutorService executor = ThreadUtil.createThreadPool("Sequence saver");
+        final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>(maxInFlight);
+
+        try
+        {
+            int submitted = 0;
+
+            for (SaveBlock block : blocks)
+            {
+                // interrupt process (partial save)
+                if ((saveFrame != null) && saveFrame.isCancelRequested())
+                    return;
+
+                // fill the pipeline
+                while ((submitted < blocks.size()) && (inFlight.size() < maxInFlight))
+                    inFlight.add(executor.submit(blocks.get(submitted++)));
+
+                final byte[] data = inFlight.poll().get();
+
+                if (data != null)
+                {
+                    // whole plane ?
+                    if (block.h == sizeY)
+                        writer.saveBytes(block.imageIndex, data);
+                    else
+                        writer.saveBytes(block.imageIndex, data, 0, block.y, sizeX, block.h);
+                }
+
+                if ((saveFrame != null) && block.lastOfPlane)
+                    saveFrame.incPosition();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // restore interrupted state and report it (partial save)
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sequence saving interrupted, file is incomplete");
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof FormatException)
+                throw (FormatException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new IOException(cause);
+        }
+        finally
+        {
+            // cancel remaining block preparation (if any)
+            for (Future<byte[]> future : inFlight)
+                future.cancel(true);
+
+            executor.shutdown();
+        }
+    }
+
     /**
      * Returns a compatible Sequence representing the input sequence so it can be saved with the specified writer.<br>
      * If the writer support the input sequence then the input sequence is directly returned.
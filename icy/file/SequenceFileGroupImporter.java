@@ -24,8 +24,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.filechooser.FileFilter;
 
@@ -41,6 +48,7 @@ import icy.image.ImageUtil;
 import icy.image.colormap.IcyColorMap;
 import icy.sequence.MetaDataUtil;
 import icy.system.IcyExceptionHandler;
+import icy.system.thread.Processor;
 import icy.type.collection.CollectionUtil;
 import icy.type.collection.array.Array1DUtil;
 import icy.util.OMEUtil;
@@ -61,6 +69,19 @@ import plugins.kernel.importer.LociImporterPlugin;
 public class SequenceFileGroupImporter extends AbstractImageProvider implements SequenceFileImporter
 {
     static final int MAX_IMPORTER = 16;
+    // maximum number of importer opened in advance (following Z / T walk order)
+    static final int MAX_PREFETCH = 2;
+
+    /**
+     * Background importer opener (shared by all group importers)
+     */
+    static final Processor importerOpener;
+
+    static
+    {
+        importerOpener = new Processor(MAX_IMPORTER * 4, 2, Processor.MIN_PRIORITY);
+        importerOpener.setThreadName("Group importer opener");
+    }
 
     class FileCursor
     {
@@ -82,6 +103,33 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
         }
     }
 
+    /**
+     * Importer being opened in background (state fields are guarded by <code>importersPool</code>)
+     */
+    class ImporterOpening
+    {
+        Future<SequenceFileImporter> future;
+        // background task started
+        boolean started;
+        // claimed by a reader (see getImporter(..))
+        boolean claimed;
+        // the reader stopped waiting for it
+        boolean abandoned;
+        // importer given to the reader
+        SequenceFileImporter result;
+
+        public ImporterOpening()
+        {
+            super();
+
+            future = null;
+            started = false;
+            claimed = false;
+            abandoned = false;
+            result = null;
+        }
+    }
+
     class TileIndex
     {
         public final Rectangle region;
@@ -111,9 +159,22 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
     protected int indSMul;
 
     /**
-     * Shared importer for multi threading
+     * Shared importer for multi threading (available importers in least recently used order).<br>
+     * An importer is removed from the pool while it is leased (see {@link #getImporter(String)}).
      */
     protected final Map<String, SequenceFileImporter> importersPool;
+    /**
+     * Importers being opened in background
+     */
+    protected final Map<String, ImporterOpening> importersOpening;
+    // incremented when internals importers are closed (discard background opened importers)
+    protected int importersGeneration;
+
+    // statistics
+    protected final AtomicLong importerHits;
+    protected final AtomicLong importerMisses;
+    protected final AtomicLong importerReopens;
+    protected final AtomicLong importerPrefetches;
 
     public SequenceFileGroupImporter()
     {
@@ -121,7 +182,14 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
 
         currentGroup = null;
         currentMetadata = null;
-        importersPool = new HashMap<String, SequenceFileImporter>();
+        importersPool = new LinkedHashMap<String, SequenceFileImporter>(MAX_IMPORTER * 2, 0.75f, true);
+        importersOpening = new HashMap<String, ImporterOpening>();
+        importersGeneration = 0;
+
+        importerHits = new AtomicLong();
+        importerMisses = new AtomicLong();
+        importerReopens = new AtomicLong();
+        importerPrefetches = new AtomicLong();
     }
 
     @Override
@@ -282,6 +350,177 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
         return result;
     }
 
+    /**
+     * Open an importer for the given path in background (internal use only).<br>
+     * Once opened the importer is put in the pool unless a thread is already waiting for it.
+     */
+    protected void openImporterInBackground(String path, int generation, ImporterOpening opening)
+    {
+        synchronized (importersPool)
+        {
+            // claimed before we started ? --> the reader opens it itself
+            if (opening.claimed)
+                return;
+
+            opening.started = true;
+        }
+
+        SequenceFileImporter result;
+
+        try
+        {
+            result = createImporter(path);
+        }
+        catch (Exception e)
+        {
+            // will be opened again on demand
+            result = null;
+        }
+
+        final List<SequenceFileImporter> toClose = new ArrayList<SequenceFileImporter>();
+
+        synchronized (importersPool)
+        {
+            // internals importers closed in the meantime ? --> discard it
+            if (generation != importersGeneration)
+            {
+                if (result != null)
+                    toClose.add(result);
+            }
+            // claimed by getImporter(..) and the reader is still waiting ? --> give it directly
+            else if (opening.claimed && !opening.abandoned)
+                opening.result = result;
+            else
+            {
+                if (!opening.claimed)
+                    importersOpening.remove(path);
+                // nobody waiting for it --> put it in the pool
+                if (result != null)
+                {
+                    importerPrefetches.incrementAndGet();
+                    addToPool(path, result, toClose);
+                }
+            }
+        }
+
+        closeImporters(toClose);
+    }
+
+    /**
+     * Start opening importers in background for the next images in Z / T walk order (internal use only).
+     */
+    protected void prefetchImporters(int z, int t, int c)
+    {
+        final SequenceFileGroup group = currentGroup;
+
+        // prefetch only for simple image group
+        if ((group == null) || isStitchedImage())
+            return;
+
+        final String current = getPath(z, t, c);
+        String last = current;
+        int nz = z;
+        int nt = t;
+        int found = 0;
+
+        for (int i = 0; (i < (MAX_PREFETCH * 4)) && (found < MAX_PREFETCH); i++)
+        {
+            if (++nz >= group.totalSizeZ)
+            {
+                nz = 0;
+                if (++nt >= group.totalSizeT)
+                    return;
+            }
+
+            final String path = getPath(nz, nt, c);
+
+            if (!StringUtil.isEmpty(path) && !path.equals(last))
+            {
+                if (!path.equals(current))
+                    prefetchImporter(path);
+
+                last = path;
+                found++;
+            }
+        }
+    }
+
+    /**
+     * Start opening an importer in background for the given path if not already available (internal use only).
+     */
+    protected void prefetchImporter(final String path)
+    {
+        synchronized (importersPool)
+        {
+            // already available or being opened
+            if (importersPool.containsKey(path) || importersOpening.containsKey(path))
+                return;
+            // enough importers being opened
+            if (importersOpening.size() >= (MAX_PREFETCH * 2))
+                return;
+
+            final int generation = importersGeneration;
+            final ImporterOpening opening = new ImporterOpening();
+
+            try
+            {
+                opening.future = importerOpener.submit(new Callable<SequenceFileImporter>()
+                {
+                    @Override
+                    public SequenceFileImporter call() throws Exception
+                    {
+                        openImporterInBackground(path, generation, opening);
+                        return null;
+                    }
+                });
+                importersOpening.put(path, opening);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // opener busy, ignore
+            }
+        }
+    }
+
+    /**
+     * Add the importer to the pool and store importers to close in <code>toClose</code> (internal use only, should
+     * be called inside a <code>synchronized (importersPool)</code> block).
+     */
+    protected void addToPool(String path, SequenceFileImporter importer, List<SequenceFileImporter> toClose)
+    {
+        // we already have an available importer for this path
+        if (importersPool.containsKey(path))
+        {
+            toClose.add(importer);
+            return;
+        }
+
+        importersPool.put(path, importer);
+
+        // remove least recently used importers
+        final Iterator<SequenceFileImporter> it = importersPool.values().iterator();
+        while ((importersPool.size() > MAX_IMPORTER) && it.hasNext())
+        {
+            toClose.add(it.next());
+            it.remove();
+        }
+    }
+
+    protected static void closeImporters(List<SequenceFileImporter> importers)
+    {
+        for (SequenceFileImporter imp : importers)
+        {
+            try
+            {
+                imp.close();
+            }
+            catch (IOException e)
+            {
+                // ignore
+            }
+        }
+    }
+
     /**
      * Return the path of the first available importer (internal use only)
      * 
@@ -321,33 +560,82 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
 
         try
         {
-            final int numImporter;
+            ImporterOpening opening;
             SequenceFileImporter result;
 
             synchronized (importersPool)
             {
-                numImporter = importersPool.size();
                 result = importersPool.remove(path);
+                // being opened in background ? --> claim it
+                opening = (result == null) ? importersOpening.remove(path) : null;
+
+                if (opening != null)
+                {
+                    opening.claimed = true;
+
+                    // not yet started (opener can be busy with other files) ? --> faster to open it directly
+                    if (!opening.started)
+                    {
+                        opening.future.cancel(false);
+                        opening = null;
+                    }
+                }
             }
 
-            // no available importer for this path ?
-            if (result == null)
+            if (opening != null)
+            {
+                try
+                {
+                    opening.future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    // open it again
+                }
+                catch (InterruptedException e)
+                {
+                    // restore interrupted state and open it again
+                    Thread.currentThread().interrupt();
+                }
+
+                synchronized (importersPool)
+                {
+                    // get the result if already done (otherwise it will be put in the pool when done)
+                    opening.abandoned = true;
+                    result = opening.result;
+                    opening.result = null;
+                }
+            }
+
+            if (result != null)
+            {
+                importerHits.incrementAndGet();
+                return result;
+            }
+
+            importerMisses.incrementAndGet();
+
+            synchronized (importersPool)
             {
                 // we have already enough importers (we don't want to create too much of them)
-                if (numImporter >= MAX_IMPORTER)
+                if (importersPool.size() >= MAX_IMPORTER)
                 {
-                    // recycle first importer found one
-                    result = getImporter(getFirstImporterPath());
+                    // recycle least recently used importer
+                    final Iterator<SequenceFileImporter> it = importersPool.values().iterator();
 
-                    // correctly
-                    if (result != null)
-                        openImporter(result, path);
+                    result = it.next();
+                    it.remove();
                 }
+            }
 
-                // need to create a new importer
-                if (result == null)
-                    result = createImporter(path);
+            if (result != null)
+            {
+                importerReopens.incrementAndGet();
+                openImporter(result, path);
             }
+            else
+                // need to create a new importer
+                result = createImporter(path);
 
             return result;
         }
@@ -370,11 +658,58 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
      */
     public void releaseImporter(String path, SequenceFileImporter importer)
     {
+        final List<SequenceFileImporter> toClose = new ArrayList<SequenceFileImporter>();
+
         synchronized (importersPool)
         {
             // it's better to specify path instead of using SequenceFileImporter.getOpened() as internally format can change
-            importersPool.put(path, importer);
+            addToPool(path, importer, toClose);
         }
+
+        closeImporters(toClose);
+    }
+
+    /**
+     * @return number of importer request served by an already opened importer
+     */
+    public long getImporterHitCount()
+    {
+        return importerHits.get();
+    }
+
+    /**
+     * @return number of importer request which required to open an importer (new or recycled one)
+     */
+    public long getImporterMissCount()
+    {
+        return importerMisses.get();
+    }
+
+    /**
+     * @return number of importer recycled (closed and reopened for another path)
+     */
+    public long getImporterReopenCount()
+    {
+        return importerReopens.get();
+    }
+
+    /**
+     * @return number of importer opened in background (anticipating Z / T walk order)
+     */
+    public long getImporterPrefetchCount()
+    {
+        return importerPrefetches.get();
+    }
+
+    /**
+     * Reset importer statistics (hit, miss, reopen and prefetch count)
+     */
+    public void resetImporterStatistics()
+    {
+        importerHits.set(0);
+        importerMisses.set(0);
+        importerReopens.set(0);
+        importerPrefetches.set(0);
     }
 
     protected void buildIndexes()
@@ -496,6 +831,12 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
     {
         synchronized (importersPool)
         {
+            // discard importers being opened in background
+            importersGeneration++;
+            for (ImporterOpening opening : importersOpening.values())
+                opening.future.cancel(false);
+            importersOpening.clear();
+
             // close all importers
             for (SequenceFileImporter imp : importersPool.values())
                 imp.close();
@@ -798,6 +1139,9 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
         final FileCursor cursor = getCursor(z, t, c);
         final List<TileIndex> tiles = getTileIndexes(region);
 
+        // anticipate next images opening
+        prefetchImporters(z, t, c);
+
         // single tile ?
         if (tiles.size() == 1)
             return getPixelsInternal(positions[cursor.index + tiles.get(0).index], series, resolution, region,
@@ -896,6 +1240,9 @@ public class SequenceFileGroupImporter extends AbstractImageProvider implements
         final FileCursor cursor = getCursor(z, t, c);
         final List<TileIndex> tiles = getTileIndexes(region);
 
+        // anticipate next images opening
+        prefetchImporters(z, t, c);
+
         // single tile ?
         if (tiles.size() == 1)
             return getImageInternal(positions[cursor.index + tiles.get(0).index], series, resolution, region,
@@ -38,6 +38,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -97,7 +101,9 @@ import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
 import icy.system.thread.InstanceProcessor;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.type.rectangle.Rectangle5D;
 import icy.util.ClassUtil;
@@ -153,6 +159,11 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
     protected static final String ID_PROPERTY_ORDER = "order";
     protected static final String ID_PROPERTY_VISIBLE = "visible";
 
+    /**
+     * Table data refresh interval (ms)
+     */
+    public static final int TABLE_DATA_REFRESH_INTERVAL = 100;
+
     // default row comparator
     protected static Comparator<Object> comparator = new Comparator<Object>()
     {
@@ -258,8 +269,12 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
     protected final DescriptorComputer primaryDescriptorComputer;
     protected final DescriptorComputer basicDescriptorComputer;
     protected final DescriptorComputer advancedDescriptorComputer;
+    // shared worker pool for descriptor computation
+    protected final Processor descriptorProcessor;
 
-    protected long lastTableDataRefresh;
+    // table data refresh is batched at a fixed rate
+    protected final Timer tableDataRefreshTimer;
+    protected volatile boolean tableDataRefreshPending;
 
     /**
      * Create a new ROI table panel.<br>
@@ -282,7 +297,7 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
         modifySelection = new Semaphore(1);
         columnInfoList = new ArrayList<ColumnInfo>();
 
-        lastTableDataRefresh = 0L;
+        tableDataRefreshPending = false;
 
         initialize();
 
@@ -363,6 +378,10 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
         processor.setThreadName("ROI panel GUI refresher");
         processor.setKeepAliveTime(30, TimeUnit.SECONDS);
 
+        descriptorProcessor = new Processor(-1, SystemUtil.getNumberOfCPUs(), Processor.MIN_PRIORITY);
+        descriptorProcessor.setThreadName("ROI descriptor calculator");
+        descriptorProcessor.setKeepAliveTime(30, TimeUnit.SECONDS);
+
         primaryDescriptorComputer = new DescriptorComputer(DescriptorType.PRIMARY);
         basicDescriptorComputer = new DescriptorComputer(DescriptorType.BASIC);
         advancedDescriptorComputer = new DescriptorComputer(DescriptorType.EXTERNAL);
@@ -370,6 +389,21 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
         basicDescriptorComputer.start();
         advancedDescriptorComputer.start();
 
+        tableDataRefreshTimer = new Timer("ROI table data refresher", true);
+        tableDataRefreshTimer.scheduleAtFixedRate(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                // refresh table data if needed
+                if (tableDataRefreshPending)
+                {
+                    tableDataRefreshPending = false;
+                    processor.submit(true, tableDataRefresher);
+                }
+            }
+        }, TABLE_DATA_REFRESH_INTERVAL, TABLE_DATA_REFRESH_INTERVAL);
+
         // update descriptors list (this rebuild the column model of the tree table)
         refreshDescriptorList();
         // set shortcuts
@@ -1111,31 +1145,30 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
         refreshRoiNumbers();
     }
 
+    @Override
+    public void close()
+    {
+        super.close();
+
+        // release refresh timer and descriptor workers
+        tableDataRefreshTimer.cancel();
+        primaryDescriptorComputer.interrupt();
+        basicDescriptorComputer.interrupt();
+        advancedDescriptorComputer.interrupt();
+        descriptorProcessor.shutdownNow();
+    }
+
+    /**
+     * Request a table data refresh.<br>
+     * Refresh requests are batched and done at most every {@link #TABLE_DATA_REFRESH_INTERVAL} ms.
+     */
     public void refreshTableData()
     {
-        processor.submit(true, tableDataRefresher);
+        tableDataRefreshPending = true;
     }
 
     protected void refreshTableDataInternal()
     {
-        final long time = System.currentTimeMillis();
-        final boolean hasPendingTask = primaryDescriptorComputer.hasPendingComputation()
-                && basicDescriptorComputer.hasPendingComputation()
-                && advancedDescriptorComputer.hasPendingComputation();
-
-        // still pending descriptor task ?
-        if (hasPendingTask)
-        {
-            // avoid too much table data update
-            if ((time - lastTableDataRefresh) < 200)
-                return;
-        }
-
-        lastTableDataRefresh = time;
-
-        // don't eat too much time on data structure refresh
-        ThreadUtil.sleep(1);
-
         ThreadUtil.invokeNow(new Runnable()
         {
             @Override
@@ -2012,6 +2045,7 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
     {
         protected final LinkedHashSet<ROIResults> resultsToCompute;
         protected final DescriptorType type;
+        protected volatile boolean computing;
 
         public DescriptorComputer(DescriptorType type)
         {
@@ -2019,13 +2053,14 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
 
             resultsToCompute = new LinkedHashSet<AbstractRoisPanel.ROIResults>(256);
             this.type = type;
+            computing = false;
 
             setPriority(Thread.MIN_PRIORITY);
         }
 
         public boolean hasPendingComputation()
         {
-            return resultsToCompute.size() > 0;
+            return computing || (resultsToCompute.size() > 0);
         }
 
         public boolean hasPendingComputation(ROIResults results)
@@ -2106,26 +2141,124 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
                     roiResultsList = resultsToCompute.toArray(new ROIResults[resultsToCompute.size()]);
                     // and remove them
                     resultsToCompute.clear();
+                    computing = true;
                 }
 
-                final Sequence seq = getSequence();
+                try
+                {
+                    final Sequence seq = getSequence();
+
+                    if (seq != null)
+                    {
+                        final List<Future<?>> futures = new ArrayList<Future<?>>();
 
-                if (seq != null)
+                        if (type == DescriptorType.EXTERNAL)
+                        {
+                            // external plugins are not required to be thread safe --> one task per plugin (ROIs are
+                            // computed sequentially for a given plugin)
+                            for (final PluginROIDescriptor plugin : getPlugins(roiResultsList))
+                            {
+                                futures.add(descriptorProcessor.submit(new Runnable()
+                                {
+                                    @Override
+                                    public void run()
+                                    {
+                                        for (ROIResults roiResults : roiResultsList)
+                                        {
+                                            // active sequence changed ? --> quickly discard other calculations
+                                            if (seq != getSequence())
+                                                break;
+
+                                            computeROIResults(roiResults, seq, plugin);
+                                        }
+                                    }
+                                }));
+                            }
+                        }
+                        else
+                        {
+                            // kernel descriptors are thread safe --> compute ROI results in parallel
+                            for (final ROIResults roiResults : roiResultsList)
+                            {
+                                futures.add(descriptorProcessor.submit(new Runnable()
+                                {
+                                    @Override
+                                    public void run()
+                                    {
+                                        // active sequence changed ? --> quickly discard other calculations
+                                        if (seq == getSequence())
+                                            computeROIResults(roiResults, seq, null);
+                                    }
+                                }));
+                            }
+                        }
+
+                        // wait for completion before processing the next requests
+                        for (Future<?> future : futures)
+                        {
+                            try
+                            {
+                                future.get();
+                            }
+                            catch (ExecutionException e)
+                            {
+                                IcyExceptionHandler.handleException(e.getCause(), true);
+                            }
+                        }
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // ignore and just interrupt now
+                    Thread.currentThread().interrupt();
+                }
+                finally
+                {
+                    computing = false;
+                }
+            }
+        }
+
+        /**
+         * Returns the plugins providing the descriptors of this kind for the specified ROI results
+         */
+        protected Set<PluginROIDescriptor> getPlugins(ROIResults[] roiResultsList)
+        {
+            final Set<PluginROIDescriptor> result = new LinkedHashSet<PluginROIDescriptor>();
+
+            for (ROIResults roiResults : roiResultsList)
+            {
+                final Map<ColumnInfo, DescriptorResult> results = roiResults.descriptorResults;
+                final ColumnInfo[] columnInfos;
+
+                synchronized (results)
+                {
+                    columnInfos = results.keySet().toArray(new ColumnInfo[results.size()]);
+                }
+
+                for (ColumnInfo columnInfo : columnInfos)
                 {
-                    // start with primaries descriptors
-                    for (ROIResults roiResults : roiResultsList)
+                    if (columnInfo.getDescriptorType() == type)
                     {
-                        // active sequence changed ? --> quickly discard other calculations
-                        if (seq != getSequence())
-                            break;
+                        synchronized (descriptorMap)
+                        {
+                            final PluginROIDescriptor plugin = descriptorMap.get(columnInfo.descriptor);
 
-                        computeROIResults(roiResults, seq);
+                            if (plugin != null)
+                                result.add(plugin);
+                        }
                     }
                 }
             }
+
+            return result;
         }
 
-        protected void computeROIResults(ROIResults roiResults, Sequence seq)
+        /**
+         * Compute descriptors of this kind for the specified ROI (only the ones provided by <code>plugin</code> if not
+         * <code>null</code>)
+         */
+        protected void computeROIResults(ROIResults roiResults, Sequence seq, PluginROIDescriptor plugin)
         {
             final Map<ColumnInfo, DescriptorResult> results = roiResults.descriptorResults;
             final ColumnInfo[] columnInfos;
@@ -2139,8 +2272,20 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel
             for (ColumnInfo columnInfo : columnInfos)
             {
                 // only compute a specific kind of descriptor
-                if (columnInfo.getDescriptorType() == type)
-                    needUpdate |= AbstractRoisPanel.this.computeROIResults(roiResults, seq, columnInfo);
+                if (columnInfo.getDescriptorType() != type)
+                    continue;
+
+                // only compute descriptors of the given plugin
+                if (plugin != null)
+                {
+                    synchronized (descriptorMap)
+                    {
+                        if (descriptorMap.get(columnInfo.descriptor) != plugin)
+                            continue;
+                    }
+                }
+
+                needUpdate |= AbstractRoisPanel.this.computeROIResults(roiResults, seq, columnInfo);
             }
 
             // need to refresh data
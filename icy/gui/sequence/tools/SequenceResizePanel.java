@@ -59,7 +59,7 @@ public class SequenceResizePanel extends SequenceBaseResizePanel
         settingPanel.add(lblFilterType, gbc_lblFilterType);
 
         filterComboBox = new JComboBox();
-        filterComboBox.setModel(new DefaultComboBoxModel(new String[] {"Nearest", "Bilinear", "Bicubic"}));
+        filterComboBox.setModel(new DefaultComboBoxModel(new String[] {"Nearest", "Bilinear", "Bicubic", "Lanczos"}));
         filterComboBox.setSelectedIndex(1);
         GridBagConstraints gbc_filterComboBox = new GridBagConstraints();
         gbc_filterComboBox.insets = new Insets(0, 0, 5, 5);
@@ -81,6 +81,8 @@ public class SequenceResizePanel extends SequenceBaseResizePanel
                 return FilterType.BILINEAR;
             case 2:
                 return FilterType.BICUBIC;
+            case 3:
+                return FilterType.LANCZOS;
         }
     }
 
@@ -90,6 +90,8 @@ import icy.sequence.DimensionId;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceListener;
+import icy.sequence.SequencePrefetcher;
+import icy.sequence.SequencePrefetcher.LookAheadPolicy;
 import icy.system.IcyExceptionHandler;
 import icy.system.IcyHandledException;
 import icy.system.thread.ThreadUtil;
@@ -1448,6 +1450,16 @@ public class Viewer extends IcyFrame implements KeyListener, SequenceListener, I
 
     protected void positionChanged(DimensionId dim)
     {
+        final Sequence seq = getSequence();
+
+        if (seq != null)
+        {
+            // only prefetch next frames while playing
+            SequencePrefetcher.setPolicy(seq, isPlaying() ? LookAheadPolicy.PLAYBACK : null);
+            // data prefetch around new position
+            SequencePrefetcher.prefetchAround(seq, getPositionT(), getPositionZ());
+        }
+
         fireViewerChanged(ViewerEventType.POSITION_CHANGED, dim);
     }
 
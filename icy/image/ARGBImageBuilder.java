@@ -18,16 +18,22 @@
  */
 package icy.image;
 
+import icy.image.colormap.IcyColorMap;
+import icy.image.colormap.IcyColorMap.IcyColorMapType;
 import icy.image.lut.LUT;
 import icy.math.Scaler;
 import icy.system.SystemUtil;
 import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -38,6 +44,295 @@ class ARGBImageBuilder
 {
     private static final int BLOC_SIZE = 512 * 512;
 
+    /**
+     * Combined scaler and colormap tables used to directly convert 8 / 16 bits image data (up to 4
+     * channels) to ARGB values.<br>
+     * For each enabled channel and for each possible raw data value we store the premultiplied RGB
+     * colormap contribution packed in a single int (10 bits per component so we can sum up to 4
+     * channels without overflow) and the colormap alpha value.<br>
+     * Tables are cached per LUT and rebuilt only when the LUT scalers or colormaps change.
+     */
+    static class ARGBTable
+    {
+        static final int MAX_CHANNEL = 4;
+
+        // cached tables
+        static final Map<LUT, ARGBTable> tables = new WeakHashMap<LUT, ARGBTable>();
+
+        final boolean byteData;
+        final boolean signed;
+        // LUT state the table has been built from
+        final double[] scalerState;
+        final int[] colormapState;
+        // image channel index for each enabled channel
+        final int[] channels;
+        // packed premultiplied RGB contribution (b | g << 10 | r << 20) for each raw value
+        final int[][] rgbs;
+        // alpha value for each raw value
+        final float[][] alphas;
+        // alpha colormap type flag
+        final boolean[] alphaTypes;
+
+        private ARGBTable(IcyBufferedImage image, LUT lut, boolean byteData, double[] scalerState,
+                int[] colormapState)
+        {
+            super();
+
+            this.byteData = byteData;
+            this.scalerState = scalerState;
+            this.colormapState = colormapState;
+
+            final int numChannel = image.getSizeC();
+            signed = image.getDataType_().isSigned();
+            final int size = byteData ? 256 : 65536;
+            final Scaler[] scalers = lut.getScalers();
+            final List<Integer> enabled = new ArrayList<Integer>();
+
+            // only enabled channels participate to the final color
+            for (int c = 0; c < numChannel; c++)
+                if (lut.getColorSpace().getColorMap(c).isEnabled())
+                    enabled.add(Integer.valueOf(c));
+
+            final int numEnabled = enabled.size();
+
+            channels = new int[numEnabled];
+            rgbs = new int[numEnabled][size];
+            alphas = new float[numEnabled][size];
+            alphaTypes = new boolean[numEnabled];
+
+            for (int k = 0; k < numEnabled; k++)
+            {
+                final int c = enabled.get(k).intValue();
+                final IcyColorMap colormap = lut.getColorSpace().getColorMap(c);
+                final Scaler scaler = scalers[c];
+                final int[][] premulRGB = colormap.getPremulRGB();
+                final float[] alphaMap = colormap.alpha.mapf;
+                final int[] rgb = rgbs[k];
+                final float[] alpha = alphas[k];
+
+                channels[k] = c;
+                alphaTypes[k] = (colormap.getType() == IcyColorMapType.ALPHA);
+
+                for (int index = 0; index < size; index++)
+                {
+                    // raw value for this index (same conversion as Scaler.scale(..) array methods)
+                    final int value;
+
+                    if (signed)
+                        value = byteData ? (byte) index : (short) index;
+                    else
+                        value = index;
+
+                    final int scaled = (int) scaler.scale(value);
+                    final int[] prgb = premulRGB[scaled];
+
+                    rgb[index] = prgb[0] | (prgb[1] << 10) | (prgb[2] << 20);
+                    alpha[index] = alphaMap[scaled];
+                }
+            }
+        }
+
+        /**
+         * Returns the ARGB table for the specified image and LUT (cached table is reused if the LUT
+         * did not change).<br>
+         * Returns <code>null</code> if the image is not compatible (more than 4 channels, not 8 / 16
+         * bits data, or image too small to amortize the table computation).
+         */
+        static ARGBTable get(IcyBufferedImage image, LUT lut)
+        {
+            final int numChannel = image.getSizeC();
+
+            if ((numChannel < 1) || (numChannel > MAX_CHANNEL) || (lut.getNumChannel() != numChannel))
+                return null;
+
+            final DataType javaType = image.getDataType_().getJavaType();
+            final int imageSize = image.getSizeX() * image.getSizeY();
+            final boolean byteData;
+
+            if (javaType == DataType.BYTE)
+                byteData = true;
+            // 16 bits table is only interesting if we have more pixels than table entries
+            else if ((javaType == DataType.SHORT) && (imageSize >= 65536))
+                byteData = false;
+            else
+                return null;
+
+            final boolean signed = image.getDataType_().isSigned();
+            final double[] scalerState = getScalerState(lut);
+            final int[] colormapState = getColormapState(lut);
+
+            synchronized (tables)
+            {
+                final ARGBTable table = tables.get(lut);
+
+                // LUT did not change --> reuse table
+                if ((table != null) && (table.byteData == byteData) && (table.signed == signed)
+                        && Arrays.equals(table.scalerState, scalerState)
+                        && Arrays.equals(table.colormapState, colormapState))
+                    return table;
+            }
+
+            final ARGBTable result = new ARGBTable(image, lut, byteData, scalerState, colormapState);
+
+            synchronized (tables)
+            {
+                tables.put(lut, result);
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns scalers state (bounds) and colormaps enabled state / type of the specified LUT.
+         */
+        private static double[] getScalerState(LUT lut)
+        {
+            final Scaler[] scalers = lut.getScalers();
+            final int numChannel = scalers.length;
+            final double[] result = new double[numChannel * 8];
+
+            for (int c = 0; c < numChannel; c++)
+            {
+                final Scaler scaler = scalers[c];
+                final IcyColorMap colormap = lut.getColorSpace().getColorMap(c);
+                final int off = c * 8;
+
+                result[off + 0] = scaler.getLeftIn();
+                result[off + 1] = scaler.getRightIn();
+                result[off + 2] = scaler.getLeftOut();
+                result[off + 3] = scaler.getRightOut();
+                result[off + 4] = scaler.isIntegerData() ? 1d : 0d;
+                result[off + 5] = scaler.isCrossed() ? 1d : 0d;
+                result[off + 6] = colormap.isEnabled() ? 1d : 0d;
+                result[off + 7] = colormap.getType().ordinal();
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns colormaps content (premultiplied RGB and alpha) of the specified LUT.
+         */
+        private static int[] getColormapState(LUT lut)
+        {
+            final int numChannel = lut.getNumChannel();
+            final int[] result = new int[numChannel * IcyColorMap.SIZE * 2];
+            int off = 0;
+
+            for (int c = 0; c < numChannel; c++)
+            {
+                final IcyColorMap colormap = lut.getColorSpace().getColorMap(c);
+                final int[][] premulRGB = colormap.getPremulRGB();
+                final float[] alphaMap = colormap.alpha.mapf;
+
+                for (int i = 0; i < IcyColorMap.SIZE; i++)
+                {
+                    final int[] prgb = premulRGB[i];
+
+                    result[off++] = prgb[0] | (prgb[1] << 10) | (prgb[2] << 20);
+                    result[off++] = Float.floatToIntBits(alphaMap[i]);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Build ARGB values of the specified image region
+         */
+        void fillARGBBuffer(IcyBufferedImage image, int[] dest, int offset, int length)
+        {
+            final int numChannel = channels.length;
+            final int end = offset + length;
+
+            if (byteData)
+            {
+                final byte[][] data = new byte[numChannel][];
+
+                for (int k = 0; k < numChannel; k++)
+                    data[k] = image.getDataXYAsByte(channels[k]);
+
+                for (int i = offset; i < end; i++)
+                {
+                    int rgb = 0;
+                    float alpha = 1f;
+                    float maxLocalAlpha = 0f;
+
+                    for (int k = 0; k < numChannel; k++)
+                    {
+                        final int index = data[k][i] & 0xFF;
+                        final float alphaValue = alphas[k][index];
+
+                        rgb += rgbs[k][index];
+                        // alpha channel ?
+                        if (alphaTypes[k])
+                            alpha = alphaValue;
+                        else if (alphaValue > maxLocalAlpha)
+                            maxLocalAlpha = alphaValue;
+                    }
+
+                    dest[i] = toARGB(rgb, alpha, maxLocalAlpha);
+                }
+            }
+            else
+            {
+                final short[][] data = new short[numChannel][];
+
+                for (int k = 0; k < numChannel; k++)
+                    data[k] = image.getDataXYAsShort(channels[k]);
+
+                for (int i = offset; i < end; i++)
+                {
+                    int rgb = 0;
+                    float alpha = 1f;
+                    float maxLocalAlpha = 0f;
+
+                    for (int k = 0; k < numChannel; k++)
+                    {
+                        final int index = data[k][i] & 0xFFFF;
+                        final float alphaValue = alphas[k][index];
+
+                        rgb += rgbs[k][index];
+                        // alpha channel ?
+                        if (alphaTypes[k])
+                            alpha = alphaValue;
+                        else if (alphaValue > maxLocalAlpha)
+                            maxLocalAlpha = alphaValue;
+                    }
+
+                    dest[i] = toARGB(rgb, alpha, maxLocalAlpha);
+                }
+            }
+        }
+
+        /**
+         * Same as {@link icy.image.colorspace.IcyColorSpace#toRGBUnnorm(int[])} from packed RGB sum
+         */
+        private static int toARGB(int rgb, float alpha, float maxLocalAlpha)
+        {
+            int b = rgb & 0x3FF;
+            int g = (rgb >> 10) & 0x3FF;
+            int r = (rgb >> 20) & 0x3FF;
+
+            // final alpha = alpha component value * maximum local alpha value
+            final int a = (int) (alpha * maxLocalAlpha * IcyColorMap.MAX_LEVEL);
+
+            if (a != 0)
+            {
+                final int inv = (1 << (IcyColorMap.COLORMAP_BITS + 8)) / a;
+
+                // normalize on alpha
+                b = (b * inv) >> 8;
+                g = (g * inv) >> 8;
+                r = (r * inv) >> 8;
+            }
+
+            return ((b > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : b)
+                    | (((g > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : g) << 8)
+                    | (((r > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : r) << 16) | (a << 24);
+        }
+    }
+
     class BlockBuilder implements Runnable
     {
         /**
@@ -45,12 +340,13 @@ class ARGBImageBuilder
          */
         private IcyBufferedImage image;
         private LUT lut;
+        private ARGBTable table;
         private int dest[];
         private int offset;
         private int length;
         private int numChannel;
 
-        BlockBuilder(IcyBufferedImage image, LUT lut, int[] dest, int offset, int length)
+        BlockBuilder(IcyBufferedImage image, LUT lut, ARGBTable table, int[] dest, int offset, int length)
         {
             super();
 
@@ -60,6 +356,7 @@ class ARGBImageBuilder
                 this.lut = image.createCompatibleLUT(false);
             else
                 this.lut = lut;
+            this.table = table;
             this.dest = dest;
             this.offset = offset;
             this.length = length;
@@ -73,6 +370,21 @@ class ARGBImageBuilder
         @Override
         public void run()
         {
+            // fast path (combined scaler and colormap tables)
+            if (table != null)
+            {
+                try
+                {
+                    table.fillARGBBuffer(image, dest, offset, length);
+                }
+                catch (Exception e)
+                {
+                    // we just ignore any exceptions here as we can be in asynch process
+                }
+
+                return;
+            }
+
             int[][] componentValues = null;
 
             try
@@ -192,16 +504,21 @@ class ARGBImageBuilder
         int offset = 0;
         try
         {
+            // use internal lut if specified lut is null
+            final LUT l = (lut == null) ? image.createCompatibleLUT(false) : lut;
+            // combined scaler / colormap tables for 8 / 16 bits images (null if not supported)
+            final ARGBTable table = ARGBTable.get(image, l);
+
             for (int i = 0; i < step; i++)
             {
                 // build bloc
-                futures.add(addBloc(image, lut, dest, offset, BLOC_SIZE));
+                futures.add(addBloc(image, l, table, dest, offset, BLOC_SIZE));
                 offset += BLOC_SIZE;
             }
 
             // last bloc
             if (offset < imageSize)
-                futures.add(addBloc(image, lut, dest, offset, imageSize - offset));
+                futures.add(addBloc(image, l, table, dest, offset, imageSize - offset));
 
             // wait until image is built
             waitCompletion(futures);
@@ -237,9 +554,9 @@ class ARGBImageBuilder
         return buildARGBImage(image, lut, null);
     }
 
-    private Future<?> addBloc(IcyBufferedImage image, LUT lut, int dest[], int offset, int length)
+    private Future<?> addBloc(IcyBufferedImage image, LUT lut, ARGBTable table, int dest[], int offset, int length)
     {
-        final BlockBuilder builder = new BlockBuilder(image, lut, dest, offset, length);
+        final BlockBuilder builder = new BlockBuilder(image, lut, table, dest, offset, length);
         Future<?> result = processor.submit(builder);
 
         // not accepted ? retry until it is accepted...
@@ -36,21 +36,18 @@ import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.PlanarImage;
 
@@ -73,7 +70,6 @@ import icy.math.Scaler;
 import icy.preferences.GeneralPreferences;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceIdImporter;
-import icy.system.SystemUtil;
 import icy.type.DataType;
 import icy.type.TypeUtil;
 import icy.type.collection.array.Array1DUtil;
@@ -81,7 +77,6 @@ import icy.type.collection.array.Array2DUtil;
 import icy.type.collection.array.ArrayUtil;
 import icy.type.collection.array.ByteArrayConvert;
 import icy.util.ReflectionUtil;
-import icy.util.StringUtil;
 import loci.formats.FormatException;
 import loci.formats.IFormatReader;
 import loci.formats.gui.SignedByteBuffer;
@@ -96,28 +91,60 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
 {
     static class WeakIcyBufferedImageReference extends WeakReference<IcyBufferedImage>
     {
-        final int hc;
+        final Integer id;
 
-        WeakIcyBufferedImageReference(IcyBufferedImage image)
+        WeakIcyBufferedImageReference(IcyBufferedImage image, Integer id)
         {
-            super(image);
+            super(image, releasedImages);
 
-            hc = System.identityHashCode(image);
+            this.id = id;
         }
+    }
 
-        @Override
-        public int hashCode()
+    /**
+     * Release resources (cached data, pending loading tasks) of released images
+     */
+    private static class ImageReleaseCleaner extends Thread
+    {
+        public ImageReleaseCleaner()
         {
-            return hc;
+            super("IcyBufferedImage cleaner");
+
+            setDaemon(true);
         }
 
         @Override
-        public boolean equals(Object obj)
+        public void run()
         {
-            if (obj instanceof WeakIcyBufferedImageReference)
-                return obj.hashCode() == hashCode();
+            while (!isInterrupted())
+            {
+                final WeakIcyBufferedImageReference ref;
 
-            return super.equals(obj);
+                try
+                {
+                    ref = (WeakIcyBufferedImageReference) releasedImages.remove();
+                }
+                catch (InterruptedException e)
+                {
+                    // end
+                    break;
+                }
+
+                // remove it from registry
+                images.remove(ref.id, ref);
+                // cancel any pending loading tasks for released images
+                imageDataLoader.cancelTasks(null);
+
+                try
+                {
+                    // image has been released, be sure to clear cache
+                    ImageCache.remove(ref.id.intValue());
+                }
+                catch (Throwable e)
+                {
+                    System.err.println(e.getMessage());
+                }
+            }
         }
     }
 
@@ -157,169 +184,65 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
     }
 
-    private static class ImageDataLoaderWorker implements Callable<Object>
-    {
-        final WeakReference<IcyBufferedImage> imageRef;
-
-        ImageDataLoaderWorker(IcyBufferedImage image)
-        {
-            super();
-
-            this.imageRef = new WeakReference<IcyBufferedImage>(image);
-        }
-
-        @Override
-        public Object call() throws Exception
-        {
-            final IcyBufferedImage image = imageRef.get();
-
-            // image has been released, we probably don't need its data anymore...
-            if (image == null)
-                return null;
-
-            // not null here
-            final ImageSourceInfo imageSourceInfo = image.imageSourceInfo;
-            final SequenceIdImporter imp = imageSourceInfo.imp;
-
-            // importer not opened ? --> cannot load
-            if (StringUtil.isEmpty(imp.getOpened()))
-                throw new IOException("Cannot load image data: Sequence importer is closed.");
-
-            final int sizeC = image.getSizeC();
-            // create the result array (always 2D native type)
-            final Object[] result = Array2DUtil.createArray(image.getDataType_(), sizeC);
-
-            // all channels ?
-            if ((imageSourceInfo.c == -1) && (sizeC > 1))
-            {
-                // better to directly load image
-                final IcyBufferedImage newImage = imp.getImage(imageSourceInfo.series, imageSourceInfo.resolution,
-                        imageSourceInfo.region, imageSourceInfo.z, imageSourceInfo.t);
-                // we want data in memory
-                newImage.setVolatile(false);
-                // then get data
-                for (int c = 0; c < sizeC; c++)
-                    result[c] = newImage.getDataXY(c);
-            }
-            else
-            {
-                // all channel for single channel image --> channel 0
-                final int startC = (imageSourceInfo.c == -1) ? 0 : imageSourceInfo.c;
-                // directly load pixel data
-                for (int c = 0; c < sizeC; c++)
-                    result[c] = imp.getPixels(imageSourceInfo.series, imageSourceInfo.resolution,
-                            imageSourceInfo.region, imageSourceInfo.z, imageSourceInfo.t, startC + c);
-            }
-
-            return result;
-        }
-
-        IcyBufferedImage getImage()
-        {
-            return imageRef.get();
-        }
-    }
+    /**
+     * Used for image / data loading from importer
+     */
+    static final ImageDataLoader imageDataLoader = new ImageDataLoader();
 
-    private static class ImageDataLoaderTask extends FutureTask<Object>
+    /**
+     * Returns the loader used to retrieve image data from importer (lazy loading / volatile image).<br>
+     * Can be used to get loading statistics.
+     */
+    public static ImageDataLoader getImageDataLoader()
     {
-        final ImageDataLoaderWorker worker;
-
-        ImageDataLoaderTask(ImageDataLoaderWorker worker)
-        {
-            super(worker);
+        return imageDataLoader;
+    }
 
-            this.worker = worker;
-        }
+    /**
+     * Used internally to find out an image from its id
+     */
+    static final ConcurrentMap<Integer, WeakIcyBufferedImageReference> images = new ConcurrentHashMap<Integer, WeakIcyBufferedImageReference>();
+    /**
+     * Released images references (registry cleanup)
+     */
+    static final ReferenceQueue<IcyBufferedImage> releasedImages = new ReferenceQueue<IcyBufferedImage>();
+    /**
+     * Image id generator
+     */
+    static final AtomicInteger idGenerator = new AtomicInteger();
 
-        IcyBufferedImage getImage()
-        {
-            return worker.getImage();
-        }
+    static
+    {
+        new ImageReleaseCleaner().start();
     }
 
-    private static class ImageDataLoader
+    /**
+     * Register the image in the image registry and returns its unique id
+     */
+    private static Integer register(IcyBufferedImage image)
     {
-        final ThreadPoolExecutor executor;
-
-        public ImageDataLoader()
-        {
-            super();
-
-            int numWorker = SystemUtil.getNumberOfCPUs();
-            executor = new ThreadPoolExecutor(numWorker, numWorker * 2, 5L, TimeUnit.SECONDS,
-                    new LinkedBlockingQueue<Runnable>());
-        }
-
-        Object loadImageData(IcyBufferedImage image) throws ExecutionException, InterruptedException
+        while (true)
         {
-            final ImageDataLoaderTask task = new ImageDataLoaderTask(new ImageDataLoaderWorker(image));
-
-            executor.execute(task);
-
-            try
-            {
-                return task.get();
-            }
-            catch (InterruptedException e)
-            {
-                // process interrupted ? remove task from executor queue if possible
-                executor.remove(task);
-                // cancel the task (without interrupting current running task as this close the importer)
-                task.cancel(false);
-
-                // re throw interrupt
-                throw e;
-            }
-        }
-
-        void cancelTasks(IcyBufferedImage image)
-        {
-            final List<ImageDataLoaderTask> tasks = new ArrayList<ImageDataLoaderTask>();
-            final BlockingQueue<Runnable> queue = executor.getQueue();
-
-            synchronized (queue)
-            {
-                for (Runnable task : queue)
-                {
-                    final ImageDataLoaderTask imgTask = (ImageDataLoaderTask) task;
-                    final IcyBufferedImage imgImage = imgTask.getImage();
+            final Integer result = Integer.valueOf(idGenerator.incrementAndGet());
+            final WeakIcyBufferedImageReference ref = new WeakIcyBufferedImageReference(image, result);
 
-                    if ((imgImage == null) || (imgImage == image))
-                        tasks.add(imgTask);
-                }
-            }
+            // id can be still used only if the generator wrapped around
+            if (images.putIfAbsent(result, ref) == null)
+                return result;
 
-            // remove pending tasks for that image
-            for (ImageDataLoaderTask task : tasks)
-            {
-                executor.remove(task);
-                task.cancel(false);
-            }
+            // not used anymore
+            ref.clear();
         }
     }
 
     /**
-     * Used for image / data loading from importer
-     */
-    static ImageDataLoader imageDataLoader = new ImageDataLoader();
-
-    /**
-     * Used internally to find out an image from its identity hash code
-     */
-    static Map<Integer, WeakIcyBufferedImageReference> images = new HashMap<Integer, WeakIcyBufferedImageReference>();
-    // static Map<Integer, Object> imagesMax = new HashMap<Integer, Object>();
-
-    /**
-     * Retrieve an {@link IcyBufferedImage} from its identity hash code
+     * Retrieve an {@link IcyBufferedImage} from its id
+     * 
+     * @see #getId()
      */
-    public static IcyBufferedImage getIcyBufferedImage(Integer idHashCode)
+    public static IcyBufferedImage getIcyBufferedImage(Integer id)
     {
-        final WeakIcyBufferedImageReference ref;
-
-        synchronized (images)
-        {
-            ref = images.get(idHashCode);
-        }
+        final WeakIcyBufferedImageReference ref = images.get(id);
 
         if (ref != null)
             return ref.get();
@@ -328,11 +251,13 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     }
 
     /**
-     * Retrieve an {@link IcyBufferedImage} from its identity hash code
+     * Retrieve an {@link IcyBufferedImage} from its id
+     * 
+     * @see #getId()
      */
-    public static IcyBufferedImage getIcyBufferedImage(int idHashCode)
+    public static IcyBufferedImage getIcyBufferedImage(int id)
     {
-        return getIcyBufferedImage(Integer.valueOf(idHashCode));
+        return getIcyBufferedImage(Integer.valueOf(id));
     }
 
     /**
@@ -701,11 +626,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      */
     protected ImageSourceInfo imageSourceInfo;
 
+    /**
+     * unique image id
+     */
+    protected final Integer id;
+
     /**
      * automatic update of channel bounds
      */
     protected boolean autoUpdateChannelBounds;
 
+    /**
+     * tracked channel data bounds (null entry means bounds are unknown and need to be calculated)
+     */
+    protected final double[][] channelDataBounds;
+
     /**
      * required cached field as raster is volatile
      */
@@ -763,13 +698,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         super(cm, wr, false, null);
 
-        // store it in the hashmap (weak reference)
-        synchronized (images)
-        {
-            images.put(Integer.valueOf(System.identityHashCode(this)), new WeakIcyBufferedImageReference(this));
-        }
+        // store it in the registry (weak reference)
+        id = register(this);
 
         imageSourceInfo = null;
+        channelDataBounds = new double[cm.getNumComponents()][];
         width = wr.getWidth();
         height = wr.getHeight();
         minX = wr.getMinX();
@@ -1089,21 +1022,14 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         this(IcyColorModel.createInstance(numComponents, dataType, false), width, height);
     }
 
-    @Override
-    protected void finalize() throws Throwable
+    /**
+     * Returns the unique id of this image (used as image cache key).
+     * 
+     * @see #getIcyBufferedImage(int)
+     */
+    public int getId()
     {
-        // cancel any pending loading tasks for this image
-        imageDataLoader.cancelTasks(this);
-        // image has been released, be sure to clear cache
-        ImageCache.remove(this);
-
-        // remove it from hashmap
-        synchronized (images)
-        {
-            images.remove(Integer.valueOf(System.identityHashCode(this)));
-        }
-
-        super.finalize();
+        return id.intValue();
     }
 
     public ImageSourceInfo getImageSourceInfo()
@@ -2166,15 +2092,117 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         if (!isDataInitialized())
             return new double[] {0d, 0d};
 
-        final DataType dataType = getDataType_();
+        // single pass (and parallel for large image) min / max calculation
+        return ArrayMath.minMax(getDataXY(channel), getDataType_().isSigned());
+    }
 
-        final boolean signed = dataType.isSigned();
-        final Object data = getDataXY(channel);
+    /**
+     * Returns the tracked bounds (min and max values) of the specified channel data or <code>null</code> if bounds
+     * are not known (need to be calculated).
+     */
+    protected double[] getTrackedChannelBounds(int channel)
+    {
+        synchronized (channelDataBounds)
+        {
+            final double[] bounds = channelDataBounds[channel];
 
-        final double min = ArrayMath.min(data, signed);
-        final double max = ArrayMath.max(data, signed);
+            if (bounds == null)
+                return null;
 
-        return new double[] {min, max};
+            return new double[] {bounds[0], bounds[1]};
+        }
+    }
+
+    /**
+     * Set the tracked bounds (min and max values) of the specified channel data (<code>null</code> to invalidate
+     * them).
+     */
+    protected void setTrackedChannelBounds(int channel, double[] bounds)
+    {
+        synchronized (channelDataBounds)
+        {
+            if (bounds == null)
+                channelDataBounds[channel] = null;
+            else
+                channelDataBounds[channel] = new double[] {bounds[0], bounds[1]};
+        }
+    }
+
+    /**
+     * Invalidate tracked bounds of all channels so they will be fully recalculated on next update.
+     */
+    protected void invalidateTrackedChannelsBounds()
+    {
+        synchronized (channelDataBounds)
+        {
+            Arrays.fill(channelDataBounds, null);
+        }
+    }
+
+    /**
+     * Update tracked bounds of specified channel after the whole channel data has been replaced by the given data.
+     */
+    protected void channelDataReplaced(int channel, Object data)
+    {
+        // bounds are only tracked when automatic update is enabled
+        if (autoUpdateChannelBounds && isDataInitialized())
+            setTrackedChannelBounds(channel, ArrayMath.minMax(data, getDataType_().isSigned()));
+        else
+            setTrackedChannelBounds(channel, null);
+    }
+
+    /**
+     * Update tracked bounds of specified channel after some values has been modified.
+     * 
+     * @param channel
+     *        modified channel
+     * @param min
+     *        minimum of written values
+     * @param max
+     *        maximum of written values
+     * @param boundOverwritten
+     *        set to <code>true</code> if a value equal to a tracked bound has been overwritten by an inner value
+     *        (bounds may then shrink and need to be recalculated)
+     */
+    protected void channelValuesChanged(int channel, double min, double max, boolean boundOverwritten)
+    {
+        synchronized (channelDataBounds)
+        {
+            final double[] bounds = channelDataBounds[channel];
+
+            // bounds not known --> will be calculated later
+            if (bounds == null)
+                return;
+
+            if (boundOverwritten)
+                channelDataBounds[channel] = null;
+            else
+            {
+                if (min < bounds[0])
+                    bounds[0] = min;
+                if (max > bounds[1])
+                    bounds[1] = max;
+            }
+        }
+    }
+
+    /**
+     * Update tracked bounds of specified channel after a single value modification.
+     */
+    protected void channelValueChanged(int channel, double oldValue, double newValue)
+    {
+        synchronized (channelDataBounds)
+        {
+            final double[] bounds = channelDataBounds[channel];
+
+            // bounds not known --> will be calculated later
+            if (bounds == null)
+                return;
+
+            channelValuesChanged(channel, newValue, newValue,
+                    ((oldValue == bounds[0]) && (newValue > oldValue))
+                            || ((oldValue == bounds[1]) && (newValue < oldValue)));
+        }
     }
 
     /**
@@ -2643,9 +2671,20 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     }
 
     /**
-     * Update channels bounds (min and max values).
+     * Update channels bounds (min and max values).<br>
+     * Bounds of all channels are fully recalculated from image data.
      */
     public void updateChannelsBounds()
+    {
+        invalidateTrackedChannelsBounds();
+        refreshChannelsBounds();
+    }
+
+    /**
+     * Update channels bounds (min and max values) from tracked data bounds.<br>
+     * Only channels for which bounds are unknown are recalculated from image data.
+     */
+    protected void refreshChannelsBounds()
     {
         final IcyColorModel cm = getIcyColorModel();
 
@@ -2655,8 +2694,16 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
 
             for (int c = 0; c < sizeC; c++)
             {
-                // get data type bounds
-                final double[] bounds = getCalculatedChannelBounds(c);
+                double[] bounds = getTrackedChannelBounds(c);
+
+                // unknown bounds ? --> calculate them
+                if (bounds == null)
+                {
+                    bounds = getCalculatedChannelBounds(c);
+                    // don't track bounds of uninitialized data
+                    if (isDataInitialized())
+                        setTrackedChannelBounds(c, bounds);
+                }
 
                 cm.setComponentAbsBounds(c, adjustBoundsForDataType(bounds));
                 cm.setComponentUserBounds(c, bounds);
@@ -3040,7 +3087,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            ArrayUtil.arrayToArray(values, getDataXY(c), getDataType_().isSigned());
+            final Object data = getDataXY(c);
+
+            ArrayUtil.arrayToArray(values, data, getDataType_().isSigned());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3048,7 +3099,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3773,7 +3824,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            System.arraycopy(values, 0, getDataXYAsByte(c), 0, getSizeX() * getSizeY());
+            final byte[] data = getDataXYAsByte(c);
+
+            System.arraycopy(values, 0, data, 0, getSizeX() * getSizeY());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3781,7 +3836,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3792,7 +3847,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            System.arraycopy(values, 0, getDataXYAsShort(c), 0, getSizeX() * getSizeY());
+            final short[] data = getDataXYAsShort(c);
+
+            System.arraycopy(values, 0, data, 0, getSizeX() * getSizeY());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3800,7 +3859,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3811,7 +3870,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            System.arraycopy(values, 0, getDataXYAsInt(c), 0, getSizeX() * getSizeY());
+            final int[] data = getDataXYAsInt(c);
+
+            System.arraycopy(values, 0, data, 0, getSizeX() * getSizeY());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3819,7 +3882,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3830,7 +3893,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            System.arraycopy(values, 0, getDataXYAsFloat(c), 0, getSizeX() * getSizeY());
+            final float[] data = getDataXYAsFloat(c);
+
+            System.arraycopy(values, 0, data, 0, getSizeX() * getSizeY());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3838,7 +3905,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3849,7 +3916,11 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
-            System.arraycopy(values, 0, getDataXYAsDouble(c), 0, getSizeX() * getSizeY());
+            final double[] data = getDataXYAsDouble(c);
+
+            System.arraycopy(values, 0, data, 0, getSizeX() * getSizeY());
+            // compute bounds from new data
+            channelDataReplaced(c, data);
         }
         finally
         {
@@ -3857,7 +3928,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3870,14 +3941,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         final WritableRaster wr = getRaster();
         final byte[][] data = ((DataBufferByte) wr.getDataBuffer()).getBankData();
 
+        final DataType dataType = getDataType_();
+
         for (int comp = 0; comp < len; comp++)
+        {
             // ignore band offset as it's always 0 here
+            final double oldValue = Array1DUtil.getValue(data[comp], offset, dataType);
             data[comp][offset] = values[comp];
+            // update channel bounds from modified value
+            channelValueChanged(comp, oldValue, Array1DUtil.getValue(data[comp], offset, dataType));
+        }
 
         // save changed data in cache (need to do cache behind here and still that is terribly slow !!)
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3895,14 +3973,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         else
             data = ((DataBufferShort) db).getBankData();
 
+        final DataType dataType = getDataType_();
+
         for (int comp = 0; comp < len; comp++)
+        {
             // ignore band offset as it's always 0 here
+            final double oldValue = Array1DUtil.getValue(data[comp], offset, dataType);
             data[comp][offset] = values[comp];
+            // update channel bounds from modified value
+            channelValueChanged(comp, oldValue, Array1DUtil.getValue(data[comp], offset, dataType));
+        }
 
         // save changed data in cache (need to do cache behind here and still that is terribly slow !!)
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3915,14 +4000,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         final WritableRaster wr = getRaster();
         final int[][] data = ((DataBufferInt) wr.getDataBuffer()).getBankData();
 
+        final DataType dataType = getDataType_();
+
         for (int comp = 0; comp < len; comp++)
+        {
             // ignore band offset as it's always 0 here
+            final double oldValue = Array1DUtil.getValue(data[comp], offset, dataType);
             data[comp][offset] = values[comp];
+            // update channel bounds from modified value
+            channelValueChanged(comp, oldValue, Array1DUtil.getValue(data[comp], offset, dataType));
+        }
 
         // save changed data in cache (need to do cache behind here and still that is terribly slow !!)
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3935,14 +4027,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         final WritableRaster wr = getRaster();
         final float[][] data = ((DataBufferFloat) wr.getDataBuffer()).getBankData();
 
+        final DataType dataType = getDataType_();
+
         for (int comp = 0; comp < len; comp++)
+        {
             // ignore band offset as it's always 0 here
+            final double oldValue = Array1DUtil.getValue(data[comp], offset, dataType);
             data[comp][offset] = values[comp];
+            // update channel bounds from modified value
+            channelValueChanged(comp, oldValue, Array1DUtil.getValue(data[comp], offset, dataType));
+        }
 
         // save changed data in cache (need to do cache behind here and still that is terribly slow !!)
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3955,14 +4054,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         final WritableRaster wr = getRaster();
         final double[][] data = ((DataBufferDouble) wr.getDataBuffer()).getBankData();
 
+        final DataType dataType = getDataType_();
+
         for (int comp = 0; comp < len; comp++)
+        {
             // ignore band offset as it's always 0 here
+            final double oldValue = Array1DUtil.getValue(data[comp], offset, dataType);
             data[comp][offset] = values[comp];
+            // update channel bounds from modified value
+            channelValueChanged(comp, oldValue, Array1DUtil.getValue(data[comp], offset, dataType));
+        }
 
         // save changed data in cache (need to do cache behind here and still that is terribly slow !!)
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -3983,8 +4089,15 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         lockRaster();
         try
         {
+            final Object data = getDataXY(c);
+            final int offset = getOffset(x, y);
+            final DataType dataType = getDataType_();
+            final double oldValue = Array1DUtil.getValue(data, offset, dataType);
+
             // set value
-            Array1DUtil.setValue(getDataXY(c), getOffset(x, y), getDataType_(), value);
+            Array1DUtil.setValue(data, offset, dataType, value);
+            // update channel bounds from modified value
+            channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, dataType));
         }
         finally
         {
@@ -3993,7 +4106,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4055,11 +4168,17 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         final WritableRaster wr = getRaster();
         // ignore band offset as it's always 0 here
-        (((DataBufferByte) wr.getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
+        final byte[] data = ((DataBufferByte) wr.getDataBuffer()).getData(c);
+        final int offset = x + (y * getWidth());
+        final double oldValue = Array1DUtil.getValue(data, offset, getDataType_());
+
+        data[offset] = value;
+        // update channel bounds from modified value
+        channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, getDataType_()));
         // save changed data in cache
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4083,15 +4202,22 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         final WritableRaster wr = getRaster();
         final DataBuffer db = wr.getDataBuffer();
+        final short[] data;
         if (db instanceof DataBufferUShort)
             // ignore band offset as it's always 0 here
-            (((DataBufferUShort) db).getData(c))[x + (y * getWidth())] = value;
+            data = ((DataBufferUShort) db).getData(c);
         else
-            (((DataBufferShort) db).getData(c))[x + (y * getWidth())] = value;
+            data = ((DataBufferShort) db).getData(c);
+        final int offset = x + (y * getWidth());
+        final double oldValue = Array1DUtil.getValue(data, offset, getDataType_());
+
+        data[offset] = value;
+        // update channel bounds from modified value
+        channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, getDataType_()));
         // save changed data in cache
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4110,11 +4236,17 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         final WritableRaster wr = getRaster();
         // ignore band offset as it's always 0 here
-        (((DataBufferInt) wr.getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
+        final int[] data = ((DataBufferInt) wr.getDataBuffer()).getData(c);
+        final int offset = x + (y * getWidth());
+        final double oldValue = Array1DUtil.getValue(data, offset, getDataType_());
+
+        data[offset] = value;
+        // update channel bounds from modified value
+        channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, getDataType_()));
         // save changed data in cache
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4133,11 +4265,17 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         final WritableRaster wr = getRaster();
         // ignore band offset as it's always 0 here
-        (((DataBufferFloat) wr.getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
+        final float[] data = ((DataBufferFloat) wr.getDataBuffer()).getData(c);
+        final int offset = x + (y * getWidth());
+        final double oldValue = Array1DUtil.getValue(data, offset, getDataType_());
+
+        data[offset] = value;
+        // update channel bounds from modified value
+        channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, getDataType_()));
         // save changed data in cache
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4156,11 +4294,17 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     {
         final WritableRaster wr = getRaster();
         // ignore band offset as it's always 0 here
-        (((DataBufferDouble) wr.getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
+        final double[] data = ((DataBufferDouble) wr.getDataBuffer()).getData(c);
+        final int offset = x + (y * getWidth());
+        final double oldValue = Array1DUtil.getValue(data, offset, getDataType_());
+
+        data[offset] = value;
+        // update channel bounds from modified value
+        channelValueChanged(c, oldValue, Array1DUtil.getValue(data, offset, getDataType_()));
         // save changed data in cache
         saveRasterInCache(wr);
         // notify data changed
-        dataChanged();
+        internalDataChanged();
     }
 
     /**
@@ -4910,9 +5054,20 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
     }
 
     /**
-     * notify image data has changed
+     * notify image data has changed<br>
+     * Bounds of all channels will be recalculated from image data.
      */
     public void dataChanged()
+    {
+        // we don't know which data has been modified
+        invalidateTrackedChannelsBounds();
+        internalDataChanged();
+    }
+
+    /**
+     * notify image data has changed (tracked channel bounds should be already updated)
+     */
+    protected void internalDataChanged()
     {
         updater.changed(new IcyBufferedImageEvent(this, IcyBufferedImageEventType.DATA_CHANGED));
     }
@@ -4985,9 +5140,9 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         {
             // do here global process on image data change
             case DATA_CHANGED:
-                // update image components bounds
+                // update image components bounds (only recalculate modified channels)
                 if (autoUpdateChannelBounds)
-                    updateChannelsBounds();
+                    refreshChannelsBounds();
                 break;
 
             // do here global process on image bounds change
@@ -22,16 +22,9 @@ import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.List;
 
-import javax.media.jai.BorderExtender;
-import javax.media.jai.Interpolation;
-import javax.media.jai.JAI;
-import javax.media.jai.RenderedOp;
-import javax.media.jai.operator.RotateDescriptor;
-import javax.media.jai.operator.ScaleDescriptor;
 import javax.swing.SwingConstants;
 
 import icy.image.lut.LUT;
@@ -51,7 +44,7 @@ public class IcyBufferedImageUtil
 {
     public static enum FilterType
     {
-        NEAREST, BILINEAR, BICUBIC
+        NEAREST, BILINEAR, BICUBIC, LANCZOS
     };
 
     /**
@@ -698,7 +691,8 @@ public class IcyBufferedImageUtil
     }
 
     /**
-     * Return a rotated version of the source image with specified parameters.
+     * Return a rotated version of the source image with specified parameters.<br>
+     * The result image is large enough to contain the whole rotated image (empty area are 0 filled).
      * 
      * @param source
      *        source image
@@ -714,33 +708,8 @@ public class IcyBufferedImageUtil
     public static IcyBufferedImage rotate(IcyBufferedImage source, double xOrigin, double yOrigin, double angle,
             FilterType filterType)
     {
-        if (source == null)
-            return null;
-
-        final Interpolation interpolation;
-
-        switch (filterType)
-        {
-            default:
-            case NEAREST:
-                interpolation = Interpolation.getInstance(Interpolation.INTERP_NEAREST);
-                break;
-
-            case BILINEAR:
-                interpolation = Interpolation.getInstance(Interpolation.INTERP_BILINEAR);
-                break;
-
-            case BICUBIC:
-                interpolation = Interpolation.getInstance(Interpolation.INTERP_BICUBIC);
-                break;
-        }
-
-        // use JAI scaler (use a copy to avoid source alteration)
-        final RenderedOp renderedOp = RotateDescriptor.create(getCopy(source), Float.valueOf((float) xOrigin),
-                Float.valueOf((float) yOrigin), Float.valueOf((float) angle), interpolation, null,
-                new RenderingHints(JAI.KEY_BORDER_EXTENDER, BorderExtender.createInstance(BorderExtender.BORDER_ZERO)));
-
-        return IcyBufferedImage.createFrom(renderedOp, source.isSignedDataType());
+        // directly work on source data (no copy needed)
+        return ImageResampler.rotate(source, xOrigin, yOrigin, angle, filterType);
     }
 
     /**
@@ -1369,47 +1338,8 @@ public class IcyBufferedImageUtil
             result.copyData(source, null, new Point(xt, yt));
         }
         else
-        {
-            final Float xScale = Float.valueOf((float) width / srcW);
-            final Float yScale = Float.valueOf((float) height / srcH);
-            final Interpolation interpolation;
-
-            switch (filterType)
-            {
-                default:
-                case NEAREST:
-                    interpolation = Interpolation.getInstance(Interpolation.INTERP_NEAREST);
-                    break;
-
-                case BILINEAR:
-                    interpolation = Interpolation.getInstance(Interpolation.INTERP_BILINEAR);
-                    break;
-
-                case BICUBIC:
-                    interpolation = Interpolation.getInstance(Interpolation.INTERP_BICUBIC);
-                    break;
-            }
-
-            // use a copy as JAI may alter source data
-            final IcyBufferedImage srcCopy = getCopy(source);
-
-            // better to lock raster during JAI operation
-            srcCopy.lockRaster();
-            try
-            {
-                // use JAI scaler
-                final RenderedOp renderedOp = ScaleDescriptor.create(srcCopy, xScale, yScale, Float.valueOf(0f),
-                        Float.valueOf(0f), interpolation, new RenderingHints(JAI.KEY_BORDER_EXTENDER,
-                                BorderExtender.createInstance(BorderExtender.BORDER_COPY)));
-
-                // get result
-                result = IcyBufferedImage.createFrom(renderedOp, source.isSignedDataType());
-            }
-            finally
-            {
-                srcCopy.releaseRaster(false);
-            }
-        }
+            // separable resampling directly on source data (no copy needed)
+            result = ImageResampler.scale(source, width, height, filterType);
 
         return result;
     }
@@ -57,6 +57,12 @@ public class ImageDataIterator implements DataIterator
     protected boolean changed;
     protected boolean done;
     protected Object data;
+    // channel bounds tracking (null if bounds are unknown or need to be recalculated)
+    protected double[] trackedBounds;
+    protected double writtenMin;
+    protected double writtenMax;
+    // a bound value has been overwritten --> channel bounds need to be recalculated on flush
+    protected boolean boundOverwritten;
 
     /**
      * Create a new ImageData iterator to iterate data through the specified XY region and channel.
@@ -102,6 +108,7 @@ public class ImageDataIterator implements DataIterator
         h = finalBounds.height;
 
         changed = false;
+        initBoundsTracking();
 
         // start iterator
         reset();
@@ -318,10 +325,50 @@ public class ImageDataIterator implements DataIterator
         if (done)
             throw new NoSuchElementException(null);
 
-        Array1DUtil.setValue(data, imgOff, dataType, value);
+        // channel bounds tracked ? --> update them from modified value
+        if ((trackedBounds != null) && !boundOverwritten)
+        {
+            final double oldValue = Array1DUtil.getValue(data, imgOff, dataType);
+
+            Array1DUtil.setValue(data, imgOff, dataType, value);
+
+            final double newValue = Array1DUtil.getValue(data, imgOff, dataType);
+            // current bounds include values written since last flush
+            final double curMin = Math.min(trackedBounds[0], writtenMin);
+            final double curMax = Math.max(trackedBounds[1], writtenMax);
+
+            // we overwrote a bound value with an inner value --> bounds need to be recalculated
+            if (((oldValue == curMin) && (newValue > oldValue)) || ((oldValue == curMax) && (newValue < oldValue)))
+                boundOverwritten = true;
+            else
+            {
+                if (newValue < writtenMin)
+                    writtenMin = newValue;
+                if (newValue > writtenMax)
+                    writtenMax = newValue;
+            }
+        }
+        else
+            Array1DUtil.setValue(data, imgOff, dataType, value);
+
         changed = true;
     }
 
+    /**
+     * Initialize channel bounds tracking of modified data
+     */
+    protected void initBoundsTracking()
+    {
+        if ((image != null) && (c >= 0) && (c < image.getSizeC()))
+            trackedBounds = image.getTrackedChannelBounds(c);
+        else
+            trackedBounds = null;
+
+        writtenMin = Double.MAX_VALUE;
+        writtenMax = -Double.MAX_VALUE;
+        boundOverwritten = false;
+    }
+
     /**
      * Returns current X position.
      */
@@ -375,9 +422,29 @@ public class ImageDataIterator implements DataIterator
 
     public void flush()
     {
-        // release image raster and save changes to cache
         if (image != null)
+        {
+            if (changed)
+            {
+                // bound value overwritten --> rescan channel while we still hold the data
+                if (boundOverwritten)
+                    image.setTrackedChannelBounds(c, image.getCalculatedChannelBounds(c));
+                // update image channel bounds from modified data only
+                else if (trackedBounds != null)
+                    image.channelValuesChanged(c, writtenMin, writtenMax, false);
+                else
+                    image.setTrackedChannelBounds(c, null);
+            }
+
+            // release image raster and save changes to cache
             image.releaseRaster(changed);
+
+            // notify data changed
+            if (changed)
+                image.internalDataChanged();
+        }
+
         changed = false;
+        initBoundsTracking();
     }
 }
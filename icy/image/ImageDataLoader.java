@@ -0,0 +1,468 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import icy.image.IcyBufferedImage.ImageSourceInfo;
+import icy.sequence.SequenceIdImporter;
+import icy.system.SystemUtil;
+import icy.type.collection.array.Array2DUtil;
+import icy.util.StringUtil;
+
+/**
+ * Loader used to retrieve {@link IcyBufferedImage} data from its importer (lazy loading / volatile image).<br>
+ * Pending requests are grouped by importer and series and processed in plane order (T, Z, C) by a limited number of
+ * workers per importer so we don't over allocate importer resources (as Bio-Formats readers). Concurrent requests
+ * for the same image share the same loading task.
+ *
+ * @author Stephane
+ */
+public class ImageDataLoader
+{
+    private static class ImporterKey
+    {
+        final SequenceIdImporter imp;
+        final int series;
+
+        ImporterKey(SequenceIdImporter imp, int series)
+        {
+            super();
+
+            this.imp = imp;
+            this.series = series;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(imp) ^ (series << 16);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof ImporterKey)
+            {
+                final ImporterKey key = (ImporterKey) obj;
+
+                return (key.imp == imp) && (key.series == series);
+            }
+
+            return super.equals(obj);
+        }
+    }
+
+    private static class ImageDataLoaderWorker implements Callable<Object>
+    {
+        final WeakReference<IcyBufferedImage> imageRef;
+
+        ImageDataLoaderWorker(IcyBufferedImage image)
+        {
+            super();
+
+            this.imageRef = new WeakReference<IcyBufferedImage>(image);
+        }
+
+        @Override
+        public Object call() throws Exception
+        {
+            final IcyBufferedImage image = imageRef.get();
+
+            // image has been released, we probably don't need its data anymore...
+            if (image == null)
+                return null;
+
+            // not null here
+            final ImageSourceInfo imageSourceInfo = image.imageSourceInfo;
+            final SequenceIdImporter imp = imageSourceInfo.imp;
+
+            // importer not opened ? --> cannot load
+            if (StringUtil.isEmpty(imp.getOpened()))
+                throw new IOException("Cannot load image data: Sequence importer is closed.");
+
+            final int sizeC = image.getSizeC();
+            // create the result array (always 2D native type)
+            final Object[] result = Array2DUtil.createArray(image.getDataType_(), sizeC);
+
+            // all channels ?
+            if ((imageSourceInfo.c == -1) && (sizeC > 1))
+            {
+                // better to directly load image (single importer access for all channels)
+                final IcyBufferedImage newImage = imp.getImage(imageSourceInfo.series, imageSourceInfo.resolution,
+                        imageSourceInfo.region, imageSourceInfo.z, imageSourceInfo.t);
+                // we want data in memory
+                newImage.setVolatile(false);
+                // then get data
+                for (int c = 0; c < sizeC; c++)
+                    result[c] = newImage.getDataXY(c);
+            }
+            else
+            {
+                // all channel for single channel image --> channel 0
+                final int startC = (imageSourceInfo.c == -1) ? 0 : imageSourceInfo.c;
+                // directly load pixel data
+                for (int c = 0; c < sizeC; c++)
+                    result[c] = imp.getPixels(imageSourceInfo.series, imageSourceInfo.resolution,
+                            imageSourceInfo.region, imageSourceInfo.z, imageSourceInfo.t, startC + c);
+            }
+
+            return result;
+        }
+
+        IcyBufferedImage getImage()
+        {
+            return imageRef.get();
+        }
+    }
+
+    private class ImageDataLoaderTask extends FutureTask<Object> implements Comparable<ImageDataLoaderTask>
+    {
+        final ImageDataLoaderWorker worker;
+        final ImporterKey key;
+        final int t;
+        final int z;
+        final int c;
+        final long submitTime;
+        // number of threads waiting for this task result
+        int waiters;
+        long startTime;
+
+        ImageDataLoaderTask(ImageDataLoaderWorker worker, ImporterKey key, ImageSourceInfo info)
+        {
+            super(worker);
+
+            this.worker = worker;
+            this.key = key;
+            t = info.t;
+            z = info.z;
+            c = info.c;
+            submitTime = System.nanoTime();
+            waiters = 0;
+            startTime = 0L;
+        }
+
+        IcyBufferedImage getImage()
+        {
+            return worker.getImage();
+        }
+
+        @Override
+        public void run()
+        {
+            startTime = System.nanoTime();
+
+            super.run();
+        }
+
+        @Override
+        protected void done()
+        {
+            taskDone(this);
+        }
+
+        @Override
+        public int compareTo(ImageDataLoaderTask o)
+        {
+            // read planes in file order
+            if (t != o.t)
+                return (t < o.t) ? -1 : 1;
+            if (z != o.z)
+                return (z < o.z) ? -1 : 1;
+            if (c != o.c)
+                return (c < o.c) ? -1 : 1;
+
+            return 0;
+        }
+    }
+
+    private static class ImporterQueue
+    {
+        final ImporterKey key;
+        final PriorityQueue<ImageDataLoaderTask> tasks;
+        int numWorker;
+
+        ImporterQueue(ImporterKey key)
+        {
+            super();
+
+            this.key = key;
+            tasks = new PriorityQueue<ImageDataLoaderTask>();
+            numWorker = 0;
+        }
+    }
+
+    /**
+     * Process all pending tasks of an importer queue
+     */
+    private class ImporterQueueWorker implements Runnable
+    {
+        final ImporterQueue queue;
+
+        ImporterQueueWorker(ImporterQueue queue)
+        {
+            super();
+
+            this.queue = queue;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final ImageDataLoaderTask task;
+
+                synchronized (ImageDataLoader.this)
+                {
+                    task = queue.tasks.poll();
+
+                    if (task == null)
+                    {
+                        queue.numWorker--;
+                        // queue not anymore used ? --> remove it
+                        if (queue.numWorker == 0)
+                            queues.remove(queue.key);
+                        return;
+                    }
+
+                    pendingCount--;
+                }
+
+                // cancelled tasks don't do anything here
+                task.run();
+            }
+        }
+    }
+
+    final ThreadPoolExecutor executor;
+    final int maxWorkerPerImporter;
+    final Map<ImporterKey, ImporterQueue> queues;
+    final Map<IcyBufferedImage, ImageDataLoaderTask> inFlight;
+
+    // statistics
+    int pendingCount;
+    long loadedCount;
+    long totalLatency;
+    long totalLoadTime;
+
+    public ImageDataLoader()
+    {
+        super();
+
+        final int numWorker = SystemUtil.getNumberOfCPUs();
+
+        executor = new ThreadPoolExecutor(numWorker, numWorker, 5L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        // don't use all workers on a single importer so we limit the number of allocated readers
+        maxWorkerPerImporter = Math.max(1, numWorker / 2);
+        queues = new HashMap<ImporterKey, ImporterQueue>();
+        inFlight = new WeakHashMap<IcyBufferedImage, ImageDataLoaderTask>();
+
+        pendingCount = 0;
+        loadedCount = 0L;
+        totalLatency = 0L;
+        totalLoadTime = 0L;
+    }
+
+    /**
+     * Load and returns data of the specified image from its importer (image source information should be defined).
+     * Internally data is always returned as a 2D native array.
+     */
+    Object loadImageData(IcyBufferedImage image) throws ExecutionException, InterruptedException
+    {
+        final ImageDataLoaderTask task;
+
+        synchronized (this)
+        {
+            final ImageDataLoaderTask current = inFlight.get(image);
+
+            // already loading this image ? --> just wait for it
+            if ((current != null) && !current.isDone())
+                task = current;
+            else
+            {
+                final ImageSourceInfo info = image.imageSourceInfo;
+                final ImporterKey key = new ImporterKey(info.imp, info.series);
+
+                task = new ImageDataLoaderTask(new ImageDataLoaderWorker(image), key, info);
+                inFlight.put(image, task);
+
+                ImporterQueue queue = queues.get(key);
+                if (queue == null)
+                {
+                    queue = new ImporterQueue(key);
+                    queues.put(key, queue);
+                }
+
+                queue.tasks.add(task);
+                pendingCount++;
+
+                // start a new worker on this importer if possible
+                if (queue.numWorker < maxWorkerPerImporter)
+                {
+                    queue.numWorker++;
+                    executor.execute(new ImporterQueueWorker(queue));
+                }
+            }
+
+            task.waiters++;
+        }
+
+        try
+        {
+            return task.get();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                // process interrupted and nobody else waiting for this task ? --> cancel it
+                if ((--task.waiters == 0) && !task.isDone())
+                    cancelTask(task);
+            }
+        }
+    }
+
+    /**
+     * Cancel the given task (without interrupting current running task as this close the importer), should be called
+     * while holding the loader lock
+     */
+    private void cancelTask(ImageDataLoaderTask task)
+    {
+        final ImporterQueue queue = queues.get(task.key);
+
+        // remove it from its queue
+        if ((queue != null) && queue.tasks.remove(task))
+            pendingCount--;
+
+        task.cancel(false);
+    }
+
+    synchronized void taskDone(ImageDataLoaderTask task)
+    {
+        final IcyBufferedImage image = task.getImage();
+
+        if ((image != null) && (inFlight.get(image) == task))
+            inFlight.remove(image);
+
+        // statistics (only for completed tasks)
+        if (!task.isCancelled())
+        {
+            final long time = System.nanoTime();
+
+            loadedCount++;
+            totalLatency += time - task.submitTime;
+            totalLoadTime += time - task.startTime;
+        }
+    }
+
+    /**
+     * Cancel all pending loading tasks for the specified image (or for released images)
+     */
+    synchronized void cancelTasks(IcyBufferedImage image)
+    {
+        final List<ImageDataLoaderTask> tasks = new ArrayList<ImageDataLoaderTask>();
+
+        for (ImporterQueue queue : queues.values())
+        {
+            for (ImageDataLoaderTask task : queue.tasks)
+            {
+                final IcyBufferedImage taskImage = task.getImage();
+
+                if ((taskImage == null) || (taskImage == image))
+                    tasks.add(task);
+            }
+        }
+
+        // remove pending tasks for that image
+        for (ImageDataLoaderTask task : tasks)
+            cancelTask(task);
+    }
+
+    /**
+     * Returns the number of loading requests waiting to be processed.
+     */
+    public synchronized int getQueueSize()
+    {
+        return pendingCount;
+    }
+
+    /**
+     * Returns the number of loading requests currently processed.
+     */
+    public int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of images loaded since last statistics reset.
+     */
+    public synchronized long getLoadedCount()
+    {
+        return loadedCount;
+    }
+
+    /**
+     * Returns the average latency (time between request and data availability) in milliseconds.
+     */
+    public synchronized double getAverageLatency()
+    {
+        if (loadedCount == 0L)
+            return 0d;
+
+        return (totalLatency / 1000000d) / loadedCount;
+    }
+
+    /**
+     * Returns the average image data loading time (time spent in the importer) in milliseconds.
+     */
+    public synchronized double getAverageLoadTime()
+    {
+        if (loadedCount == 0L)
+            return 0d;
+
+        return (totalLoadTime / 1000000d) / loadedCount;
+    }
+
+    /**
+     * Reset loading statistics.
+     */
+    public synchronized void resetStatistics()
+    {
+        loadedCount = 0L;
+        totalLatency = 0L;
+        totalLoadTime = 0L;
+    }
+}
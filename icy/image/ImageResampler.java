@@ -0,0 +1,787 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import java.util.concurrent.RecursiveAction;
+
+import icy.image.IcyBufferedImageUtil.FilterType;
+import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+/**
+ * Pure Java image resampler working directly on native data arrays.<br>
+ * Scaling is done with a separable filter (horizontal then vertical pass) and both scaling and rotation are computed
+ * in parallel (row bands and planes).<br>
+ * When downscaling, the filter is enlarged to the scale factor (except for {@link FilterType#NEAREST}) to avoid
+ * aliasing.
+ *
+ * @author Stephane
+ */
+public class ImageResampler
+{
+    /**
+     * minimum number of pixel processed by a single task
+     */
+    private static final int MIN_TASK_SIZE = 64 * 1024;
+
+    /**
+     * Filter weights for one axis (clamped source indexes).
+     */
+    static class AxisWeights
+    {
+        // number of tap per destination position
+        final int n;
+        final int[] index;
+        final double[] weight;
+
+        AxisWeights(int srcLen, int dstLen, FilterType filterType)
+        {
+            super();
+
+            final double scale = (double) dstLen / srcLen;
+
+            if (filterType == FilterType.NEAREST)
+            {
+                n = 1;
+                index = new int[dstLen];
+                weight = new double[dstLen];
+
+                for (int d = 0; d < dstLen; d++)
+                {
+                    index[d] = clamp((int) ((d + 0.5d) / scale), srcLen);
+                    weight[d] = 1d;
+                }
+            }
+            else
+            {
+                // enlarge filter when downscaling (anti aliasing)
+                final double filterScale = Math.max(1d, 1d / scale);
+                final double support = getSupport(filterType) * filterScale;
+
+                n = (int) Math.ceil(support * 2d) + 1;
+                index = new int[dstLen * n];
+                weight = new double[dstLen * n];
+
+                for (int d = 0; d < dstLen; d++)
+                {
+                    final double center = ((d + 0.5d) / scale) - 0.5d;
+                    final int start = (int) Math.floor(center - support) + 1;
+                    final int off = d * n;
+                    double sum = 0d;
+
+                    for (int k = 0; k < n; k++)
+                    {
+                        final int i = start + k;
+                        final double w = getKernelValue(filterType, (i - center) / filterScale);
+
+                        index[off + k] = clamp(i, srcLen);
+                        weight[off + k] = w;
+                        sum += w;
+                    }
+
+                    // normalize
+                    if (sum != 0d)
+                        for (int k = 0; k < n; k++)
+                            weight[off + k] /= sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Horizontal pass: native source rows to double intermediate rows
+     */
+    private static class HorizontalTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -6047930127289981047L;
+
+        final Object src;
+        final boolean signed;
+        final int srcW;
+        final AxisWeights wx;
+        final double[] dst;
+        final int dstW;
+        final int from;
+        final int to;
+
+        HorizontalTask(Object src, boolean signed, int srcW, AxisWeights wx, double[] dst, int dstW, int from, int to)
+        {
+            super();
+
+            this.src = src;
+            this.signed = signed;
+            this.srcW = srcW;
+            this.wx = wx;
+            this.dst = dst;
+            this.dstW = dstW;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (((to - from) > 1) && (((long) (to - from) * (srcW + dstW)) > MIN_TASK_SIZE))
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new HorizontalTask(src, signed, srcW, wx, dst, dstW, from, mid),
+                        new HorizontalTask(src, signed, srcW, wx, dst, dstW, mid, to));
+                return;
+            }
+
+            final double[] line = new double[srcW];
+            final int n = wx.n;
+            final int[] index = wx.index;
+            final double[] weight = wx.weight;
+
+            for (int y = from; y < to; y++)
+            {
+                Array1DUtil.arrayToDoubleArray(src, y * srcW, line, 0, srcW, signed);
+
+                int off = y * dstW;
+                int k = 0;
+                for (int x = 0; x < dstW; x++)
+                {
+                    double v = 0d;
+
+                    for (int i = 0; i < n; i++, k++)
+                        v += line[index[k]] * weight[k];
+
+                    dst[off++] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Vertical pass: double intermediate rows to native destination rows
+     */
+    private static class VerticalTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 3150462915730592466L;
+
+        final double[] src;
+        final AxisWeights wy;
+        final Object dst;
+        final DataType dataType;
+        final int dstW;
+        final int from;
+        final int to;
+
+        VerticalTask(double[] src, AxisWeights wy, Object dst, DataType dataType, int dstW, int from, int to)
+        {
+            super();
+
+            this.src = src;
+            this.wy = wy;
+            this.dst = dst;
+            this.dataType = dataType;
+            this.dstW = dstW;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (((to - from) > 1) && (((long) (to - from) * dstW * wy.n) > MIN_TASK_SIZE))
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new VerticalTask(src, wy, dst, dataType, dstW, from, mid),
+                        new VerticalTask(src, wy, dst, dataType, dstW, mid, to));
+                return;
+            }
+
+            final double[] line = new double[dstW];
+            final int n = wy.n;
+            final int[] index = wy.index;
+            final double[] weight = wy.weight;
+
+            for (int y = from; y < to; y++)
+            {
+                final int k = y * n;
+
+                for (int x = 0; x < dstW; x++)
+                    line[x] = 0d;
+
+                for (int i = 0; i < n; i++)
+                {
+                    final double w = weight[k + i];
+
+                    if (w != 0d)
+                    {
+                        final int off = index[k + i] * dstW;
+
+                        for (int x = 0; x < dstW; x++)
+                            line[x] += src[off + x] * w;
+                    }
+                }
+
+                toNativeArray(line, dst, y * dstW, dataType);
+            }
+        }
+    }
+
+    /**
+     * Rotation (direct 2D interpolation with zero border)
+     */
+    private static class RotateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -3365278716493101838L;
+
+        final double[] src;
+        final int srcW;
+        final int srcH;
+        final Object dst;
+        final DataType dataType;
+        final int dstW;
+        // destination to source transform
+        final double[] matrix;
+        final FilterType filterType;
+        final int from;
+        final int to;
+
+        RotateTask(double[] src, int srcW, int srcH, Object dst, DataType dataType, int dstW, double[] matrix,
+                FilterType filterType, int from, int to)
+        {
+            super();
+
+            this.src = src;
+            this.srcW = srcW;
+            this.srcH = srcH;
+            this.dst = dst;
+            this.dataType = dataType;
+            this.dstW = dstW;
+            this.matrix = matrix;
+            this.filterType = filterType;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (((to - from) > 1) && (((long) (to - from) * dstW) > (MIN_TASK_SIZE / 4)))
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new RotateTask(src, srcW, srcH, dst, dataType, dstW, matrix, filterType, from, mid),
+                        new RotateTask(src, srcW, srcH, dst, dataType, dstW, matrix, filterType, mid, to));
+                return;
+            }
+
+            final boolean nearest = (filterType == FilterType.NEAREST);
+            final int support = (int) getSupport(filterType);
+            final double[] wx = new double[support * 2];
+            final double[] wy = new double[support * 2];
+            final double[] line = new double[dstW];
+
+            for (int y = from; y < to; y++)
+            {
+                final double dy = y + 0.5d;
+
+                for (int x = 0; x < dstW; x++)
+                {
+                    final double dx = x + 0.5d;
+                    // source position (pixel center based)
+                    final double sx = (matrix[0] * dx) + (matrix[1] * dy) + matrix[2] - 0.5d;
+                    final double sy = (matrix[3] * dx) + (matrix[4] * dy) + matrix[5] - 0.5d;
+
+                    if (nearest)
+                    {
+                        final int ix = (int) Math.floor(sx + 0.5d);
+                        final int iy = (int) Math.floor(sy + 0.5d);
+
+                        if ((ix >= 0) && (iy >= 0) && (ix < srcW) && (iy < srcH))
+                            line[x] = src[(iy * srcW) + ix];
+                        else
+                            line[x] = 0d;
+                    }
+                    else
+                    {
+                        final int x0 = (int) Math.floor(sx) - (support - 1);
+                        final int y0 = (int) Math.floor(sy) - (support - 1);
+
+                        // completely outside source
+                        if ((x0 >= srcW) || (y0 >= srcH) || ((x0 + wx.length) <= 0) || ((y0 + wy.length) <= 0))
+                        {
+                            line[x] = 0d;
+                            continue;
+                        }
+
+                        double sumX = 0d;
+                        double sumY = 0d;
+                        for (int k = 0; k < wx.length; k++)
+                        {
+                            wx[k] = getKernelValue(filterType, (x0 + k) - sx);
+                            wy[k] = getKernelValue(filterType, (y0 + k) - sy);
+                            sumX += wx[k];
+                            sumY += wy[k];
+                        }
+
+                        double v = 0d;
+                        for (int j = 0; j < wy.length; j++)
+                        {
+                            final int iy = y0 + j;
+
+                            // zero border
+                            if ((iy < 0) || (iy >= srcH) || (wy[j] == 0d))
+                                continue;
+
+                            final int off = iy * srcW;
+                            double vx = 0d;
+
+                            for (int i = 0; i < wx.length; i++)
+                            {
+                                final int ix = x0 + i;
+
+                                if ((ix >= 0) && (ix < srcW))
+                                    vx += src[off + ix] * wx[i];
+                            }
+
+                            v += vx * wy[j];
+                        }
+
+                        line[x] = v / (sumX * sumY);
+                    }
+                }
+
+                toNativeArray(line, dst, y * dstW, dataType);
+            }
+        }
+    }
+
+    /**
+     * Resample planes in parallel
+     */
+    private static class PlaneTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 8243907513368530751L;
+
+        final IcyBufferedImage[] images;
+        final IcyBufferedImage[] result;
+        final int width;
+        final int height;
+        // rotation parameters (scale if angle is NaN)
+        final double xOrigin;
+        final double yOrigin;
+        final double angle;
+        final FilterType filterType;
+        final int from;
+        final int to;
+
+        PlaneTask(IcyBufferedImage[] images, IcyBufferedImage[] result, int width, int height, double xOrigin,
+                double yOrigin, double angle, FilterType filterType, int from, int to)
+        {
+            super();
+
+            this.images = images;
+            this.result = result;
+            this.width = width;
+            this.height = height;
+            this.xOrigin = xOrigin;
+            this.yOrigin = yOrigin;
+            this.angle = angle;
+            this.filterType = filterType;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) > 1)
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new PlaneTask(images, result, width, height, xOrigin, yOrigin, angle, filterType, from, mid),
+                        new PlaneTask(images, result, width, height, xOrigin, yOrigin, angle, filterType, mid, to));
+            }
+            else if (Double.isNaN(angle))
+                result[from] = scale(images[from], width, height, filterType);
+            else
+                result[from] = rotate(images[from], xOrigin, yOrigin, angle, filterType);
+        }
+    }
+
+    /**
+     * Resample planes along Z in parallel
+     */
+    private static class ZTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -2850389519472113307L;
+
+        final IcyBufferedImage[] images;
+        final IcyBufferedImage[] result;
+        final AxisWeights wz;
+        final int from;
+        final int to;
+
+        ZTask(IcyBufferedImage[] images, IcyBufferedImage[] result, AxisWeights wz, int from, int to)
+        {
+            super();
+
+            this.images = images;
+            this.result = result;
+            this.wz = wz;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) > 1)
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new ZTask(images, result, wz, from, mid), new ZTask(images, result, wz, mid, to));
+                return;
+            }
+
+            final IcyBufferedImage ref = images[0];
+            final int sizeC = ref.getSizeC();
+            final int len = ref.getSizeX() * ref.getSizeY();
+            final DataType dataType = ref.getDataType_();
+            final boolean signed = dataType.isSigned();
+            final IcyBufferedImage image = new IcyBufferedImage(ref.getSizeX(), ref.getSizeY(), ref.getIcyColorModel());
+            final double[] acc = new double[len];
+            final double[] buf = new double[len];
+            final int n = wz.n;
+            final int k = from * n;
+
+            for (int c = 0; c < sizeC; c++)
+            {
+                for (int i = 0; i < len; i++)
+                    acc[i] = 0d;
+
+                for (int j = 0; j < n; j++)
+                {
+                    final double w = wz.weight[k + j];
+
+                    if (w != 0d)
+                    {
+                        Array1DUtil.arrayToDoubleArray(images[wz.index[k + j]].getDataXY(c), 0, buf, 0, len, signed);
+
+                        for (int i = 0; i < len; i++)
+                            acc[i] += buf[i] * w;
+                    }
+                }
+
+                toNativeArray(acc, image.getDataXY(c), 0, dataType);
+            }
+
+            image.dataChanged();
+            result[from] = image;
+        }
+    }
+
+    /**
+     * Returns the filter support (radius) for the specified filter type.
+     */
+    public static double getSupport(FilterType filterType)
+    {
+        switch (filterType)
+        {
+            default:
+            case NEAREST:
+                return 0.5d;
+            case BILINEAR:
+                return 1d;
+            case BICUBIC:
+                return 2d;
+            case LANCZOS:
+                return 3d;
+        }
+    }
+
+    /**
+     * Returns the filter kernel value for the specified filter type at position x.
+     */
+    public static double getKernelValue(FilterType filterType, double x)
+    {
+        final double ax = Math.abs(x);
+
+        switch (filterType)
+        {
+            default:
+            case NEAREST:
+                return (ax < 0.5d) ? 1d : 0d;
+
+            case BILINEAR:
+                return (ax < 1d) ? 1d - ax : 0d;
+
+            case BICUBIC:
+                // Keys cubic convolution (a = -0.5)
+                if (ax < 1d)
+                    return (((1.5d * ax) - 2.5d) * ax * ax) + 1d;
+                if (ax < 2d)
+                    return (((((-0.5d * ax) + 2.5d) * ax) - 4d) * ax) + 2d;
+                return 0d;
+
+            case LANCZOS:
+                if (ax < 1e-8d)
+                    return 1d;
+                if (ax < 3d)
+                {
+                    final double px = Math.PI * ax;
+                    return (3d * Math.sin(px) * Math.sin(px / 3d)) / (px * px);
+                }
+                return 0d;
+        }
+    }
+
+    /**
+     * Resample the specified native data array (single channel) to the specified size.
+     *
+     * @param src
+     *        source data array
+     * @param srcW
+     *        source width
+     * @param srcH
+     *        source height
+     * @param dataType
+     *        data type of source and destination array
+     * @param dstW
+     *        destination width
+     * @param dstH
+     *        destination height
+     * @param filterType
+     *        filter used for resampling
+     * @param dst
+     *        destination data array (allocated if <code>null</code>)
+     * @return destination data array
+     */
+    public static Object resample(Object src, int srcW, int srcH, DataType dataType, int dstW, int dstH,
+            FilterType filterType, Object dst)
+    {
+        final Object result;
+
+        if (dst == null)
+            result = Array1DUtil.createArray(dataType, dstW * dstH);
+        else
+            result = dst;
+
+        if ((dstW <= 0) || (dstH <= 0) || (srcW <= 0) || (srcH <= 0))
+            return result;
+
+        final AxisWeights wx = new AxisWeights(srcW, dstW, filterType);
+        final AxisWeights wy = new AxisWeights(srcH, dstH, filterType);
+        final double[] tmp = new double[dstW * srcH];
+
+        ThreadUtil.forkJoinInvoke(new HorizontalTask(src, dataType.isSigned(), srcW, wx, tmp, dstW, 0, srcH));
+        ThreadUtil.forkJoinInvoke(new VerticalTask(tmp, wy, result, dataType, dstW, 0, dstH));
+
+        return result;
+    }
+
+    /**
+     * Return a resampled version of the source image with the specified size.
+     *
+     * @param source
+     *        source image
+     * @param width
+     *        wanted width
+     * @param height
+     *        wanted height
+     * @param filterType
+     *        filter used for resampling
+     */
+    public static IcyBufferedImage scale(IcyBufferedImage source, int width, int height, FilterType filterType)
+    {
+        if (source == null)
+            return null;
+
+        final IcyBufferedImage result = new IcyBufferedImage(width, height, source.getIcyColorModel());
+        final DataType dataType = source.getDataType_();
+        final int srcW = source.getSizeX();
+        final int srcH = source.getSizeY();
+
+        for (int c = 0; c < source.getSizeC(); c++)
+            resample(source.getDataXY(c), srcW, srcH, dataType, width, height, filterType, result.getDataXY(c));
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Return a resampled version of the source images with the specified size (images are processed in parallel).
+     *
+     * @param images
+     *        source images (should not contains <code>null</code> entry)
+     * @param width
+     *        wanted width
+     * @param height
+     *        wanted height
+     * @param filterType
+     *        filter used for resampling
+     */
+    public static IcyBufferedImage[] scale(IcyBufferedImage[] images, int width, int height, FilterType filterType)
+    {
+        final IcyBufferedImage[] result = new IcyBufferedImage[images.length];
+
+        if (images.length > 0)
+            ThreadUtil.forkJoinInvoke(
+                    new PlaneTask(images, result, width, height, 0d, 0d, Double.NaN, filterType, 0, images.length));
+
+        return result;
+    }
+
+    /**
+     * Return a rotated version of the source image.<br>
+     * The result image is large enough to contain the whole rotated source image, area outside source are 0 filled.
+     *
+     * @param source
+     *        source image
+     * @param xOrigin
+     *        X origin for the rotation
+     * @param yOrigin
+     *        Y origin for the rotation
+     * @param angle
+     *        rotation angle in radian
+     * @param filterType
+     *        filter used for resampling
+     */
+    public static IcyBufferedImage rotate(IcyBufferedImage source, double xOrigin, double yOrigin, double angle,
+            FilterType filterType)
+    {
+        if (source == null)
+            return null;
+
+        final int srcW = source.getSizeX();
+        final int srcH = source.getSizeY();
+        final double cos = Math.cos(angle);
+        final double sin = Math.sin(angle);
+
+        // compute bounds of rotated image
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < 4; i++)
+        {
+            final double x = ((i & 1) == 0) ? 0d : srcW;
+            final double y = ((i & 2) == 0) ? 0d : srcH;
+            final double rx = xOrigin + (cos * (x - xOrigin)) - (sin * (y - yOrigin));
+            final double ry = yOrigin + (sin * (x - xOrigin)) + (cos * (y - yOrigin));
+
+            minX = Math.min(minX, rx);
+            minY = Math.min(minY, ry);
+            maxX = Math.max(maxX, rx);
+            maxY = Math.max(maxY, ry);
+        }
+
+        // avoid rounding error to enlarge result
+        final int x0 = (int) Math.floor(minX + 1e-6d);
+        final int y0 = (int) Math.floor(minY + 1e-6d);
+        final int dstW = Math.max(1, (int) Math.ceil(maxX - 1e-6d) - x0);
+        final int dstH = Math.max(1, (int) Math.ceil(maxY - 1e-6d) - y0);
+
+        // destination to source transform (inverse rotation)
+        final double[] matrix = new double[6];
+        matrix[0] = cos;
+        matrix[1] = sin;
+        matrix[2] = (xOrigin - (cos * xOrigin) - (sin * yOrigin)) + (cos * x0) + (sin * y0);
+        matrix[3] = -sin;
+        matrix[4] = cos;
+        matrix[5] = (yOrigin + (sin * xOrigin) - (cos * yOrigin)) - (sin * x0) + (cos * y0);
+
+        final IcyBufferedImage result = new IcyBufferedImage(dstW, dstH, source.getIcyColorModel());
+        final DataType dataType = source.getDataType_();
+
+        for (int c = 0; c < source.getSizeC(); c++)
+        {
+            final double[] src = Array1DUtil.arrayToDoubleArray(source.getDataXY(c), dataType.isSigned());
+
+            ThreadUtil.forkJoinInvoke(new RotateTask(src, srcW, srcH, result.getDataXY(c), dataType, dstW, matrix,
+                    filterType, 0, dstH));
+        }
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Return a rotated version of the source images (images are processed in parallel).
+     *
+     * @see #rotate(IcyBufferedImage, double, double, double, FilterType)
+     */
+    public static IcyBufferedImage[] rotate(IcyBufferedImage[] images, double xOrigin, double yOrigin, double angle,
+            FilterType filterType)
+    {
+        final IcyBufferedImage[] result = new IcyBufferedImage[images.length];
+
+        if (images.length > 0)
+            ThreadUtil.forkJoinInvoke(
+                    new PlaneTask(images, result, 0, 0, xOrigin, yOrigin, angle, filterType, 0, images.length));
+
+        return result;
+    }
+
+    /**
+     * Resample a stack of images along Z (images are processed in parallel).<br>
+     * All images should have the same dimension and data type.
+     *
+     * @param images
+     *        source stack (should not contains <code>null</code> entry)
+     * @param depth
+     *        wanted number of plane
+     * @param filterType
+     *        filter used for resampling
+     */
+    public static IcyBufferedImage[] resampleZ(IcyBufferedImage[] images, int depth, FilterType filterType)
+    {
+        final IcyBufferedImage[] result = new IcyBufferedImage[Math.max(0, depth)];
+
+        if ((images.length > 0) && (depth > 0))
+            ThreadUtil.forkJoinInvoke(
+                    new ZTask(images, result, new AxisWeights(images.length, depth, filterType), 0, depth));
+
+        return result;
+    }
+
+    /**
+     * Store double values into native array at specified offset (values are rounded and clamped to data type range).
+     */
+    static void toNativeArray(double[] values, Object dst, int offset, DataType dataType)
+    {
+        if (!dataType.isFloat())
+        {
+            for (int i = 0; i < values.length; i++)
+                values[i] = Math.rint(values[i]);
+        }
+
+        Array1DUtil.doubleArrayToSafeArray(values, 0, dst, offset, values.length, dataType.isSigned());
+    }
+
+    static int clamp(int index, int len)
+    {
+        if (index < 0)
+            return 0;
+        if (index >= len)
+            return len - 1;
+
+        return index;
+    }
+}
@@ -20,12 +20,25 @@ import icy.preferences.ApplicationPreferences;
  */
 public class ImageCache
 {
-    public final static AbstractCache cache = new EHCache2(ApplicationPreferences.getCacheMemoryMB(),
-            ApplicationPreferences.getCachePath() + "/icy_cache");
+    public final static AbstractCache cache = createCache(ApplicationPreferences.getCacheEngine(),
+            ApplicationPreferences.getCacheMemoryMB(), ApplicationPreferences.getCachePath() + "/icy_cache");
+
+    /**
+     * Create the cache engine corresponding to the specified engine id.
+     * 
+     * @see ApplicationPreferences#getCacheEngine()
+     */
+    private static AbstractCache createCache(String engine, int cacheSizeMB, String path)
+    {
+        if (ApplicationPreferences.CACHE_ENGINE_MAPPED_FILE.equals(engine))
+            return new MappedFileCache(cacheSizeMB, path);
+
+        return new EHCache2(cacheSizeMB, path);
+    }
 
     private static Integer getKey(IcyBufferedImage image)
     {
-        return Integer.valueOf(System.identityHashCode(image));
+        return Integer.valueOf(image.getId());
     }
 
     private static IcyBufferedImage getImage(Integer key)
@@ -129,6 +142,14 @@ public class ImageCache
         cache.remove(getKey(key));
     }
 
+    /**
+     * Remove an object from the cache from its image id (see {@link IcyBufferedImage#getId()})
+     */
+    public static void remove(int imageId) throws CacheException
+    {
+        cache.remove(Integer.valueOf(imageId));
+    }
+
     /**
      * Call it when you're done with the cache (release all resources and cleanup)
      */
@@ -0,0 +1,744 @@
+package icy.image.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import icy.file.FileUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.Array2DUtil;
+import icy.type.collection.array.ArrayUtil;
+
+/**
+ * Image data cache using a LRU memory tier backed by memory mapped files.<br>
+ * Data stored in the memory tier is returned as it is (no copy nor serialization) so reading back a cached image
+ * doesn't cost anything as long as it stays in memory. When the memory tier is full, the least recently used
+ * <i>eternal</i> (modified) data is written to its own memory mapped file, which is paged in and out by the system
+ * outside the java heap. Non eternal data can be dropped on eviction as it can always be reloaded from its importer.<br>
+ * Unlike {@link EHCache2}, eternal data is never evicted without having been written to disk first: if the disk write
+ * fails the data is kept in memory (above the memory limit) rather than being lost.<br>
+ * The memory tier intentionally stays on the java heap: image rasters have to be backed by heap arrays, so an off-heap
+ * (direct buffer) memory tier would need a full copy on each access which is what this cache wants to avoid. The
+ * mapped files already provide the off-heap tier.<br>
+ * When a plane is modified, its previous disk file is kept and overwritten in place on next eviction (as long as the
+ * data layout did not change) instead of being deleted and recreated.
+ *
+ * @author Stephane
+ */
+public class MappedFileCache extends AbstractCache
+{
+    /**
+     * Maximum size of a single file mapping (1 GB, multiple of all primitive sizes)
+     */
+    private static final long MAX_MAP_SIZE = 1L << 30;
+
+    private static class MemoryEntry
+    {
+        final Object data;
+        final long size;
+        final boolean eternal;
+
+        MemoryEntry(Object data, long size, boolean eternal)
+        {
+            super();
+
+            this.data = data;
+            this.size = size;
+            this.eternal = eternal;
+        }
+    }
+
+    private static class DiskEntry
+    {
+        final File file;
+        final DataType dataType;
+        final int[] lengths;
+        final long size;
+
+        DiskEntry(File file, DataType dataType, int[] lengths, long size)
+        {
+            super();
+
+            this.file = file;
+            this.dataType = dataType;
+            this.lengths = lengths;
+            this.size = size;
+        }
+
+        /**
+         * Returns <code>true</code> if the given data has the same layout than this entry (file can be overwritten in
+         * place)
+         */
+        boolean isCompatible(Object data)
+        {
+            final Object[] arrays = (Object[]) data;
+
+            if ((ArrayUtil.getDataType(data) != dataType) || (arrays.length != lengths.length))
+                return false;
+
+            final int[] dataLengths = new int[arrays.length];
+            for (int i = 0; i < arrays.length; i++)
+                dataLengths[i] = ArrayUtil.getLength(arrays[i]);
+
+            return Arrays.equals(dataLengths, lengths);
+        }
+    }
+
+    final File folder;
+    final long maxMemory;
+    // memory tier (access ordered so first entry is always the least recently used one)
+    final LinkedHashMap<Integer, MemoryEntry> memoryEntries;
+    // entries being written to disk
+    final Map<Integer, MemoryEntry> spillingEntries;
+    // disk tier
+    final Map<Integer, DiskEntry> diskEntries;
+    // obsolete disk files (data modified) kept to be overwritten in place on next write
+    final Map<Integer, DiskEntry> staleEntries;
+    long memoryUsed;
+    long diskUsed;
+    long fileId;
+    boolean enabled;
+
+    public MappedFileCache(int cacheSizeMB, String path)
+    {
+        super();
+
+        folder = new File(path);
+        maxMemory = cacheSizeMB * 1024L * 1024L;
+        memoryEntries = new LinkedHashMap<Integer, MemoryEntry>(256, 0.75f, true);
+        spillingEntries = new HashMap<Integer, MemoryEntry>();
+        diskEntries = new HashMap<Integer, DiskEntry>();
+        staleEntries = new HashMap<Integer, DiskEntry>();
+        memoryUsed = 0L;
+        diskUsed = 0L;
+        fileId = 0L;
+
+        // delete previous cache files
+        FileUtil.delete(folder, true);
+
+        enabled = FileUtil.createDir(folder);
+        if (!enabled)
+            System.err.println("Error while initialize image cache: cannot create folder " + path);
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Mapped file cache";
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public synchronized long usedMemory()
+    {
+        return memoryUsed;
+    }
+
+    @Override
+    public synchronized long usedDisk()
+    {
+        return diskUsed;
+    }
+
+    @Override
+    public boolean isInCache(Integer key)
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            synchronized (this)
+            {
+                return memoryEntries.containsKey(key) || spillingEntries.containsKey(key)
+                        || diskEntries.containsKey(key);
+            }
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public boolean isOnMemoryCache(Integer key)
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            synchronized (this)
+            {
+                return memoryEntries.containsKey(key) || spillingEntries.containsKey(key);
+            }
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public boolean isOnDiskCache(Integer key)
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            synchronized (this)
+            {
+                return diskEntries.containsKey(key);
+            }
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getAllKeys() throws CacheException
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            final Set<Integer> result = new HashSet<Integer>();
+
+            synchronized (this)
+            {
+                result.addAll(memoryEntries.keySet());
+                result.addAll(spillingEntries.keySet());
+                result.addAll(diskEntries.keySet());
+            }
+
+            return result;
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public Object get(Integer key) throws CacheException
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            final DiskEntry diskEntry;
+
+            synchronized (this)
+            {
+                MemoryEntry entry = memoryEntries.get(key);
+                if (entry == null)
+                    entry = spillingEntries.get(key);
+                // direct memory access, no copy
+                if (entry != null)
+                    return entry.data;
+
+                diskEntry = diskEntries.get(key);
+            }
+
+            // not in cache
+            if (diskEntry == null)
+                return null;
+
+            final Object result;
+
+            try
+            {
+                result = readFromDisk(diskEntry);
+            }
+            catch (IOException e)
+            {
+                synchronized (this)
+                {
+                    // entry removed while we were reading it --> not an error
+                    if (diskEntries.get(key) != diskEntry)
+                        return null;
+                }
+
+                throw new CacheException("ImageCache error: data '" + key + "' couldn't be retrieved (data lost)", e);
+            }
+
+            final List<Entry<Integer, MemoryEntry>> toSpill;
+
+            synchronized (this)
+            {
+                // entry has been modified or removed in the meantime ? --> don't promote
+                if (diskEntries.get(key) != diskEntry)
+                    return result;
+
+                // promote in memory tier, disk copy is kept so we don't need to write it again on eviction
+                putInMemory(key, new MemoryEntry(result, diskEntry.size, true));
+                toSpill = evict();
+            }
+
+            spill(toSpill);
+
+            return result;
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public void set(Integer key, Object object, boolean eternal) throws CacheException
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            final List<Entry<Integer, MemoryEntry>> toSpill;
+
+            synchronized (this)
+            {
+                // previous data is obsolete now (keep its file so we can overwrite it in place)
+                removeInternal(key, object != null);
+
+                if (object == null)
+                    return;
+
+                putInMemory(key, new MemoryEntry(object, getSize(object), eternal));
+                toSpill = evict();
+            }
+
+            spill(toSpill);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new CacheException("ImageCache error: data '" + key + "' couldn't be saved in cache", e);
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public void clear() throws CacheException
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            final List<DiskEntry> toDelete;
+
+            synchronized (this)
+            {
+                toDelete = new ArrayList<DiskEntry>(diskEntries.values());
+                toDelete.addAll(staleEntries.values());
+
+                memoryEntries.clear();
+                spillingEntries.clear();
+                diskEntries.clear();
+                staleEntries.clear();
+                memoryUsed = 0L;
+                diskUsed = 0L;
+            }
+
+            for (DiskEntry entry : toDelete)
+                deleteFile(entry.file);
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public void remove(Integer key) throws CacheException
+    {
+        if (profiling)
+            startProf();
+
+        try
+        {
+            synchronized (this)
+            {
+                removeInternal(key, false);
+            }
+        }
+        finally
+        {
+            if (profiling)
+                endProf();
+        }
+    }
+
+    @Override
+    public void end()
+    {
+        try
+        {
+            clear();
+        }
+        catch (CacheException e)
+        {
+            // ignore
+        }
+
+        FileUtil.delete(folder, true);
+        enabled = false;
+    }
+
+    /**
+     * Remove all data for the given key, should be called while holding the cache lock.<br>
+     * If <code>keepFile</code> is <code>true</code> the disk file is kept to be overwritten in place on next write.
+     */
+    private void removeInternal(Integer key, boolean keepFile)
+    {
+        final MemoryEntry entry = memoryEntries.remove(key);
+        if (entry != null)
+            memoryUsed -= entry.size;
+
+        // pending disk write will be discarded
+        spillingEntries.remove(key);
+
+        final DiskEntry diskEntry = diskEntries.remove(key);
+
+        if (keepFile && (diskEntry != null))
+        {
+            final DiskEntry stale = staleEntries.put(key, diskEntry);
+
+            if (stale != null)
+                deleteStale(stale);
+        }
+        else
+        {
+            if (diskEntry != null)
+                deleteStale(diskEntry);
+            if (!keepFile)
+            {
+                final DiskEntry stale = staleEntries.remove(key);
+
+                if (stale != null)
+                    deleteStale(stale);
+            }
+        }
+    }
+
+    /**
+     * Delete the file of the given (not used anymore) disk entry, should be called while holding the cache lock
+     */
+    private void deleteStale(DiskEntry entry)
+    {
+        diskUsed -= entry.size;
+        deleteFile(entry.file);
+    }
+
+    /**
+     * Put an entry in memory tier, should be called while holding the cache lock
+     */
+    private void putInMemory(Integer key, MemoryEntry entry)
+    {
+        final MemoryEntry old = memoryEntries.put(key, entry);
+
+        if (old != null)
+            memoryUsed -= old.size;
+        memoryUsed += entry.size;
+    }
+
+    /**
+     * Remove least recently used entries from memory tier until we fit in the memory limit and returns the entries
+     * which need to be written to disk. Should be called while holding the cache lock.
+     */
+    private List<Entry<Integer, MemoryEntry>> evict()
+    {
+        final List<Entry<Integer, MemoryEntry>> result = new ArrayList<Entry<Integer, MemoryEntry>>();
+        final Iterator<Entry<Integer, MemoryEntry>> it = memoryEntries.entrySet().iterator();
+
+        while ((memoryUsed > maxMemory) && it.hasNext())
+        {
+            final Entry<Integer, MemoryEntry> e = it.next();
+            final Integer key = e.getKey();
+            final MemoryEntry entry = e.getValue();
+
+            it.remove();
+            memoryUsed -= entry.size;
+
+            // modified data not yet on disk ? --> need to be written to disk first
+            if (entry.eternal && !diskEntries.containsKey(key))
+            {
+                spillingEntries.put(key, entry);
+                result.add(new AbstractMap.SimpleEntry<Integer, MemoryEntry>(key, entry));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the given entries to disk (done outside the cache lock)
+     */
+    private void spill(List<Entry<Integer, MemoryEntry>> entries)
+    {
+        for (Entry<Integer, MemoryEntry> e : entries)
+        {
+            final Integer key = e.getKey();
+            final MemoryEntry entry = e.getValue();
+            final File file;
+            // overwrite the previous file in place
+            final boolean reused;
+
+            synchronized (this)
+            {
+                // entry modified or removed in the meantime --> nothing to do
+                if (spillingEntries.get(key) != entry)
+                    continue;
+
+                final DiskEntry stale = staleEntries.remove(key);
+
+                if ((stale != null) && stale.isCompatible(entry.data))
+                {
+                    file = stale.file;
+                    reused = true;
+                }
+                else
+                {
+                    if (stale != null)
+                        deleteStale(stale);
+
+                    file = new File(folder, key + "_" + (fileId++) + ".dat");
+                    reused = false;
+                }
+            }
+
+            DiskEntry diskEntry;
+
+            try
+            {
+                diskEntry = writeToDisk(file, entry.data);
+            }
+            catch (Throwable t)
+            {
+                System.err.println("ImageCache warning: cannot write data '" + key + "' to disk (" + t.getMessage()
+                        + "), data kept in memory.");
+                diskEntry = null;
+            }
+
+            synchronized (this)
+            {
+                // still the current entry ?
+                if (spillingEntries.get(key) == entry)
+                {
+                    spillingEntries.remove(key);
+
+                    if (diskEntry != null)
+                    {
+                        diskEntries.put(key, diskEntry);
+                        // reused file is already accounted
+                        if (!reused)
+                            diskUsed += diskEntry.size;
+                        diskEntry = null;
+                    }
+                    else
+                    {
+                        // write failed --> put it back in memory so we never lose data
+                        putInMemory(key, entry);
+
+                        // release the reused file
+                        if (reused)
+                            deleteStale(new DiskEntry(file, null, null, getSize(entry.data)));
+                    }
+                }
+                // obsolete file (reused file was accounted)
+                else if ((diskEntry != null) && reused)
+                {
+                    deleteStale(diskEntry);
+                    diskEntry = null;
+                }
+            }
+
+            // obsolete file
+            if (diskEntry != null)
+                deleteFile(diskEntry.file);
+        }
+    }
+
+    private static long getSize(Object data) throws IllegalArgumentException
+    {
+        if (!(data instanceof Object[]))
+            throw new IllegalArgumentException("Unsupported data format (2D native array expected)");
+
+        final DataType dataType = ArrayUtil.getDataType(data);
+        long result = 0L;
+
+        for (Object array : (Object[]) data)
+            result += (long) ArrayUtil.getLength(array) * dataType.getSize();
+
+        return result;
+    }
+
+    private static DiskEntry writeToDisk(File file, Object data) throws IOException
+    {
+        final Object[] arrays = (Object[]) data;
+        final DataType dataType = ArrayUtil.getDataType(data);
+        final int[] lengths = new int[arrays.length];
+        long size = 0L;
+
+        for (int i = 0; i < arrays.length; i++)
+        {
+            lengths[i] = ArrayUtil.getLength(arrays[i]);
+            size += (long) lengths[i] * dataType.getSize();
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            long position = 0L;
+
+            for (int i = 0; i < arrays.length; i++)
+                position = transfer(channel, MapMode.READ_WRITE, position, dataType, arrays[i], lengths[i], true);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return new DiskEntry(file, dataType, lengths, size);
+    }
+
+    private static Object readFromDisk(DiskEntry entry) throws IOException
+    {
+        final DataType dataType = entry.dataType;
+        final Object[] result = Array2DUtil.createArray(dataType, entry.lengths.length);
+        final RandomAccessFile raf = new RandomAccessFile(entry.file, "r");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            long position = 0L;
+
+            for (int i = 0; i < result.length; i++)
+            {
+                result[i] = Array1DUtil.createArray(dataType, entry.lengths[i]);
+                position = transfer(channel, MapMode.READ_ONLY, position, dataType, result[i], entry.lengths[i],
+                        false);
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Bulk transfer of the given 1D native array from / to the file channel at specified position (using file
+     * mapping).<br>
+     * Returns the file position after the transfer.
+     */
+    private static long transfer(FileChannel channel, MapMode mode, long position, DataType dataType, Object array,
+            int length, boolean write) throws IOException
+    {
+        final int elementSize = dataType.getSize();
+        final int maxElements = (int) (MAX_MAP_SIZE / elementSize);
+        long pos = position;
+        int offset = 0;
+
+        while (offset < length)
+        {
+            final int len = Math.min(maxElements, length - offset);
+            final MappedByteBuffer buffer = channel.map(mode, pos, (long) len * elementSize);
+
+            buffer.order(ByteOrder.nativeOrder());
+
+            switch (dataType.getJavaType())
+            {
+                case BYTE:
+                    if (write)
+                        buffer.put((byte[]) array, offset, len);
+                    else
+                        buffer.get((byte[]) array, offset, len);
+                    break;
+                case SHORT:
+                    if (write)
+                        buffer.asShortBuffer().put((short[]) array, offset, len);
+                    else
+                        buffer.asShortBuffer().get((short[]) array, offset, len);
+                    break;
+                case INT:
+                    if (write)
+                        buffer.asIntBuffer().put((int[]) array, offset, len);
+                    else
+                        buffer.asIntBuffer().get((int[]) array, offset, len);
+                    break;
+                case LONG:
+                    if (write)
+                        buffer.asLongBuffer().put((long[]) array, offset, len);
+                    else
+                        buffer.asLongBuffer().get((long[]) array, offset, len);
+                    break;
+                case FLOAT:
+                    if (write)
+                        buffer.asFloatBuffer().put((float[]) array, offset, len);
+                    else
+                        buffer.asFloatBuffer().get((float[]) array, offset, len);
+                    break;
+                case DOUBLE:
+                    if (write)
+                        buffer.asDoubleBuffer().put((double[]) array, offset, len);
+                    else
+                        buffer.asDoubleBuffer().get((double[]) array, offset, len);
+                    break;
+                default:
+                    throw new IOException("Unsupported data type: " + dataType);
+            }
+
+            offset += len;
+            pos += (long) len * elementSize;
+        }
+
+        return pos;
+    }
+
+    private static void deleteFile(File file)
+    {
+        // file can still be mapped (mapping is released on GC) so we may not be able to delete it immediately
+        if (!file.delete())
+            file.deleteOnExit();
+    }
+}
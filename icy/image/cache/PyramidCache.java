@@ -0,0 +1,670 @@
+package icy.image.cache;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import icy.file.FileUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.Array2DUtil;
+import icy.util.StringUtil;
+
+/**
+ * On disk chunked storage for the power of 2 sub resolution levels (pyramid) of a large image series.<br>
+ * Each level of each (Z, T) plane is split in {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} chunks, each chunk being stored
+ * in its own file (all channels) so a region can be retrieved without reading the whole level. A level is marked as
+ * available only when all its chunks have been written so a partially built level is never used.<br>
+ * Level 0 (full resolution) is never stored, it should be read from the original image.<br>
+ * Cache files are kept between sessions (the cache folder name identify the image file and its version), a header
+ * file storing the image dimensions is verified before the folder content is re-used.<br>
+ * Use {@link #open(String, int, int, int, DataType)} to get a cache so a single instance is used per folder, and
+ * {@link #release()} when you are done with it.<br>
+ * Use {@link #cleanup(String, long)} to limit the disk space used by all pyramid caches (folders in use are preserved).
+ *
+ * @author Stephane
+ */
+public class PyramidCache
+{
+    /**
+     * Size of a chunk (in pixel) for each dimension
+     */
+    public static final int CHUNK_SIZE = 512;
+
+    private static final String HEADER_NAME = "pyramid.hdr";
+    private static final String ID_VERSION = "version";
+    private static final String ID_SIZE_X = "sizeX";
+    private static final String ID_SIZE_Y = "sizeY";
+    private static final String ID_SIZE_C = "sizeC";
+    private static final String ID_DATATYPE = "dataType";
+    private static final String VERSION = "1";
+
+    /**
+     * Caches in use (folder --> cache), shared by all importers
+     */
+    private static final Map<File, PyramidCache> openedCaches = new HashMap<File, PyramidCache>();
+
+    final File folder;
+    final int sizeX;
+    final int sizeY;
+    final int sizeC;
+    final DataType dataType;
+    // already built levels (avoid file system access)
+    final Set<String> builtLevels;
+    boolean enabled;
+    // number of user (see open(..) and release())
+    int useCount;
+
+    /**
+     * Returns the pyramid cache stored in the specified folder (created or re-used if another user already opened it).
+     * <br>
+     * Call {@link #release()} when the cache is not used anymore.
+     *
+     * @param path
+     *        folder where to store the pyramid chunk files (see {@link #getFolderName(String, int)})
+     * @param sizeX
+     *        full resolution width of the image
+     * @param sizeY
+     *        full resolution height of the image
+     * @param sizeC
+     *        number of channel of the image
+     * @param dataType
+     *        data type of the image
+     */
+    public static PyramidCache open(String path, int sizeX, int sizeY, int sizeC, DataType dataType)
+    {
+        final File folder = new File(path).getAbsoluteFile();
+
+        synchronized (openedCaches)
+        {
+            PyramidCache result = openedCaches.get(folder);
+
+            // not yet opened --> create it (folder name identify the image so dimensions are the same)
+            if (result == null)
+            {
+                result = new PyramidCache(folder.getPath(), sizeX, sizeY, sizeC, dataType);
+                openedCaches.put(folder, result);
+            }
+
+            result.useCount++;
+
+            return result;
+        }
+    }
+
+    /**
+     * Release this cache (see {@link #open(String, int, int, int, DataType)}), its folder can be deleted by
+     * {@link #cleanup(String, long)} when it does not have any user anymore.
+     */
+    public void release()
+    {
+        synchronized (openedCaches)
+        {
+            if (useCount > 0)
+                useCount--;
+            if ((useCount == 0) && (openedCaches.get(folder) == this))
+                openedCaches.remove(folder);
+        }
+    }
+
+    /**
+     * Create (or re-use) the pyramid cache stored in the specified folder.<br>
+     * Use {@link #open(String, int, int, int, DataType)} instead so a single instance is used per folder.
+     *
+     * @param path
+     *        folder where to store the pyramid chunk files (see {@link #getFolderName(String, int)})
+     * @param sizeX
+     *        full resolution width of the image
+     * @param sizeY
+     *        full resolution height of the image
+     * @param sizeC
+     *        number of channel of the image
+     * @param dataType
+     *        data type of the image
+     */
+    protected PyramidCache(String path, int sizeX, int sizeY, int sizeC, DataType dataType)
+    {
+        super();
+
+        folder = new File(path).getAbsoluteFile();
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeC = sizeC;
+        this.dataType = dataType;
+        builtLevels = new HashSet<String>();
+        useCount = 0;
+
+        enabled = FileUtil.createDir(folder);
+        if (!enabled)
+            System.err.println("Error while initialize pyramid cache: cannot create folder " + path);
+        // folder content doesn't match this image (or no header yet) --> clear it
+        else if (!checkHeader())
+            clear();
+
+        // keep trace of last use (see cleanup(..))
+        folder.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns an unique folder name for the specified image file and series (file size and modification date are used
+     * so the cache is automatically invalidated when the file changes).
+     */
+    public static String getFolderName(String path, int series)
+    {
+        final File file = new File(path);
+        final String id = FileUtil.getGenericPath(path) + "|" + file.length() + "|" + file.lastModified() + "|"
+                + series;
+
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes("UTF-8"));
+            final StringBuilder result = new StringBuilder();
+
+            for (byte b : digest)
+                result.append(StringUtil.toHexaString(b & 0xFF, 2));
+
+            return result.toString() + "_" + series;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // SHA-1 is always available, should never happen
+            throw new RuntimeException(e);
+        }
+        catch (IOException e)
+        {
+            // UTF-8 is always available, should never happen
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Delete the least recently used pyramid cache folders contained in the specified root folder so the total size
+     * of the remaining ones does not exceed <code>maxSize</code> (in bytes).<br>
+     * Folders of caches in use (see {@link #open(String, int, int, int, DataType)}) are never deleted.
+     */
+    public static void cleanup(String root, long maxSize)
+    {
+        final File[] files = new File(root).listFiles();
+
+        if (files == null)
+            return;
+
+        final List<File> folders = new ArrayList<File>();
+        final Map<File, Long> lastUses = new HashMap<File, Long>();
+        final Map<File, Long> sizes = new HashMap<File, Long>();
+        long totalSize = 0L;
+
+        for (File file : files)
+        {
+            if (!file.isDirectory())
+                continue;
+
+            final long size = getFolderSize(file);
+
+            folders.add(file);
+            lastUses.put(file, Long.valueOf(file.lastModified()));
+            sizes.put(file, Long.valueOf(size));
+            totalSize += size;
+        }
+
+        if (totalSize <= maxSize)
+            return;
+
+        // least recently used first
+        Collections.sort(folders, new Comparator<File>()
+        {
+            @Override
+            public int compare(File f1, File f2)
+            {
+                final long l1 = lastUses.get(f1).longValue();
+                final long l2 = lastUses.get(f2).longValue();
+
+                if (l1 < l2)
+                    return -1;
+                if (l1 > l2)
+                    return 1;
+                return 0;
+            }
+        });
+
+        // lock so a cache folder cannot be opened while we delete it
+        synchronized (openedCaches)
+        {
+            for (File f : folders)
+            {
+                if (totalSize <= maxSize)
+                    break;
+                // in use
+                if (openedCaches.containsKey(f.getAbsoluteFile()))
+                    continue;
+
+                if (FileUtil.delete(f, true))
+                    totalSize -= sizes.get(f).longValue();
+            }
+        }
+    }
+
+    private static long getFolderSize(File folder)
+    {
+        final File[] files = folder.listFiles();
+        long result = 0L;
+
+        if (files != null)
+            for (File file : files)
+                result += file.length();
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the header file exists and matches this cache image dimensions.
+     */
+    private boolean checkHeader()
+    {
+        final File file = new File(folder, HEADER_NAME);
+
+        if (!file.exists())
+            return false;
+
+        final Properties header = new Properties();
+
+        try
+        {
+            final InputStream in = new FileInputStream(file);
+
+            try
+            {
+                header.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+
+        return VERSION.equals(header.getProperty(ID_VERSION))
+                && Integer.toString(sizeX).equals(header.getProperty(ID_SIZE_X))
+                && Integer.toString(sizeY).equals(header.getProperty(ID_SIZE_Y))
+                && Integer.toString(sizeC).equals(header.getProperty(ID_SIZE_C))
+                && dataType.name().equals(header.getProperty(ID_DATATYPE));
+    }
+
+    /**
+     * Write the header file (image dimensions) of this cache.
+     */
+    private boolean writeHeader()
+    {
+        final Properties header = new Properties();
+
+        header.setProperty(ID_VERSION, VERSION);
+        header.setProperty(ID_SIZE_X, Integer.toString(sizeX));
+        header.setProperty(ID_SIZE_Y, Integer.toString(sizeY));
+        header.setProperty(ID_SIZE_C, Integer.toString(sizeC));
+        header.setProperty(ID_DATATYPE, dataType.name());
+
+        try
+        {
+            final OutputStream out = new FileOutputStream(new File(folder, HEADER_NAME));
+
+            try
+            {
+                header.store(out, "Icy pyramid cache");
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while initialize pyramid cache: cannot write header in " + folder.getPath());
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public int getSizeX(int level)
+    {
+        return sizeX >> level;
+    }
+
+    public int getSizeY(int level)
+    {
+        return sizeY >> level;
+    }
+
+    public int getSizeC()
+    {
+        return sizeC;
+    }
+
+    public DataType getDataType()
+    {
+        return dataType;
+    }
+
+    /**
+     * Returns the number of chunk in X dimension for the specified level
+     */
+    public int getChunkCountX(int level)
+    {
+        return (getSizeX(level) + (CHUNK_SIZE - 1)) / CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the number of chunk in Y dimension for the specified level
+     */
+    public int getChunkCountY(int level)
+    {
+        return (getSizeY(level) + (CHUNK_SIZE - 1)) / CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the region covered by the specified chunk (in level coordinates)
+     */
+    public Rectangle getChunkBounds(int level, int cx, int cy)
+    {
+        return new Rectangle(cx * CHUNK_SIZE, cy * CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE)
+                .intersection(new Rectangle(getSizeX(level), getSizeY(level)));
+    }
+
+    private File getLevelFile(int level, int z, int t)
+    {
+        return new File(folder, "L" + level + "_Z" + z + "_T" + t + ".done");
+    }
+
+    private File getChunkFile(int level, int z, int t, int cx, int cy)
+    {
+        return new File(folder, "L" + level + "_Z" + z + "_T" + t + "_" + cx + "_" + cy + ".raw");
+    }
+
+    /**
+     * Returns <code>true</code> if the specified level has been completely built for the (Z, T) plane.
+     */
+    public boolean isLevelAvailable(int level, int z, int t)
+    {
+        if (level == 0)
+            return false;
+
+        final String key = level + "_" + z + "_" + t;
+
+        synchronized (builtLevels)
+        {
+            if (builtLevels.contains(key))
+                return true;
+        }
+
+        if (!getLevelFile(level, z, t).exists())
+            return false;
+
+        synchronized (builtLevels)
+        {
+            builtLevels.add(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * Mark the specified level as completely built for the (Z, T) plane.
+     */
+    public void setLevelAvailable(int level, int z, int t) throws IOException
+    {
+        final File file = getLevelFile(level, z, t);
+
+        if (!file.exists() && !file.createNewFile())
+            throw new IOException("Cannot create file " + file.getAbsolutePath());
+
+        synchronized (builtLevels)
+        {
+            builtLevels.add(level + "_" + z + "_" + t);
+        }
+    }
+
+    /**
+     * Write the chunk data (2D native array, one array per channel) for the specified level and (Z, T) plane.<br>
+     * Chunk data is first written in a temporary file then renamed so a chunk file is always complete.
+     */
+    public void setChunk(int level, int z, int t, int cx, int cy, Object[] data) throws IOException
+    {
+        final File file = getChunkFile(level, z, t, cx, cy);
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        final Rectangle bounds = getChunkBounds(level, cx, cy);
+        final int len = bounds.width * bounds.height;
+        final ByteBuffer buffer = ByteBuffer.allocate(len * sizeC * dataType.getSize())
+                .order(ByteOrder.nativeOrder());
+
+        for (int c = 0; c < sizeC; c++)
+            putData(buffer, data[c], len);
+        buffer.flip();
+
+        final RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        // chunk can already exist if the level was partially built before
+        if (file.exists())
+            FileUtil.delete(file, false);
+        if (!tmpFile.renameTo(file))
+            throw new IOException("Cannot rename file " + tmpFile.getAbsolutePath());
+    }
+
+    /**
+     * Returns the chunk data (2D native array, one array per channel) for the specified level and (Z, T) plane or
+     * <code>null</code> if the chunk is not in the cache.
+     */
+    public Object[] getChunk(int level, int z, int t, int cx, int cy) throws IOException
+    {
+        final File file = getChunkFile(level, z, t, cx, cy);
+
+        if (!file.exists())
+            return null;
+
+        final Rectangle bounds = getChunkBounds(level, cx, cy);
+        final int len = bounds.width * bounds.height;
+        final ByteBuffer buffer = ByteBuffer.allocate(len * sizeC * dataType.getSize())
+                .order(ByteOrder.nativeOrder());
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                    throw new IOException("Pyramid cache file " + file.getAbsolutePath() + " is truncated");
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        buffer.flip();
+
+        final Object[] result = Array2DUtil.createArray(dataType, sizeC);
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            result[c] = Array1DUtil.createArray(dataType, len);
+            getData(buffer, result[c], len);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns data (2D native array, one array per channel) of the specified region (in level coordinates) for the
+     * given level and (Z, T) plane.<br>
+     * The level should be available (see {@link #isLevelAvailable(int, int, int)}).
+     */
+    public Object[] getRegion(int level, Rectangle region, int z, int t) throws IOException
+    {
+        final Rectangle levelBounds = new Rectangle(getSizeX(level), getSizeY(level));
+        final Rectangle adjRegion = (region != null) ? region.intersection(levelBounds) : levelBounds;
+        final Dimension resDim = adjRegion.getSize();
+        final Object[] result = Array2DUtil.createArray(dataType, sizeC);
+
+        for (int c = 0; c < sizeC; c++)
+            result[c] = Array1DUtil.createArray(dataType, Math.max(0, resDim.width * resDim.height));
+
+        if (adjRegion.isEmpty())
+            return result;
+
+        final int startX = adjRegion.x / CHUNK_SIZE;
+        final int startY = adjRegion.y / CHUNK_SIZE;
+        final int endX = (adjRegion.x + adjRegion.width - 1) / CHUNK_SIZE;
+        final int endY = (adjRegion.y + adjRegion.height - 1) / CHUNK_SIZE;
+
+        for (int cy = startY; cy <= endY; cy++)
+        {
+            for (int cx = startX; cx <= endX; cx++)
+            {
+                final Object[] chunk = getChunk(level, z, t, cx, cy);
+
+                if (chunk == null)
+                    throw new IOException("Pyramid cache chunk [" + cx + "," + cy + "] of level " + level
+                            + " is missing");
+
+                final Rectangle chunkBounds = getChunkBounds(level, cx, cy);
+                final Rectangle inter = chunkBounds.intersection(adjRegion);
+                // region to copy in chunk coordinates
+                final Rectangle srcRegion = new Rectangle(inter.x - chunkBounds.x, inter.y - chunkBounds.y,
+                        inter.width, inter.height);
+                final Point dstPt = new Point(inter.x - adjRegion.x, inter.y - adjRegion.y);
+
+                for (int c = 0; c < sizeC; c++)
+                    Array1DUtil.copyRect(chunk[c], chunkBounds.getSize(), srcRegion, result[c], resDim, dstPt,
+                            dataType.isSigned());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove all cached data.
+     */
+    public void clear()
+    {
+        synchronized (builtLevels)
+        {
+            builtLevels.clear();
+        }
+
+        FileUtil.delete(folder, true);
+        enabled = FileUtil.createDir(folder) && writeHeader();
+    }
+
+    private void putData(ByteBuffer buffer, Object array, int len)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+                buffer.put((byte[]) array, 0, len);
+                break;
+
+            case SHORT:
+                buffer.asShortBuffer().put((short[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 2));
+                break;
+
+            case INT:
+                buffer.asIntBuffer().put((int[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 4));
+                break;
+
+            case LONG:
+                buffer.asLongBuffer().put((long[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 8));
+                break;
+
+            case FLOAT:
+                buffer.asFloatBuffer().put((float[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 4));
+                break;
+
+            case DOUBLE:
+                buffer.asDoubleBuffer().put((double[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 8));
+                break;
+        }
+    }
+
+    private void getData(ByteBuffer buffer, Object array, int len)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+                buffer.get((byte[]) array, 0, len);
+                break;
+
+            case SHORT:
+                buffer.asShortBuffer().get((short[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 2));
+                break;
+
+            case INT:
+                buffer.asIntBuffer().get((int[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 4));
+                break;
+
+            case LONG:
+                buffer.asLongBuffer().get((long[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 8));
+                break;
+
+            case FLOAT:
+                buffer.asFloatBuffer().get((float[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 4));
+                break;
+
+            case DOUBLE:
+                buffer.asDoubleBuffer().get((double[]) array, 0, len);
+                buffer.position(buffer.position() + (len * 8));
+                break;
+        }
+    }
+}
@@ -345,8 +345,9 @@ public class Icy
         // image cache
         if (ImageCache.isEnabled())
         {
-            System.out.println("Image cache initialized (reserved memory = " + ApplicationPreferences.getCacheMemoryMB()
-                    + " MB, disk cache location = " + ApplicationPreferences.getCachePath() + ")");
+            System.out.println(ImageCache.cache.getName() + " image cache initialized (reserved memory = "
+                    + ApplicationPreferences.getCacheMemoryMB() + " MB, disk cache location = "
+                    + ApplicationPreferences.getCachePath() + ")");
         }
         else
         {
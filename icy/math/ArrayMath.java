@@ -18,10 +18,13 @@
  */
 package icy.math;
 
+import icy.system.thread.ThreadUtil;
 import icy.type.TypeUtil;
 import icy.type.collection.array.Array1DUtil;
 import icy.type.collection.array.ArrayUtil;
 
+import java.util.concurrent.RecursiveTask;
+
 /**
  * Class defining basic arithmetic and statistic operations on 1D double arrays.
  * 
@@ -29,6 +32,61 @@ import icy.type.collection.array.ArrayUtil;
  */
 public class ArrayMath
 {
+    /**
+     * Fork / join task computing minimum and maximum values of an array range
+     */
+    private static class MinMaxTask extends RecursiveTask<double[]>
+    {
+        private static final long serialVersionUID = 6432405436347766453L;
+
+        final Object array;
+        final int offset;
+        final int length;
+        final boolean signed;
+
+        MinMaxTask(Object array, int offset, int length, boolean signed)
+        {
+            super();
+
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            this.signed = signed;
+        }
+
+        @Override
+        protected double[] compute()
+        {
+            // small enough --> direct computation
+            if (length <= MINMAX_CHUNK_SIZE)
+                return minMax(array, offset, length, signed);
+
+            final int half = length / 2;
+            final MinMaxTask left = new MinMaxTask(array, offset, half, signed);
+            final MinMaxTask right = new MinMaxTask(array, offset + half, length - half, signed);
+
+            left.fork();
+            final double[] result = right.compute();
+            final double[] leftResult = left.join();
+
+            if (leftResult[0] < result[0])
+                result[0] = leftResult[0];
+            if (leftResult[1] > result[1])
+                result[1] = leftResult[1];
+
+            return result;
+        }
+    }
+
+    /**
+     * Minimum array length for parallel min / max computation
+     */
+    private static final int MINMAX_PARALLEL_THRESHOLD = 1024 * 1024;
+    /**
+     * Size of array chunk processed by a single min / max task
+     */
+    static final int MINMAX_CHUNK_SIZE = 256 * 1024;
+
     /**
      * Element-wise addition of two arrays
      * 
@@ -2369,6 +2427,306 @@ public class ArrayMath
         return max;
     }
 
+    /**
+     * Find the minimum and maximum values of a generic array in a single pass.<br>
+     * Large arrays are processed in parallel using the shared fork / join pool.
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array ([0, 0] for empty array)
+     */
+    public static double[] minMax(Object array, boolean signed)
+    {
+        final int len = ArrayUtil.getLength(array);
+
+        if (len >= MINMAX_PARALLEL_THRESHOLD)
+            return ThreadUtil.forkJoinInvoke(new MinMaxTask(array, 0, len, signed));
+
+        return minMax(array, 0, len, signed);
+    }
+
+    /**
+     * Find the minimum and maximum values of a generic array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array range ([0, 0] for empty range)
+     */
+    public static double[] minMax(Object array, int offset, int length, boolean signed)
+    {
+        if (length <= 0)
+            return new double[] {0d, 0d};
+
+        switch (ArrayUtil.getDataType(array))
+        {
+            case BYTE:
+                return minMax((byte[]) array, offset, length, signed);
+            case SHORT:
+                return minMax((short[]) array, offset, length, signed);
+            case INT:
+                return minMax((int[]) array, offset, length, signed);
+            case LONG:
+                return minMax((long[]) array, offset, length, signed);
+            case FLOAT:
+                return minMax((float[]) array, offset, length);
+            case DOUBLE:
+                return minMax((double[]) array, offset, length);
+            default:
+                return new double[] {0d, 0d};
+        }
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(byte[] array, int offset, int length, boolean signed)
+    {
+        final int end = offset + length;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        if (signed)
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final int v = array[i];
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final int v = array[i] & 0xFF;
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(short[] array, int offset, int length, boolean signed)
+    {
+        final int end = offset + length;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        if (signed)
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final int v = array[i];
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final int v = array[i] & 0xFFFF;
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(int[] array, int offset, int length, boolean signed)
+    {
+        final int end = offset + length;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        if (signed)
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final long v = array[i];
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final long v = TypeUtil.unsign(array[i]);
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @param signed
+     *        signed / unsigned flag
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(long[] array, int offset, int length, boolean signed)
+    {
+        final int end = offset + length;
+
+        if (signed)
+        {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+
+            for (int i = offset; i < end; i++)
+            {
+                final long v = array[i];
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+
+            return new double[] {min, max};
+        }
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+
+        for (int i = offset; i < end; i++)
+        {
+            // need to compare in double
+            final double v = TypeUtil.unsign(array[i]);
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(float[] array, int offset, int length)
+    {
+        final int end = offset + length;
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+
+        for (int i = offset; i < end; i++)
+        {
+            final float v = array[i];
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array range in a single pass.
+     * 
+     * @param array
+     *        an array
+     * @param offset
+     *        start offset in array
+     * @param length
+     *        number of element to process
+     * @return the [min, max] values of the array range
+     */
+    public static double[] minMax(double[] array, int offset, int length)
+    {
+        final int end = offset + length;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+
+        for (int i = offset; i < end; i++)
+        {
+            final double v = array[i];
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
     /**
      * Element-wise minimum of two arrays
      * 
@@ -41,6 +41,7 @@ public class ApplicationPreferences
     public static final String ID_STACK_SIZE = "stackSize";
     public static final String ID_CACHE_MEMORY_PERCENT = "cacheMemoryPercent";
     public static final String ID_CACHE_PATH = "cacheMemoryPath";
+    public static final String ID_CACHE_ENGINE = "cacheEngine";
     public static final String ID_EXTRA_VMPARAMS = "extraVMParams";
     public static final String ID_OS_EXTRA_VMPARAMS = "osExtraVMParams";
     public static final String ID_APP_FOLDER = "appFolder";
@@ -52,6 +53,12 @@ public class ApplicationPreferences
     // private final static String DEFAULT_UPDATE_REPOSITORY_BASE = "https://icy.yhello.co/update/";
     private final static String DEFAULT_UPDATE_REPOSITORY_FILE = "update.php";
 
+    /**
+     * image cache engines
+     */
+    public final static String CACHE_ENGINE_EHCACHE = "ehcache";
+    public final static String CACHE_ENGINE_MAPPED_FILE = "mappedFile";
+
     /**
      * preferences
      */
@@ -203,6 +210,14 @@ public class ApplicationPreferences
         return preferences.get(ID_CACHE_PATH, SystemUtil.getTempDirectory());
     }
 
+    /**
+     * Get image cache engine (see {@link #CACHE_ENGINE_EHCACHE} and {@link #CACHE_ENGINE_MAPPED_FILE})
+     */
+    public static String getCacheEngine()
+    {
+        return preferences.get(ID_CACHE_ENGINE, CACHE_ENGINE_EHCACHE);
+    }
+
     /**
      * Get extra JVM parameters string
      */
@@ -287,6 +302,14 @@ public class ApplicationPreferences
         preferences.put(ID_CACHE_PATH, value);
     }
 
+    /**
+     * Set image cache engine (see {@link #CACHE_ENGINE_EHCACHE} and {@link #CACHE_ENGINE_MAPPED_FILE})
+     */
+    public static void setCacheEngine(String value)
+    {
+        preferences.put(ID_CACHE_ENGINE, value);
+    }
+
     /**
      * Set extra JVM parameters string
      */
@@ -43,6 +43,10 @@ public class GeneralPreferences
     public static final String ID_SEQUENCE_PERSISTENCE = "sequencePersistence";
     public static final String ID_SAVE_NEW_SEQUENCE = "saveNewSequence";
     public static final String ID_VIRTUAL_MODE = "virtualMode";
+    public static final String ID_PARALLEL_LOADING = "parallelLoading";
+    public static final String ID_PYRAMID_CACHE = "pyramidCache";
+    public static final String ID_PYRAMID_CACHE_SIZE = "pyramidCacheSize";
+    public static final String ID_COMPACT_ROI_MASK = "compactRoiMask";
     public static final String ID_AUTO_UPDATE = "autoUpdate";
     public static final String ID_LAST_UPDATECHECK_TIME = "lastUpdateCheckTime";
     public static final String ID_RIBBON_MINIMIZED = "ribbonMinimized";
@@ -229,6 +233,41 @@ public class GeneralPreferences
         return prefGeneral.getBoolean(ID_VIRTUAL_MODE, false);
     }
 
+    /**
+     * Returns <code>true</code> if images should be loaded in parallel when opening a sequence which fit in memory
+     * (otherwise images are loaded on demand)
+     */
+    public static boolean getParallelLoading()
+    {
+        return prefGeneral.getBoolean(ID_PARALLEL_LOADING, false);
+    }
+
+    /**
+     * Returns <code>true</code> if the missing sub resolution levels of large images should be built and stored on
+     * disk (so they are computed only once)
+     */
+    public static boolean getPyramidCache()
+    {
+        return prefGeneral.getBoolean(ID_PYRAMID_CACHE, false);
+    }
+
+    /**
+     * Returns the maximum disk space (in MB) used to store sub resolution levels of large images
+     */
+    public static int getPyramidCacheSize()
+    {
+        return prefGeneral.getInt(ID_PYRAMID_CACHE_SIZE, 4096);
+    }
+
+    /**
+     * Returns <code>true</code> if area ROI masks should be saved in the compact run length XML format (not readable by
+     * older versions)
+     */
+    public static boolean getCompactROIMask()
+    {
+        return prefGeneral.getBoolean(ID_COMPACT_ROI_MASK, false);
+    }
+
     public static void setExitConfirm(boolean value)
     {
         prefConfirms.putBoolean(ID_CONFIRM_EXIT, value);
@@ -333,4 +372,24 @@ public class GeneralPreferences
     {
         prefGeneral.putBoolean(ID_VIRTUAL_MODE, value);
     }
+
+    public static void setParallelLoading(boolean value)
+    {
+        prefGeneral.putBoolean(ID_PARALLEL_LOADING, value);
+    }
+
+    public static void setPyramidCache(boolean value)
+    {
+        prefGeneral.putBoolean(ID_PYRAMID_CACHE, value);
+    }
+
+    public static void setPyramidCacheSize(int value)
+    {
+        prefGeneral.putInt(ID_PYRAMID_CACHE_SIZE, Math.max(64, value));
+    }
+
+    public static void setCompactROIMask(boolean value)
+    {
+        prefGeneral.putBoolean(ID_COMPACT_ROI_MASK, value);
+    }
 }
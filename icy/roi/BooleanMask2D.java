@@ -1147,6 +1147,52 @@ public class BooleanMask2D implements Cloneable
         return getExclusiveUnionBooleanMask(bounds1, mask1, bounds2, mask2);
     }
 
+    /**
+     * Returns the scanline run length encoded representation of the specified mask.<br>
+     * <code>result.length</code> = <code>bounds.height</code><br>
+     * <code>result[y]</code> = runs of line <code>bounds.y + y</code> as (start X, end X) pairs (start is inclusive,
+     * end is exclusive) in ascending X order.<br>
+     * Runs are computed from the boolean array on each call (the mask is still stored as a boolean array), they are used
+     * to speed up traversal (contour, points, components) as only mask points are visited.
+     */
+    public static int[][] getRuns(Rectangle bounds, boolean[] mask)
+    {
+        final int w = Math.max(0, bounds.width);
+        final int h = Math.max(0, bounds.height);
+        final int[][] result = new int[h][];
+        // maximum number of run bound for a single line
+        final int[] line = new int[w + 1];
+        int off = 0;
+
+        for (int y = 0; y < h; y++)
+        {
+            int n = 0;
+            int x = 0;
+
+            while (x < w)
+            {
+                // find run start
+                while ((x < w) && !mask[off + x])
+                    x++;
+                if (x == w)
+                    break;
+
+                line[n++] = bounds.x + x;
+
+                // find run end
+                while ((x < w) && mask[off + x])
+                    x++;
+
+                line[n++] = bounds.x + x;
+            }
+
+            result[y] = Arrays.copyOf(line, n);
+            off += w;
+        }
+
+        return result;
+    }
+
     /**
      * Region represented by the mask.
      */
@@ -1176,6 +1222,36 @@ public class BooleanMask2D implements Cloneable
         this.mask = mask;
     }
 
+    /**
+     * Build a new boolean mask from its scanline run length encoded representation (runs are expanded into the boolean
+     * array).
+     * 
+     * @param bounds
+     *        region represented by the mask
+     * @param runs
+     *        runs of each line (see {@link #getRuns()} for format)
+     */
+    public BooleanMask2D(Rectangle bounds, int[][] runs)
+    {
+        super();
+
+        final int w = bounds.width;
+
+        this.bounds = bounds;
+        mask = new boolean[w * bounds.height];
+
+        int off = -bounds.x;
+        for (int y = 0; y < Math.min(runs.length, bounds.height); y++)
+        {
+            final int[] line = runs[y];
+
+            for (int i = 0; i < line.length; i += 2)
+                Arrays.fill(mask, off + line[i + 0], off + line[i + 1], true);
+
+            off += w;
+        }
+    }
+
     /**
      * Build a new boolean mask from the specified array of {@link Point}.<br>
      */
@@ -1413,7 +1489,22 @@ public class BooleanMask2D implements Cloneable
         if (bounds.isEmpty())
             return new int[0];
 
-        int[] points = new int[mask.length * 2];
+        final boolean[] mask;
+        final Rectangle bounds;
+
+        synchronized (this)
+        {
+            mask = this.mask;
+            bounds = this.bounds;
+        }
+
+        int numPoint = 0;
+        for (int i = 0; i < mask.length; i++)
+            if (mask[i])
+                numPoint++;
+
+        // directly allocate the exact result size (sparse mask can be very large)
+        final int[] result = new int[numPoint * 2];
         final int maxx = bounds.x + bounds.width;
         final int maxy = bounds.y + bounds.height;
 
@@ -1425,17 +1516,36 @@ public class BooleanMask2D implements Cloneable
             {
                 if (mask[off++])
                 {
-                    points[pt++] = x;
-                    points[pt++] = y;
+                    result[pt++] = x;
+                    result[pt++] = y;
                 }
             }
         }
 
-        final int[] result = new int[pt];
+        return result;
+    }
+
+    /**
+     * Returns the scanline run length encoded representation of the mask.<br>
+     * <code>result.length</code> = <code>bounds.height</code><br>
+     * <code>result[y]</code> = runs of line <code>bounds.y + y</code> as (start X, end X) pairs (start is inclusive,
+     * end is exclusive) in ascending X order.<br>
+     * Runs are computed from the boolean array on each call (the mask is still stored as a boolean array).
+     * 
+     * @see #BooleanMask2D(Rectangle, int[][])
+     */
+    public int[][] getRuns()
+    {
+        final boolean[] mask;
+        final Rectangle bounds;
 
-        System.arraycopy(points, 0, result, 0, pt);
+        synchronized (this)
+        {
+            mask = this.mask;
+            bounds = this.bounds;
+        }
 
-        return result;
+        return getRuns(bounds, mask);
     }
 
     /**
@@ -1610,6 +1720,7 @@ public class BooleanMask2D implements Cloneable
      * <i>c</i>.<br>
      * <code>result[c][(pt * 2) + 1]</code> = Y coordinate for point <i>pt</i> of component
      * <i>c</i>.<br>
+     * Components are returned in scan order of their first (top-left) point and points are in ascending XY order.
      * 
      * @see #getComponentsPoints(boolean)
      */
@@ -1618,34 +1729,53 @@ public class BooleanMask2D implements Cloneable
         if (bounds.isEmpty())
             return new int[0][0];
 
-        final List<Component> components = getComponentsPointsInternal();
-        final int[][] result = new int[components.size()][];
+        // label runs (much faster than labeling pixels)
+        final ComponentLabeler.Labeling labeling = ComponentLabeler.label(this, 8);
+        final int numRow = labeling.getNumRow();
+        final int[][] result = new int[labeling.numLabel][];
+        final int[] sizes = new int[labeling.numLabel];
+
+        for (int i = 0; i < labeling.runLabel.length; i++)
+            sizes[labeling.runLabel[i]] += (labeling.runEnd[i] - labeling.runStart[i]) * 2;
+        for (int c = 0; c < result.length; c++)
+            result[c] = new int[sizes[c]];
+
+        // fill points (ascending XY order)
+        final int[] offsets = new int[labeling.numLabel];
+        for (int row = 0; row < numRow; row++)
+        {
+            final int y = labeling.y + row;
+
+            for (int i = labeling.rowOffset[row]; i < labeling.rowOffset[row + 1]; i++)
+            {
+                final int c = labeling.runLabel[i];
+                final int[] points = result[c];
+                int off = offsets[c];
+
+                for (int x = labeling.runStart[i]; x < labeling.runEnd[i]; x++)
+                {
+                    points[off++] = x;
+                    points[off++] = y;
+                }
 
-        // convert list of point to Point array
-        for (int i = 0; i < result.length; i++)
-            result[i] = components.get(i).getAllPoints();
+                offsets[c] = off;
+            }
+        }
 
         return result;
     }
 
     /**
      * Return an array of boolean mask representing each independent component of the current
-     * mask.<br>
-     * A component is basically an isolated object which does not touch any other objects.
+     * mask (8-connectivity).<br>
+     * A component is basically an isolated object which does not touch any other objects.<br>
+     * Components are returned in scan order of their first (top-left) point.
+     * 
+     * @see ComponentLabeler#getComponents(BooleanMask2D, int)
      */
     public BooleanMask2D[] getComponents()
     {
-        if (bounds.isEmpty())
-            return new BooleanMask2D[0];
-
-        final int[][] componentsPoints = getComponentsPointsAsIntArray();
-        final List<BooleanMask2D> result = new ArrayList<BooleanMask2D>();
-
-        // convert array of point to boolean mask
-        for (int[] componentPoints : componentsPoints)
-            result.add(new BooleanMask2D(componentPoints));
-
-        return result.toArray(new BooleanMask2D[result.size()]);
+        return ComponentLabeler.getComponents(this, 8);
     }
 
     /**
@@ -2057,184 +2187,50 @@ public class BooleanMask2D implements Cloneable
             bounds = this.bounds;
         }
 
-        final int[] points = new int[mask.length * 2];
-        final int h = bounds.height;
-        final int w = bounds.width;
-        final int maxx = bounds.x + (w - 1);
-        final int maxy = bounds.y + (h - 1);
-
-        // cache
-        boolean top = false;
-        boolean bottom = false;
-        boolean left = false;
-        boolean right = false;
-        boolean current;
-
-        int offset = 0;
-        int pt = 0;
+        // work on runs so we only visit mask points
+        final int[][] runs = getRuns(bounds, mask);
+        final int h = runs.length;
+        final int[] noRun = new int[0];
+        final DynamicArray.Int points = new DynamicArray.Int(8);
+        final int miny = bounds.y;
 
-        // special case where width <= 2 or height <= 2 in which case all pixels count as border
-        if ((w <= 2) || (h <= 2))
+        for (int j = 0; j < h; j++)
         {
-            for (int y = bounds.y; y <= maxy; y++)
+            final int[] line = runs[j];
+            // out of bounds lines don't have any point
+            final int[] top = (j > 0) ? runs[j - 1] : noRun;
+            final int[] bottom = (j < (h - 1)) ? runs[j + 1] : noRun;
+            final int y = miny + j;
+            int indTop = 0;
+            int indBottom = 0;
+
+            for (int i = 0; i < line.length; i += 2)
             {
-                for (int x = bounds.x; x <= maxx; x++)
-                {
-                    // current pixel is a border ?
-                    if (mask[offset++])
-                    {
-                        points[pt++] = x;
-                        points[pt++] = y;
-                    }
-                }
-            }
-        }
-        else
-        {
-            // first pixel of first line
-            top = false;
-            left = false;
-            current = mask[offset];
-            bottom = mask[offset + w];
-            right = mask[++offset];
+                final int start = line[i + 0];
+                final int last = line[i + 1] - 1;
 
-            // current pixel is a border ?
-            if (current && !(top && left && right && bottom))
-            {
-                points[pt++] = bounds.x;
-                points[pt++] = bounds.y;
-            }
-
-            // first line
-            for (int x = bounds.x + 1; x < maxx; x++)
-            {
-                // cache
-                left = current;
-                current = right;
-                bottom = mask[offset + w];
-                right = mask[++offset];
-
-                // current pixel is a border ?
-                if (current && !(top && left && right && bottom))
-                {
-                    points[pt++] = x;
-                    points[pt++] = bounds.y;
-                }
-            }
-
-            // last pixel of first line
-            left = current;
-            current = right;
-            bottom = mask[offset + w];
-            right = false;
-            offset++;
-
-            // current pixel is a border ?
-            if (current && !(top && left && right && bottom))
-            {
-                points[pt++] = maxx;
-                points[pt++] = bounds.y;
-            }
-
-            for (int y = bounds.y + 1; y < maxy; y++)
-            {
-                // first pixel of line
-                left = false;
-                current = mask[offset];
-                top = mask[offset - w];
-                bottom = mask[offset + w];
-                right = mask[++offset];
-
-                // current pixel is a border ?
-                if (current && !(top && left && right && bottom))
+                for (int x = start; x <= last; x++)
                 {
-                    points[pt++] = bounds.x;
-                    points[pt++] = y;
-                }
+                    // find top and bottom runs which may contain x
+                    while ((indTop < top.length) && (top[indTop + 1] <= x))
+                        indTop += 2;
+                    while ((indBottom < bottom.length) && (bottom[indBottom + 1] <= x))
+                        indBottom += 2;
 
-                for (int x = bounds.x + 1; x < maxx; x++)
-                {
-                    // cache
-                    left = current;
-                    current = right;
-                    top = mask[offset - w];
-                    bottom = mask[offset + w];
-                    right = mask[++offset];
+                    final boolean hasTop = (indTop < top.length) && (top[indTop] <= x);
+                    final boolean hasBottom = (indBottom < bottom.length) && (bottom[indBottom] <= x);
 
-                    // current pixel is a border ?
-                    if (current && !(top && left && right && bottom))
+                    // current pixel is a border ? (left and right are empty for run start and end pixel)
+                    if ((x == start) || (x == last) || !hasTop || !hasBottom)
                     {
-                        points[pt++] = x;
-                        points[pt++] = y;
+                        points.addSingle(x);
+                        points.addSingle(y);
                     }
                 }
-
-                // last pixel of line
-                left = current;
-                current = right;
-                top = mask[offset - w];
-                bottom = mask[offset + w];
-                right = false;
-                offset++;
-
-                // current pixel is a border ?
-                if (current && !(top && left && right && bottom))
-                {
-                    points[pt++] = maxx;
-                    points[pt++] = y;
-                }
-            }
-
-            // first pixel of last line
-            left = false;
-            current = mask[offset];
-            top = mask[offset - w];
-            bottom = false;
-            right = mask[++offset];
-
-            // current pixel is a border ?
-            if (current && !(top && left && right && bottom))
-            {
-                points[pt++] = bounds.x;
-                points[pt++] = maxy;
-            }
-
-            // last line
-            for (int x = bounds.x + 1; x < maxx; x++)
-            {
-                // cache
-                left = current;
-                current = right;
-                top = mask[offset - w];
-                right = mask[++offset];
-
-                // current pixel is a border ?
-                if (current && !(top && left && right && bottom))
-                {
-                    points[pt++] = x;
-                    points[pt++] = maxy;
-                }
-            }
-
-            // last pixel of last line
-            left = current;
-            current = right;
-            top = mask[offset - w];
-            right = false;
-
-            // current pixel is a border ?
-            if (current && !(top && left && right && bottom))
-            {
-                points[pt++] = maxx;
-                points[pt++] = maxy;
             }
         }
 
-        final int[] result = new int[pt];
-
-        System.arraycopy(points, 0, result, 0, pt);
-
-        return result;
+        return points.asArray();
     }
 
     /**
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+
+import icy.util.ZipUtil;
+
+/**
+ * Compact binary encoding of 2D byte / boolean mask used for ROI persistence.<br>
+ * Mask rows are converted to runs (variable length integers) then packed (zlib) and the result is stored as a Base64
+ * string.<br>
+ * Encoding and decoding use per thread Deflater / Inflater objects (see {@link ZipUtil#getThreadDeflater()}) so they
+ * can be done in parallel.
+ *
+ * @author Stephane
+ */
+public class BooleanMaskCodec
+{
+    /**
+     * Encoding format version
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Encode the specified byte mask (0 = false, other value = true) and returns it as a Base64 string.
+     *
+     * @param bounds
+     *        mask bounds (only width and height are used)
+     * @param mask
+     *        mask data (length should be bounds.width * bounds.height)
+     */
+    public static String encode(Rectangle bounds, byte[] mask)
+    {
+        final int w = bounds.width;
+        final int h = bounds.height;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, h * 4));
+        final int[] line = new int[w + 1];
+
+        out.write(VERSION);
+
+        int off = 0;
+        for (int y = 0; y < h; y++)
+        {
+            int n = 0;
+            int x = 0;
+
+            while (x < w)
+            {
+                // find run start
+                while ((x < w) && (mask[off + x] == 0))
+                    x++;
+                if (x == w)
+                    break;
+
+                line[n++] = x;
+
+                // find run end
+                while ((x < w) && (mask[off + x] != 0))
+                    x++;
+
+                line[n++] = x;
+            }
+
+            // number of run then (gap, length) for each run
+            writeVarInt(out, n / 2);
+            int last = 0;
+            for (int i = 0; i < n; i += 2)
+            {
+                writeVarInt(out, line[i] - last);
+                writeVarInt(out, line[i + 1] - line[i]);
+                last = line[i + 1];
+            }
+
+            off += w;
+        }
+
+        return Base64.getEncoder().encodeToString(ZipUtil.pack(ZipUtil.getThreadDeflater(), out.toByteArray(), -1));
+    }
+
+    /**
+     * Decode the specified Base64 string (produced by {@link #encode(Rectangle, byte[])}) and returns the byte mask (0 =
+     * false, 1 = true).<br>
+     * Returns <code>null</code> if data are not valid.
+     *
+     * @param bounds
+     *        mask bounds (only width and height are used)
+     * @param value
+     *        encoded mask
+     */
+    public static byte[] decode(Rectangle bounds, String value)
+    {
+        final int w = bounds.width;
+        final int h = bounds.height;
+        final byte[] result = new byte[Math.max(0, w) * Math.max(0, h)];
+        final byte[] data;
+
+        try
+        {
+            data = ZipUtil.unpack(ZipUtil.getThreadInflater(), Base64.getDecoder().decode(value));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+        catch (DataFormatException e)
+        {
+            return null;
+        }
+
+        // unknown version
+        if ((data.length == 0) || (data[0] != VERSION))
+            return null;
+
+        // read position
+        final int[] pos = new int[] {1};
+
+        try
+        {
+            int off = 0;
+            for (int y = 0; y < h; y++)
+            {
+                final int n = readVarInt(data, pos);
+                int x = 0;
+
+                for (int i = 0; i < n; i++)
+                {
+                    x += readVarInt(data, pos);
+                    final int len = readVarInt(data, pos);
+
+                    if ((x < 0) || (len < 0) || ((x + len) > w))
+                        return null;
+
+                    Arrays.fill(result, off + x, off + x + len, (byte) 1);
+                    x += len;
+                }
+
+                off += w;
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            // truncated data
+            return null;
+        }
+
+        return result;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value)
+    {
+        int v = value;
+
+        while ((v & ~0x7F) != 0)
+        {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+
+        out.write(v);
+    }
+
+    private static int readVarInt(byte[] data, int[] pos)
+    {
+        int result = 0;
+        int shift = 0;
+        int b;
+
+        do
+        {
+            b = data[pos[0]++];
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        return result;
+    }
+}
@@ -0,0 +1,656 @@
+package icy.roi;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.RecursiveAction;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+import icy.type.rectangle.Rectangle3D;
+
+/**
+ * Connected component labeling of 2D and 3D boolean masks.<br>
+ * Mask rows are first converted to runs (horizontal segments) then runs are labeled with a two-pass union-find: rows
+ * are split in tiles labeled in parallel (fork / join) and tiles are merged on their boundaries.<br>
+ * Supported connectivity are 4 and 8 for 2D masks, 6, 18 and 26 for 3D masks (2D connectivity can be used for 3D mask
+ * where it means 6 and 26, 3D connectivity for 2D mask means 4 for 6 and 8 otherwise).
+ *
+ * @author Stephane
+ */
+public class ComponentLabeler
+{
+    /**
+     * Minimum number of row for a parallel labeling tile
+     */
+    static final int TILE_MIN_ROW = 64;
+
+    /**
+     * Labeling result: runs of the mask with their component label
+     */
+    static class Labeling
+    {
+        // mask bounds
+        final int x;
+        final int y;
+        final int z;
+        final int sizeX;
+        final int sizeY;
+        final int sizeZ;
+        // first run index for each row (row = (z * sizeY) + y), length = number of row + 1
+        final int[] rowOffset;
+        // start X (inclusive) and end X (exclusive) of each run (absolute coordinates)
+        final int[] runStart;
+        final int[] runEnd;
+        // union-find parent then component label of each run
+        final int[] runLabel;
+        int numLabel;
+
+        // connectivity tolerance (0 = overlap, 1 = touch, -1 = not connected)
+        final int dPlane;
+        final int dSliceSame;
+        final int dSliceDiag;
+
+        Labeling(Rectangle3D.Integer bounds, int[][] rowRuns, int connectivity)
+        {
+            super();
+
+            x = bounds.x;
+            y = bounds.y;
+            z = bounds.z;
+            sizeX = bounds.sizeX;
+            sizeY = bounds.sizeY;
+            sizeZ = bounds.sizeZ;
+
+            switch (connectivity)
+            {
+                case 4:
+                case 6:
+                    dPlane = 0;
+                    dSliceSame = 0;
+                    dSliceDiag = -1;
+                    break;
+
+                case 18:
+                    dPlane = 1;
+                    dSliceSame = 1;
+                    dSliceDiag = 0;
+                    break;
+
+                case 8:
+                case 26:
+                    dPlane = 1;
+                    dSliceSame = 1;
+                    dSliceDiag = 1;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unsupported connectivity: " + connectivity
+                            + " (should be 4 or 8 for 2D, 6, 18 or 26 for 3D)");
+            }
+
+            final int numRow = rowRuns.length;
+
+            rowOffset = new int[numRow + 1];
+            for (int r = 0; r < numRow; r++)
+                rowOffset[r + 1] = rowOffset[r] + (rowRuns[r].length / 2);
+
+            final int numRun = rowOffset[numRow];
+
+            runStart = new int[numRun];
+            runEnd = new int[numRun];
+            runLabel = new int[numRun];
+
+            for (int r = 0; r < numRow; r++)
+            {
+                final int[] line = rowRuns[r];
+                int off = rowOffset[r];
+
+                for (int i = 0; i < line.length; i += 2)
+                {
+                    runStart[off] = line[i + 0];
+                    runEnd[off] = line[i + 1];
+                    runLabel[off] = off;
+                    off++;
+                }
+            }
+
+            numLabel = 0;
+        }
+
+        int getNumRow()
+        {
+            return rowOffset.length - 1;
+        }
+
+        int find(int run)
+        {
+            int r = run;
+
+            while (runLabel[r] != r)
+            {
+                // path halving
+                runLabel[r] = runLabel[runLabel[r]];
+                r = runLabel[r];
+            }
+
+            return r;
+        }
+
+        void union(int run1, int run2)
+        {
+            final int r1 = find(run1);
+            final int r2 = find(run2);
+
+            // lowest index is the root
+            if (r1 < r2)
+                runLabel[r2] = r1;
+            else if (r2 < r1)
+                runLabel[r1] = r2;
+        }
+
+        /**
+         * Connect runs of the specified rows (runs are sorted) using the given tolerance
+         */
+        void connectRows(int row, int neighborRow, int d)
+        {
+            int i = rowOffset[row];
+            int j = rowOffset[neighborRow];
+            final int iEnd = rowOffset[row + 1];
+            final int jEnd = rowOffset[neighborRow + 1];
+
+            while ((i < iEnd) && (j < jEnd))
+            {
+                // connected runs ?
+                if ((runStart[i] < (runEnd[j] + d)) && (runStart[j] < (runEnd[i] + d)))
+                    union(i, j);
+
+                // advance the run which ends first
+                if (runEnd[i] < runEnd[j])
+                    i++;
+                else
+                    j++;
+            }
+        }
+
+        /**
+         * Connect runs of the specified row with runs of its previous neighbor rows in [minRow, maxRow[
+         */
+        void connect(int row, int minRow, int maxRow)
+        {
+            // empty row
+            if (rowOffset[row] == rowOffset[row + 1])
+                return;
+
+            final int ry = row % sizeY;
+            // same row in previous slice
+            final int prev = row - sizeY;
+
+            // previous row in the same slice
+            if ((ry > 0) && ((row - 1) >= minRow) && ((row - 1) < maxRow))
+                connectRows(row, row - 1, dPlane);
+            if ((prev >= minRow) && (prev < maxRow))
+                connectRows(row, prev, dSliceSame);
+            if (dSliceDiag >= 0)
+            {
+                if ((ry > 0) && ((prev - 1) >= minRow) && ((prev - 1) < maxRow))
+                    connectRows(row, prev - 1, dSliceDiag);
+                if ((ry < (sizeY - 1)) && ((prev + 1) >= minRow) && ((prev + 1) < maxRow))
+                    connectRows(row, prev + 1, dSliceDiag);
+            }
+        }
+
+        /**
+         * Connect runs of rows in [from, to[ with runs of previous rows in [minRow, maxRow[
+         */
+        void connectBoundary(int from, int to, int minRow, int maxRow)
+        {
+            // only first rows of the tile can have neighbors in previous tile
+            final int end = Math.min(to, maxRow + sizeY + 1);
+
+            for (int row = from; row < end; row++)
+                connect(row, minRow, maxRow);
+        }
+
+        /**
+         * Final pass: replace union-find parent by consecutive component label (in scan order)
+         */
+        void resolve()
+        {
+            // parent always has a lower index so a single pass is enough to point all runs to their root
+            for (int i = 0; i < runLabel.length; i++)
+                runLabel[i] = runLabel[runLabel[i]];
+
+            int label = 0;
+
+            for (int i = 0; i < runLabel.length; i++)
+            {
+                final int root = runLabel[i];
+
+                // root is already labeled when not itself
+                if (root == i)
+                    runLabel[i] = label++;
+                else
+                    runLabel[i] = runLabel[root];
+            }
+
+            numLabel = label;
+        }
+    }
+
+    /**
+     * Tile labeling task (row range), tiles are merged on their boundary after both halves are labeled
+     */
+    private static class LabelingTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 3536472233850404870L;
+
+        final Labeling labeling;
+        final int from;
+        final int to;
+
+        LabelingTask(Labeling labeling, int from, int to)
+        {
+            super();
+
+            this.labeling = labeling;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) <= TILE_MIN_ROW)
+            {
+                // first pass on tile
+                for (int row = from; row < to; row++)
+                    labeling.connect(row, from, row);
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new LabelingTask(labeling, from, mid), new LabelingTask(labeling, mid, to));
+
+                // merge tiles
+                labeling.connectBoundary(mid, to, from, mid);
+            }
+        }
+    }
+
+    /**
+     * Compute runs of each slice of a 3D mask
+     */
+    private static class RunsTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -4215416093473546262L;
+
+        final BooleanMask3D mask;
+        final Rectangle3D.Integer bounds;
+        final int[][] rowRuns;
+        final int from;
+        final int to;
+
+        RunsTask(BooleanMask3D mask, Rectangle3D.Integer bounds, int[][] rowRuns, int from, int to)
+        {
+            super();
+
+            this.mask = mask;
+            this.bounds = bounds;
+            this.rowRuns = rowRuns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+            {
+                final BooleanMask2D mask2d = mask.getMask2D(bounds.z + from);
+                final int off = from * bounds.sizeY;
+
+                if (mask2d != null)
+                {
+                    final Rectangle r = mask2d.bounds;
+                    final int[][] runs = mask2d.getRuns();
+
+                    // slice mask is inside 3D mask bounds
+                    for (int j = 0; j < runs.length; j++)
+                    {
+                        final int ry = (r.y + j) - bounds.y;
+
+                        if ((ry >= 0) && (ry < bounds.sizeY))
+                            rowRuns[off + ry] = runs[j];
+                    }
+                }
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new RunsTask(mask, bounds, rowRuns, from, mid), new RunsTask(mask, bounds, rowRuns, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Fill label image slices from labeled runs
+     */
+    private static class LabelImageTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1877352694012305712L;
+
+        final Labeling labeling;
+        final IcyBufferedImage[] images;
+        // same labels for all slices (infinite Z dimension)
+        final boolean allZ;
+        final int sizeX;
+        final int sizeY;
+        final int from;
+        final int to;
+
+        LabelImageTask(Labeling labeling, IcyBufferedImage[] images, boolean allZ, int sizeX, int sizeY, int from,
+                int to)
+        {
+            super();
+
+            this.labeling = labeling;
+            this.images = images;
+            this.allZ = allZ;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+            {
+                final IcyBufferedImage image = new IcyBufferedImage(sizeX, sizeY, 1, DataType.INT);
+                final int[] data = image.getDataXYAsInt(0);
+                final int lz = allZ ? 0 : (from - labeling.z);
+
+                if ((lz >= 0) && (lz < labeling.sizeZ))
+                {
+                    for (int ry = 0; ry < labeling.sizeY; ry++)
+                    {
+                        final int y = labeling.y + ry;
+
+                        if ((y < 0) || (y >= sizeY))
+                            continue;
+
+                        final int row = (lz * labeling.sizeY) + ry;
+                        final int off = y * sizeX;
+
+                        for (int i = labeling.rowOffset[row]; i < labeling.rowOffset[row + 1]; i++)
+                        {
+                            final int s = Math.max(0, labeling.runStart[i]);
+                            final int e = Math.min(sizeX, labeling.runEnd[i]);
+
+                            // labels start at 1 (0 = background)
+                            if (s < e)
+                                Arrays.fill(data, off + s, off + e, labeling.runLabel[i] + 1);
+                        }
+                    }
+                }
+
+                image.dataChanged();
+                images[from] = image;
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new LabelImageTask(labeling, images, allZ, sizeX, sizeY, from, mid),
+                        new LabelImageTask(labeling, images, allZ, sizeX, sizeY, mid, to));
+            }
+        }
+    }
+
+    static Labeling label(Rectangle3D.Integer bounds, int[][] rowRuns, int connectivity)
+    {
+        final Labeling result = new Labeling(bounds, rowRuns, connectivity);
+        final int numRow = result.getNumRow();
+
+        if (numRow > 0)
+            ThreadUtil.forkJoinInvoke(new LabelingTask(result, 0, numRow));
+
+        result.resolve();
+
+        return result;
+    }
+
+    static Labeling label(BooleanMask2D mask, int connectivity)
+    {
+        final Rectangle r = mask.bounds;
+
+        return label(new Rectangle3D.Integer(r.x, r.y, 0, r.width, r.height, 1), mask.getRuns(), connectivity);
+    }
+
+    static Labeling label(BooleanMask3D mask, int connectivity)
+    {
+        final Rectangle3D.Integer bounds = new Rectangle3D.Integer(mask.bounds);
+
+        // infinite Z dimension --> single slice
+        if (bounds.sizeZ == Integer.MAX_VALUE)
+            return label(mask.getMask2D(0), connectivity);
+
+        final int[][] rowRuns = new int[bounds.sizeZ * bounds.sizeY][];
+
+        if (bounds.sizeZ > 0)
+            ThreadUtil.forkJoinInvoke(new RunsTask(mask, bounds, rowRuns, 0, bounds.sizeZ));
+
+        // empty rows
+        for (int r = 0; r < rowRuns.length; r++)
+            if (rowRuns[r] == null)
+                rowRuns[r] = new int[0];
+
+        return label(bounds, rowRuns, connectivity);
+    }
+
+    /**
+     * Returns bounds of each component as { minX, minY, minZ, maxX, maxY, maxZ } (max exclusive)
+     */
+    static int[][] getComponentBounds(Labeling labeling)
+    {
+        final int[][] result = new int[labeling.numLabel][];
+
+        for (int c = 0; c < result.length; c++)
+            result[c] = new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                    Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+        for (int row = 0; row < labeling.getNumRow(); row++)
+        {
+            final int y = labeling.y + (row % labeling.sizeY);
+            final int z = labeling.z + (row / labeling.sizeY);
+
+            for (int i = labeling.rowOffset[row]; i < labeling.rowOffset[row + 1]; i++)
+            {
+                final int[] b = result[labeling.runLabel[i]];
+
+                b[0] = Math.min(b[0], labeling.runStart[i]);
+                b[1] = Math.min(b[1], y);
+                b[2] = Math.min(b[2], z);
+                b[3] = Math.max(b[3], labeling.runEnd[i]);
+                b[4] = Math.max(b[4], y + 1);
+                b[5] = Math.max(b[5], z + 1);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an array of boolean mask representing each connected component of the specified 2D mask.
+     *
+     * @param mask
+     *        the mask to label
+     * @param connectivity
+     *        4 or 8
+     */
+    public static BooleanMask2D[] getComponents(BooleanMask2D mask, int connectivity)
+    {
+        if (mask.isEmpty())
+            return new BooleanMask2D[0];
+
+        final Labeling labeling = label(mask, connectivity);
+        final int[][] compBounds = getComponentBounds(labeling);
+        final BooleanMask2D[] result = new BooleanMask2D[labeling.numLabel];
+
+        for (int c = 0; c < result.length; c++)
+        {
+            final int[] b = compBounds[c];
+            final Rectangle r = new Rectangle(b[0], b[1], b[3] - b[0], b[4] - b[1]);
+
+            result[c] = new BooleanMask2D(r, new boolean[r.width * r.height]);
+        }
+
+        // directly fill component masks from runs
+        for (int row = 0; row < labeling.getNumRow(); row++)
+        {
+            final int y = labeling.y + row;
+
+            for (int i = labeling.rowOffset[row]; i < labeling.rowOffset[row + 1]; i++)
+            {
+                final BooleanMask2D component = result[labeling.runLabel[i]];
+                final Rectangle r = component.bounds;
+                final int off = ((y - r.y) * r.width) - r.x;
+
+                Arrays.fill(component.mask, off + labeling.runStart[i], off + labeling.runEnd[i], true);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an array of boolean mask representing each connected component of the specified 3D mask.
+     *
+     * @param mask
+     *        the mask to label
+     * @param connectivity
+     *        6, 18 or 26
+     */
+    public static BooleanMask3D[] getComponents(BooleanMask3D mask, int connectivity)
+    {
+        if (mask.isEmpty())
+            return new BooleanMask3D[0];
+
+        // infinite Z dimension --> 2D components with infinite Z dimension
+        if (mask.bounds.sizeZ == Integer.MAX_VALUE)
+        {
+            final BooleanMask2D[] components = getComponents(mask.getMask2D(0), connectivity);
+            final BooleanMask3D[] result = new BooleanMask3D[components.length];
+
+            for (int c = 0; c < components.length; c++)
+            {
+                final Rectangle r = components[c].bounds;
+                final Rectangle3D.Integer b = new Rectangle3D.Integer(r.x, r.y, 0, r.width, r.height, 0);
+
+                b.setInfiniteZ();
+                result[c] = new BooleanMask3D(b, new BooleanMask2D[] {components[c]});
+            }
+
+            return result;
+        }
+
+        final Labeling labeling = label(mask, connectivity);
+        final int[][] compBounds = getComponentBounds(labeling);
+        final int numLabel = labeling.numLabel;
+        final BooleanMask3D[] result = new BooleanMask3D[numLabel];
+
+        for (int c = 0; c < numLabel; c++)
+        {
+            final int[] b = compBounds[c];
+
+            result[c] = new BooleanMask3D(
+                    new Rectangle3D.Integer(b[0], b[1], b[2], b[3] - b[0], b[4] - b[1], b[5] - b[2]),
+                    new TreeMap<Integer, BooleanMask2D>());
+        }
+
+        // directly fill component masks from runs
+        for (int row = 0; row < labeling.getNumRow(); row++)
+        {
+            final int y = labeling.y + (row % labeling.sizeY);
+            final Integer z = Integer.valueOf(labeling.z + (row / labeling.sizeY));
+
+            for (int i = labeling.rowOffset[row]; i < labeling.rowOffset[row + 1]; i++)
+            {
+                final BooleanMask3D component = result[labeling.runLabel[i]];
+                BooleanMask2D slice = component.mask.get(z);
+
+                // create slice mask on first use
+                if (slice == null)
+                {
+                    final Rectangle3D.Integer b = component.bounds;
+                    final Rectangle r = new Rectangle(b.x, b.y, b.sizeX, b.sizeY);
+
+                    slice = new BooleanMask2D(r, new boolean[r.width * r.height]);
+                    component.mask.put(z, slice);
+                }
+
+                final Rectangle r = slice.bounds;
+                final int off = ((y - r.y) * r.width) - r.x;
+
+                Arrays.fill(slice.mask, off + labeling.runStart[i], off + labeling.runEnd[i], true);
+            }
+        }
+
+        // optimize slices bounds to reduce memory usage
+        for (BooleanMask3D component : result)
+            for (BooleanMask2D slice : component.mask.values())
+                slice.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Returns a label image (one channel, int data type) where each connected component of the specified 3D mask has
+     * its own label (from 1 to number of component, 0 is the background).<br>
+     * Only the part of the mask contained in [0, sizeX[ x [0, sizeY[ x [0, sizeZ[ is represented in the label image.
+     *
+     * @param mask
+     *        the mask to label
+     * @param sizeX
+     *        label image width
+     * @param sizeY
+     *        label image height
+     * @param sizeZ
+     *        label image depth
+     * @param connectivity
+     *        6, 18 or 26
+     */
+    public static Sequence getLabelSequence(BooleanMask3D mask, int sizeX, int sizeY, int sizeZ, int connectivity)
+    {
+        final Labeling labeling = label(mask, connectivity);
+        final Sequence result = new Sequence("Labels");
+
+        if ((sizeX > 0) && (sizeY > 0) && (sizeZ > 0))
+        {
+            final IcyBufferedImage[] images = new IcyBufferedImage[sizeZ];
+
+            // build label images in parallel
+            ThreadUtil.forkJoinInvoke(new LabelImageTask(labeling, images, mask.bounds.sizeZ == Integer.MAX_VALUE,
+                    sizeX, sizeY, 0, sizeZ));
+
+            result.beginUpdate();
+            try
+            {
+                for (int z = 0; z < sizeZ; z++)
+                    result.setImage(0, z, images[z]);
+            }
+            finally
+            {
+                result.endUpdate();
+            }
+        }
+
+        return result;
+    }
+}
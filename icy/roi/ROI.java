@@ -26,6 +26,7 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -111,6 +112,36 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         }
     }
 
+    /**
+     * Soft reference on a cached result computed from the ROI, tagged with the ROI modification count it was computed
+     * for (see {@link ROI#getModificationCount()}).
+     * 
+     * @author Stephane
+     */
+    protected static class CachedReference<T> extends SoftReference<T>
+    {
+        final long modificationCount;
+
+        public CachedReference(T referent, long modificationCount)
+        {
+            super(referent);
+
+            this.modificationCount = modificationCount;
+        }
+
+        /**
+         * Returns the cached object if still available and valid for the specified modification count, or
+         * <code>null</code> otherwise.
+         */
+        public T get(long modCount)
+        {
+            if (modificationCount != modCount)
+                return null;
+
+            return get();
+        }
+    }
+
     /**
      * Group if for ROI (used to do group type operation)
      * 
@@ -691,6 +722,14 @@ public abstract class ROI implements ChangeListener, XMLPersistent
             canBeRemoved = false;
         }
 
+        /**
+         * Returns the ROI attached to this painter.
+         */
+        public ROI getROI()
+        {
+            return ROI.this;
+        }
+
         /**
          * Return the ROI painter stroke.
          */
@@ -1336,6 +1375,10 @@ public abstract class ROI implements ChangeListener, XMLPersistent
     protected boolean boundsInvalid;
     protected boolean numberOfContourPointsInvalid;
     protected boolean numberOfPointsInvalid;
+    /**
+     * modification counter (incremented on each ROI change), used to validate cached masks
+     */
+    protected volatile long modificationCount;
 
     /**
      * listeners
@@ -1367,6 +1410,7 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         boundsInvalid = true;
         numberOfPointsInvalid = true;
         numberOfContourPointsInvalid = true;
+        modificationCount = 0L;
 
         listeners = new ArrayList<ROIListener>();
         updater = new UpdateEventHandler(this, false);
@@ -3278,6 +3322,8 @@ public abstract class ROI implements ChangeListener, XMLPersistent
     @Deprecated
     public void roiChanged(ROIPointEventType pointEventType, Object point)
     {
+        // invalidate cached masks right now (don't wait for end of update)
+        modificationCount++;
         // handle with updater
         updater.changed(new ROIEvent(this, ROIEventType.ROI_CHANGED, pointEventType, point));
     }
@@ -3290,6 +3336,8 @@ public abstract class ROI implements ChangeListener, XMLPersistent
      */
     public void roiChanged(boolean contentChanged)
     {
+        // invalidate cached masks right now (don't wait for end of update)
+        modificationCount++;
         // handle with updater
         if (contentChanged)
             updater.changed(new ROIEvent(this, ROIEventType.ROI_CHANGED, ROI_CHANGED_ALL));
@@ -3297,6 +3345,16 @@ public abstract class ROI implements ChangeListener, XMLPersistent
             updater.changed(new ROIEvent(this, ROIEventType.ROI_CHANGED, ROI_CHANGED_POSITION));
     }
 
+    /**
+     * Returns the modification counter of the ROI.<br>
+     * It is incremented each time the ROI content or position changes (see {@link #roiChanged(boolean)}) so it can be
+     * used to know if a cached result computed from the ROI is still valid.
+     */
+    public long getModificationCount()
+    {
+        return modificationCount;
+    }
+
     /**
      * @deprecated Use {@link #roiChanged(boolean)} instead.
      */
@@ -405,6 +405,12 @@ public abstract class ROI2D extends ROI
      */
     protected int c;
 
+    /**
+     * cached boolean masks (inclusive and exclusive)
+     */
+    protected CachedReference<BooleanMask2D> cachedMaskInclusive;
+    protected CachedReference<BooleanMask2D> cachedMaskExclusive;
+
     public ROI2D()
     {
         super();
@@ -413,6 +419,9 @@ public abstract class ROI2D extends ROI
         z = -1;
         t = -1;
         c = -1;
+
+        cachedMaskInclusive = null;
+        cachedMaskExclusive = null;
     }
 
     @Override
@@ -1236,12 +1245,38 @@ public abstract class ROI2D extends ROI
      * Get the {@link BooleanMask2D} object representing the roi.<br>
      * It contains the rectangle mask bounds and the associated boolean array mask.<br>
      * if the pixel (x,y) is contained in the roi then result.mask[(y * w) + x] = true<br>
-     * if the pixel (x,y) is not contained in the roi then result.mask[(y * w) + x] = false
+     * if the pixel (x,y) is not contained in the roi then result.mask[(y * w) + x] = false<br>
+     * The mask is cached until next ROI modification so the returned object is a copy you can freely modify.
      * 
      * @param inclusive
      *        If true then all partially contained (intersected) pixels are included in the mask.
      */
     public BooleanMask2D getBooleanMask(boolean inclusive)
+    {
+        // get modification count before computing so we never cache an outdated mask as valid
+        final long modCount = getModificationCount();
+        final CachedReference<BooleanMask2D> ref = inclusive ? cachedMaskInclusive : cachedMaskExclusive;
+        BooleanMask2D result = (ref != null) ? ref.get(modCount) : null;
+
+        if (result == null)
+        {
+            result = computeBooleanMask(inclusive);
+
+            if (inclusive)
+                cachedMaskInclusive = new CachedReference<BooleanMask2D>(result, modCount);
+            else
+                cachedMaskExclusive = new CachedReference<BooleanMask2D>(result, modCount);
+        }
+
+        return (BooleanMask2D) result.clone();
+    }
+
+    /**
+     * Compute the {@link BooleanMask2D} object representing the roi (not cached).
+     * 
+     * @see #getBooleanMask(boolean)
+     */
+    protected BooleanMask2D computeBooleanMask(boolean inclusive)
     {
         final Rectangle bounds = getBounds();
 
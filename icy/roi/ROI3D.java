@@ -345,6 +345,12 @@ public abstract class ROI3D extends ROI
      */
     protected int c;
 
+    /**
+     * cached boolean masks (inclusive and exclusive)
+     */
+    protected CachedReference<BooleanMask3D> cachedMaskInclusive;
+    protected CachedReference<BooleanMask3D> cachedMaskExclusive;
+
     public ROI3D()
     {
         super();
@@ -352,6 +358,9 @@ public abstract class ROI3D extends ROI
         // by default we consider no specific T and C attachment
         t = -1;
         c = -1;
+
+        cachedMaskInclusive = null;
+        cachedMaskExclusive = null;
     }
 
     @Override
@@ -970,6 +979,18 @@ public abstract class ROI3D extends ROI
      */
     public BooleanMask2D getBooleanMask2D(int z, boolean inclusive)
     {
+        final CachedReference<BooleanMask3D> ref = inclusive ? cachedMaskInclusive : cachedMaskExclusive;
+        final BooleanMask3D mask3d = (ref != null) ? ref.get(getModificationCount()) : null;
+
+        // 3D mask already computed ? --> just return a copy of the wanted slice
+        if (mask3d != null)
+        {
+            final BooleanMask2D mask2d = mask3d.getMask2D(z);
+
+            if (mask2d != null)
+                return (BooleanMask2D) mask2d.clone();
+        }
+
         final Rectangle bounds = getBounds3D().toRectangle2D().getBounds();
 
         // empty ROI --> return empty mask
@@ -1022,11 +1043,37 @@ public abstract class ROI3D extends ROI
     /**
      * Get the {@link BooleanMask3D} object representing the roi.<br>
      * It contains the 3D rectangle mask bounds and the associated boolean array mask.<br>
+     * The mask is cached until next ROI modification so the returned object is a copy you can freely modify.
      * 
      * @param inclusive
      *        If true then all partially contained (intersected) pixels are included in the mask.
      */
     public BooleanMask3D getBooleanMask(boolean inclusive)
+    {
+        // get modification count before computing so we never cache an outdated mask as valid
+        final long modCount = getModificationCount();
+        final CachedReference<BooleanMask3D> ref = inclusive ? cachedMaskInclusive : cachedMaskExclusive;
+        BooleanMask3D result = (ref != null) ? ref.get(modCount) : null;
+
+        if (result == null)
+        {
+            result = computeBooleanMask(inclusive);
+
+            if (inclusive)
+                cachedMaskInclusive = new CachedReference<BooleanMask3D>(result, modCount);
+            else
+                cachedMaskExclusive = new CachedReference<BooleanMask3D>(result, modCount);
+        }
+
+        return (BooleanMask3D) result.clone();
+    }
+
+    /**
+     * Compute the {@link BooleanMask3D} object representing the roi (not cached).
+     * 
+     * @see #getBooleanMask(boolean)
+     */
+    protected BooleanMask3D computeBooleanMask(boolean inclusive)
     {
         final Rectangle3D.Integer bounds = getBounds();
         final BooleanMask2D masks[] = new BooleanMask2D[bounds.sizeZ];
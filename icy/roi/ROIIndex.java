@@ -0,0 +1,629 @@
+package icy.roi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import icy.type.point.Point5D;
+import icy.type.rectangle.Rectangle5D;
+
+/**
+ * Spatial index of ROI used for fast region and point queries on large ROI collection.<br>
+ * ROIs are bucketed by their Z and T position (ROI lying on several Z or T positions go in the <i>all</i> bucket for
+ * this dimension) and each bucket maintains a R-Tree over the XY bounds of its ROIs.<br>
+ * The index only knows about ROI bounds so query results are candidates that should be tested against the ROI itself
+ * (see {@link #getIntersecting(Rectangle5D)} and {@link #getContaining(Point5D)}).<br>
+ * The index does not listen ROI itself, the owner should call {@link #update(ROI)} when a ROI bounds changed.
+ *
+ * @author Stephane
+ */
+public class ROIIndex
+{
+    /**
+     * Bucket key used for ROI lying on several positions (or all) in Z or T dimension
+     */
+    static final int ALL = Integer.MIN_VALUE;
+
+    private static class Entry
+    {
+        final long key;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+
+        Entry(long key, Rectangle5D bounds)
+        {
+            super();
+
+            this.key = key;
+            minX = bounds.getMinX();
+            minY = bounds.getMinY();
+            maxX = bounds.getMaxX();
+            maxY = bounds.getMaxY();
+        }
+    }
+
+    final Map<ROI, Entry> entries;
+    final Map<Long, RTree> buckets;
+
+    public ROIIndex()
+    {
+        super();
+
+        entries = new HashMap<ROI, Entry>();
+        buckets = new HashMap<Long, RTree>();
+    }
+
+    static int getKey(double min, double size, boolean infinite)
+    {
+        if (infinite || Double.isNaN(min) || Double.isInfinite(min) || (size > 1d))
+            return ALL;
+
+        final int result = (int) Math.floor(min);
+
+        // should lie on a single position
+        if ((result + 1d) < (min + size))
+            return ALL;
+
+        return result;
+    }
+
+    static long getKey(Rectangle5D bounds)
+    {
+        final int z = getKey(bounds.getZ(), bounds.getSizeZ(), bounds.isInfiniteZ());
+        final int t = getKey(bounds.getT(), bounds.getSizeT(), bounds.isInfiniteT());
+
+        return (((long) z) << 32) | (t & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified bucket key can contains ROI intersecting the given Z and T range
+     */
+    static boolean matchKey(long key, double minZ, double maxZ, double minT, double maxT)
+    {
+        final int z = (int) (key >> 32);
+        final int t = (int) key;
+
+        if ((z != ALL) && ((z > maxZ) || ((z + 1d) < minZ)))
+            return false;
+        if ((t != ALL) && ((t > maxT) || ((t + 1d) < minT)))
+            return false;
+
+        return true;
+    }
+
+    /**
+     * Add the specified ROI to the index (does nothing if already present)
+     */
+    public synchronized void add(ROI roi)
+    {
+        if (entries.containsKey(roi))
+            return;
+
+        final Rectangle5D bounds = roi.getBounds5D();
+        final Entry entry = new Entry(getKey(bounds), bounds);
+        final Long key = Long.valueOf(entry.key);
+        RTree tree = buckets.get(key);
+
+        if (tree == null)
+        {
+            tree = new RTree();
+            buckets.put(key, tree);
+        }
+
+        tree.insert(roi, entry.minX, entry.minY, entry.maxX, entry.maxY);
+        entries.put(roi, entry);
+    }
+
+    /**
+     * Remove the specified ROI from the index
+     */
+    public synchronized void remove(ROI roi)
+    {
+        final Entry entry = entries.remove(roi);
+
+        if (entry == null)
+            return;
+
+        final Long key = Long.valueOf(entry.key);
+        final RTree tree = buckets.get(key);
+
+        if (tree != null)
+        {
+            tree.remove(roi, entry.minX, entry.minY, entry.maxX, entry.maxY);
+            // remove empty bucket
+            if (tree.isEmpty())
+                buckets.remove(key);
+        }
+    }
+
+    /**
+     * Update the index for the specified ROI (should be called when ROI bounds changed)
+     */
+    public synchronized void update(ROI roi)
+    {
+        final Entry entry = entries.get(roi);
+
+        // not indexed
+        if (entry == null)
+            return;
+
+        final Rectangle5D bounds = roi.getBounds5D();
+
+        // bounds didn't changed ?
+        if ((entry.key == getKey(bounds)) && (entry.minX == bounds.getMinX()) && (entry.minY == bounds.getMinY())
+                && (entry.maxX == bounds.getMaxX()) && (entry.maxY == bounds.getMaxY()))
+            return;
+
+        remove(roi);
+        add(roi);
+    }
+
+    /**
+     * Remove all ROI from the index
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        buckets.clear();
+    }
+
+    /**
+     * Returns the number of ROI in the index
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns all ROI whose bounds intersect the specified 5D rectangle (C dimension is ignored).<br>
+     * This is a fast but coarse test, use {@link ROI#intersects(Rectangle5D)} for an accurate result.
+     */
+    public synchronized List<ROI> getIntersecting(Rectangle5D rect)
+    {
+        return search(rect.getMinX(), rect.getMinY(), rect.getMinZ(), rect.getMinT(), rect.getMaxX(),
+                rect.getMaxY(), rect.getMaxZ(), rect.getMaxT());
+    }
+
+    /**
+     * Returns all ROI whose bounds contain the specified 5D point (C dimension is ignored).<br>
+     * This is a fast but coarse test, use {@link ROI#contains(Point5D)} for an accurate result.
+     */
+    public synchronized List<ROI> getContaining(Point5D pt)
+    {
+        return search(pt.getX(), pt.getY(), pt.getZ(), pt.getT(), pt.getX(), pt.getY(), pt.getZ(), pt.getT());
+    }
+
+    private List<ROI> search(double minX, double minY, double minZ, double minT, double maxX, double maxY,
+            double maxZ, double maxT)
+    {
+        final List<ROI> result = new ArrayList<ROI>();
+
+        for (Map.Entry<Long, RTree> bucket : buckets.entrySet())
+            if (matchKey(bucket.getKey().longValue(), minZ, maxZ, minT, maxT))
+                bucket.getValue().search(minX, minY, maxX, maxY, result);
+
+        return result;
+    }
+
+    /**
+     * Simple R-Tree (quadratic split) storing ROI by their XY bounds.<br>
+     * Bounds are considered as closed intervals so empty (point or line) bounds are supported.
+     */
+    static class RTree
+    {
+        static final int MAX_ENTRIES = 16;
+        static final int MIN_ENTRIES = 6;
+
+        static class Node
+        {
+            final boolean leaf;
+            Node parent;
+            int size;
+            // bounds of each child (one more slot for split)
+            final double[] minX;
+            final double[] minY;
+            final double[] maxX;
+            final double[] maxY;
+            // child nodes or ROI for leaf
+            final Object[] children;
+
+            Node(boolean leaf)
+            {
+                super();
+
+                this.leaf = leaf;
+                parent = null;
+                size = 0;
+                minX = new double[MAX_ENTRIES + 1];
+                minY = new double[MAX_ENTRIES + 1];
+                maxX = new double[MAX_ENTRIES + 1];
+                maxY = new double[MAX_ENTRIES + 1];
+                children = new Object[MAX_ENTRIES + 1];
+            }
+
+            void add(Object child, double x0, double y0, double x1, double y1)
+            {
+                minX[size] = x0;
+                minY[size] = y0;
+                maxX[size] = x1;
+                maxY[size] = y1;
+                children[size] = child;
+                if (child instanceof Node)
+                    ((Node) child).parent = this;
+                size++;
+            }
+
+            void removeAt(int index)
+            {
+                final int last = size - 1;
+
+                // move last entry to removed position
+                minX[index] = minX[last];
+                minY[index] = minY[last];
+                maxX[index] = maxX[last];
+                maxY[index] = maxY[last];
+                children[index] = children[last];
+                children[last] = null;
+                size = last;
+            }
+
+            int indexOf(Object child)
+            {
+                for (int i = 0; i < size; i++)
+                    if (children[i] == child)
+                        return i;
+
+                return -1;
+            }
+
+            /**
+             * Update bounds of the specified child node in this node
+             */
+            void updateBounds(int index)
+            {
+                final Node child = (Node) children[index];
+
+                minX[index] = Double.POSITIVE_INFINITY;
+                minY[index] = Double.POSITIVE_INFINITY;
+                maxX[index] = Double.NEGATIVE_INFINITY;
+                maxY[index] = Double.NEGATIVE_INFINITY;
+
+                for (int i = 0; i < child.size; i++)
+                {
+                    minX[index] = Math.min(minX[index], child.minX[i]);
+                    minY[index] = Math.min(minY[index], child.minY[i]);
+                    maxX[index] = Math.max(maxX[index], child.maxX[i]);
+                    maxY[index] = Math.max(maxY[index], child.maxY[i]);
+                }
+            }
+        }
+
+        Node root;
+
+        RTree()
+        {
+            super();
+
+            root = new Node(true);
+        }
+
+        boolean isEmpty()
+        {
+            return root.size == 0;
+        }
+
+        static double area(double x0, double y0, double x1, double y1)
+        {
+            return (x1 - x0) * (y1 - y0);
+        }
+
+        void insert(ROI roi, double x0, double y0, double x1, double y1)
+        {
+            Node node = root;
+
+            // choose leaf (least area enlargement)
+            while (!node.leaf)
+            {
+                int best = 0;
+                double bestEnlarge = Double.POSITIVE_INFINITY;
+                double bestArea = Double.POSITIVE_INFINITY;
+
+                for (int i = 0; i < node.size; i++)
+                {
+                    final double a = area(node.minX[i], node.minY[i], node.maxX[i], node.maxY[i]);
+                    final double enlarge = area(Math.min(x0, node.minX[i]), Math.min(y0, node.minY[i]),
+                            Math.max(x1, node.maxX[i]), Math.max(y1, node.maxY[i])) - a;
+
+                    if ((enlarge < bestEnlarge) || ((enlarge == bestEnlarge) && (a < bestArea)))
+                    {
+                        best = i;
+                        bestEnlarge = enlarge;
+                        bestArea = a;
+                    }
+                }
+
+                node = (Node) node.children[best];
+            }
+
+            node.add(roi, x0, y0, x1, y1);
+
+            // split and adjust bounds up to root
+            while (node != null)
+            {
+                final Node parent = node.parent;
+                Node sibling = null;
+
+                if (node.size > MAX_ENTRIES)
+                    sibling = split(node);
+
+                if (parent == null)
+                {
+                    // root split --> grow tree
+                    if (sibling != null)
+                    {
+                        final Node newRoot = new Node(false);
+
+                        newRoot.add(node, 0d, 0d, 0d, 0d);
+                        newRoot.add(sibling, 0d, 0d, 0d, 0d);
+                        newRoot.updateBounds(0);
+                        newRoot.updateBounds(1);
+                        root = newRoot;
+                    }
+                }
+                else
+                {
+                    parent.updateBounds(parent.indexOf(node));
+
+                    if (sibling != null)
+                    {
+                        parent.add(sibling, 0d, 0d, 0d, 0d);
+                        parent.updateBounds(parent.size - 1);
+                    }
+                }
+
+                node = parent;
+            }
+        }
+
+        /**
+         * Split the specified node (quadratic split), the node keeps one group and the returned new node has the other
+         */
+        Node split(Node node)
+        {
+            final int n = node.size;
+            final double[] minX = node.minX.clone();
+            final double[] minY = node.minY.clone();
+            final double[] maxX = node.maxX.clone();
+            final double[] maxY = node.maxY.clone();
+            final Object[] children = node.children.clone();
+            final boolean[] assigned = new boolean[n];
+
+            // pick seeds (pair wasting the most area)
+            int seed1 = 0;
+            int seed2 = 1;
+            double worst = Double.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < n; i++)
+            {
+                for (int j = i + 1; j < n; j++)
+                {
+                    final double d = area(Math.min(minX[i], minX[j]), Math.min(minY[i], minY[j]),
+                            Math.max(maxX[i], maxX[j]), Math.max(maxY[i], maxY[j]))
+                            - area(minX[i], minY[i], maxX[i], maxY[i]) - area(minX[j], minY[j], maxX[j], maxY[j]);
+
+                    if (d > worst)
+                    {
+                        worst = d;
+                        seed1 = i;
+                        seed2 = j;
+                    }
+                }
+            }
+
+            final Node sibling = new Node(node.leaf);
+            sibling.parent = node.parent;
+
+            node.size = 0;
+            for (int i = 0; i < children.length; i++)
+                node.children[i] = null;
+
+            node.add(children[seed1], minX[seed1], minY[seed1], maxX[seed1], maxY[seed1]);
+            sibling.add(children[seed2], minX[seed2], minY[seed2], maxX[seed2], maxY[seed2]);
+            assigned[seed1] = true;
+            assigned[seed2] = true;
+
+            // groups bounds
+            final double[] b1 = new double[] {minX[seed1], minY[seed1], maxX[seed1], maxY[seed1]};
+            final double[] b2 = new double[] {minX[seed2], minY[seed2], maxX[seed2], maxY[seed2]};
+            int remaining = n - 2;
+
+            while (remaining > 0)
+            {
+                final Node target;
+                final double[] bounds;
+                int index = -1;
+
+                // a group needs all remaining entries to reach the minimum size
+                if ((node.size + remaining) <= MIN_ENTRIES)
+                {
+                    target = node;
+                    bounds = b1;
+                }
+                else if ((sibling.size + remaining) <= MIN_ENTRIES)
+                {
+                    target = sibling;
+                    bounds = b2;
+                }
+                else
+                {
+                    // pick next entry (greatest preference for one group)
+                    double bestDiff = Double.NEGATIVE_INFINITY;
+                    double bestD1 = 0d;
+                    double bestD2 = 0d;
+
+                    for (int i = 0; i < n; i++)
+                    {
+                        if (assigned[i])
+                            continue;
+
+                        final double d1 = enlargement(b1, minX[i], minY[i], maxX[i], maxY[i]);
+                        final double d2 = enlargement(b2, minX[i], minY[i], maxX[i], maxY[i]);
+                        final double diff = Math.abs(d1 - d2);
+
+                        if ((index == -1) || (diff > bestDiff))
+                        {
+                            index = i;
+                            bestDiff = diff;
+                            bestD1 = d1;
+                            bestD2 = d2;
+                        }
+                    }
+
+                    if ((bestD1 < bestD2) || ((bestD1 == bestD2) && (node.size <= sibling.size)))
+                    {
+                        target = node;
+                        bounds = b1;
+                    }
+                    else
+                    {
+                        target = sibling;
+                        bounds = b2;
+                    }
+                }
+
+                // assign the picked entry or all remaining entries
+                for (int i = 0; i < n; i++)
+                {
+                    if (assigned[i] || ((index != -1) && (i != index)))
+                        continue;
+
+                    target.add(children[i], minX[i], minY[i], maxX[i], maxY[i]);
+                    bounds[0] = Math.min(bounds[0], minX[i]);
+                    bounds[1] = Math.min(bounds[1], minY[i]);
+                    bounds[2] = Math.max(bounds[2], maxX[i]);
+                    bounds[3] = Math.max(bounds[3], maxY[i]);
+                    assigned[i] = true;
+                    remaining--;
+                }
+            }
+
+            return sibling;
+        }
+
+        static double enlargement(double[] b, double x0, double y0, double x1, double y1)
+        {
+            return area(Math.min(b[0], x0), Math.min(b[1], y0), Math.max(b[2], x1), Math.max(b[3], y1))
+                    - area(b[0], b[1], b[2], b[3]);
+        }
+
+        void remove(ROI roi, double x0, double y0, double x1, double y1)
+        {
+            final Node leaf = findLeaf(root, roi, x0, y0, x1, y1);
+
+            if (leaf == null)
+                return;
+
+            leaf.removeAt(leaf.indexOf(roi));
+
+            // condense tree
+            final List<ROI> orphans = new ArrayList<ROI>();
+            final List<double[]> orphanBounds = new ArrayList<double[]>();
+            Node node = leaf;
+
+            while (node.parent != null)
+            {
+                final Node parent = node.parent;
+                final int index = parent.indexOf(node);
+
+                // underflow --> remove node and reinsert its entries
+                if (node.size < MIN_ENTRIES)
+                {
+                    parent.removeAt(index);
+                    collect(node, orphans, orphanBounds);
+                }
+                else
+                    parent.updateBounds(index);
+
+                node = parent;
+            }
+
+            // shorten tree
+            while (!root.leaf && (root.size == 1))
+            {
+                root = (Node) root.children[0];
+                root.parent = null;
+            }
+            // empty tree
+            if (!root.leaf && (root.size == 0))
+                root = new Node(true);
+
+            for (int i = 0; i < orphans.size(); i++)
+            {
+                final double[] b = orphanBounds.get(i);
+                insert(orphans.get(i), b[0], b[1], b[2], b[3]);
+            }
+        }
+
+        /**
+         * Collect all leaf entries of the specified node
+         */
+        static void collect(Node node, List<ROI> rois, List<double[]> bounds)
+        {
+            for (int i = 0; i < node.size; i++)
+            {
+                if (node.leaf)
+                {
+                    rois.add((ROI) node.children[i]);
+                    bounds.add(new double[] {node.minX[i], node.minY[i], node.maxX[i], node.maxY[i]});
+                }
+                else
+                    collect((Node) node.children[i], rois, bounds);
+            }
+        }
+
+        static Node findLeaf(Node node, ROI roi, double x0, double y0, double x1, double y1)
+        {
+            for (int i = 0; i < node.size; i++)
+            {
+                if (node.leaf)
+                {
+                    if (node.children[i] == roi)
+                        return node;
+                }
+                else if ((node.minX[i] <= x0) && (node.minY[i] <= y0) && (node.maxX[i] >= x1)
+                        && (node.maxY[i] >= y1))
+                {
+                    final Node result = findLeaf((Node) node.children[i], roi, x0, y0, x1, y1);
+
+                    if (result != null)
+                        return result;
+                }
+            }
+
+            return null;
+        }
+
+        void search(double x0, double y0, double x1, double y1, List<ROI> result)
+        {
+            search(root, x0, y0, x1, y1, result);
+        }
+
+        static void search(Node node, double x0, double y0, double x1, double y1, List<ROI> result)
+        {
+            for (int i = 0; i < node.size; i++)
+            {
+                if ((node.minX[i] <= x1) && (node.maxX[i] >= x0) && (node.minY[i] <= y1) && (node.maxY[i] >= y0))
+                {
+                    if (node.leaf)
+                        result.add((ROI) node.children[i]);
+                    else
+                        search((Node) node.children[i], x0, y0, x1, y1, result);
+                }
+            }
+        }
+    }
+}
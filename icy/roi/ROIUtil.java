@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.RecursiveAction;
 
 import icy.image.IcyBufferedImage;
 import icy.image.IntensityInfo;
@@ -40,6 +41,7 @@ import icy.plugin.interface_.PluginROIDescriptor;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
 import icy.sequence.SequenceUtil;
+import icy.system.thread.ThreadUtil;
 import icy.type.DataIteratorUtil;
 import icy.type.DataType;
 import icy.type.collection.CollectionUtil;
@@ -1343,8 +1345,176 @@ public class ROIUtil
         return result;
     }
 
+    /**
+     * Compute the resulting bounds for <i>merge</i> operation between specified ROIs.<br>
+     * It throws an exception if the <i>merge</i> operation cannot be done (incompatible dimension).
+     */
+    protected static Rectangle5D getMergeBounds(List<? extends ROI> rois, BooleanOperator operator)
+            throws UnsupportedOperationException
+    {
+        final boolean intersect = (operator == BooleanOperator.AND);
+        final Rectangle5D result = rois.get(0).getBounds5D();
+
+        for (int i = 1; i < rois.size(); i++)
+        {
+            final Rectangle5D bounds = rois.get(i).getBounds5D();
+
+            if (intersect)
+                Rectangle5D.intersect(result, bounds, result);
+            else
+            {
+                // cannot process union when we have an infinite dimension with a finite one
+                if ((result.isInfiniteC() ^ bounds.isInfiniteC()) || (result.isInfiniteT() ^ bounds.isInfiniteT())
+                        || (result.isInfiniteZ() ^ bounds.isInfiniteZ()))
+                    throw new UnsupportedOperationException(
+                            "Can't process union on ROI with different infinite dimension");
+
+                Rectangle5D.union(result, bounds, result);
+            }
+        }
+
+        // init infinite dim infos on result
+        final boolean ic = result.isInfiniteC();
+        final boolean it = result.isInfiniteT();
+        final boolean iz = result.isInfiniteZ();
+
+        // cannot process merge if C dimension is finite but T or Z is infinite
+        if (!ic && (it || iz))
+            throw new UnsupportedOperationException(
+                    "Can't process merge on ROI with a finite C dimension and infinite T or Z dimension");
+        // cannot process merge if T dimension is finite but Z is infinite
+        if (!it && iz)
+            throw new UnsupportedOperationException(
+                    "Can't process merge on ROI with a finite T dimension and infinite Z dimension");
+
+        return result;
+    }
+
+    /**
+     * Merge task: computes the merged 2D mask of a range of (Z, T, C) slices.<br>
+     * Slice index is <code>((c * sizeT) + t) * sizeZ + z</code>.
+     */
+    private static class MergeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -5853421862311427064L;
+
+        final ROI[] rois;
+        final Rectangle5D[] roisBounds;
+        final BooleanOperator operator;
+        final Rectangle5D.Integer bounds;
+        final Dimension5D.Integer size;
+        final BooleanMask2D[] result;
+        final int from;
+        final int to;
+
+        MergeTask(ROI[] rois, Rectangle5D[] roisBounds, BooleanOperator operator, Rectangle5D.Integer bounds,
+                Dimension5D.Integer size, BooleanMask2D[] result, int from, int to)
+        {
+            super();
+
+            this.rois = rois;
+            this.roisBounds = roisBounds;
+            this.operator = operator;
+            this.bounds = bounds;
+            this.size = size;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+            {
+                final int z = bounds.z + (from % size.sizeZ);
+                final int t = bounds.t + ((from / size.sizeZ) % size.sizeT);
+                final int c = bounds.c + (from / (size.sizeZ * size.sizeT));
+
+                result[from] = merge(z, t, c);
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new MergeTask(rois, roisBounds, operator, bounds, size, result, from, mid),
+                        new MergeTask(rois, roisBounds, operator, bounds, size, result, mid, to));
+            }
+        }
+
+        private BooleanMask2D merge(int z, int t, int c)
+        {
+            final Rectangle bounds2D = new Rectangle(bounds.x, bounds.y, bounds.sizeX, bounds.sizeY);
+            final int w = bounds2D.width;
+            final int h = bounds2D.height;
+            // number of ROI containing each pixel
+            final int[] count = new int[w * h];
+
+            for (int i = 0; i < rois.length; i++)
+            {
+                final Rectangle5D b = roisBounds[i];
+                final BooleanMask2D roiMask;
+
+                // ROI on this slice ?
+                if ((z < b.getMaxZ()) && ((z + 1) > b.getMinZ()) && (t < b.getMaxT()) && ((t + 1) > b.getMinT())
+                        && (c < b.getMaxC()) && ((c + 1) > b.getMinC()))
+                    roiMask = rois[i].getBooleanMask2D(z, t, c, true);
+                else
+                    roiMask = null;
+
+                if ((roiMask == null) || roiMask.isEmpty())
+                {
+                    // intersection is empty for this slice
+                    if (operator == BooleanOperator.AND)
+                        return new BooleanMask2D();
+
+                    continue;
+                }
+
+                // accumulate ROI mask in the merge bounds
+                final Rectangle r = roiMask.bounds.intersection(bounds2D);
+                final boolean[] mask = roiMask.mask;
+
+                for (int y = r.y; y < (r.y + r.height); y++)
+                {
+                    int srcOff = ((y - roiMask.bounds.y) * roiMask.bounds.width) + (r.x - roiMask.bounds.x);
+                    int dstOff = ((y - bounds2D.y) * w) + (r.x - bounds2D.x);
+
+                    for (int x = 0; x < r.width; x++, srcOff++, dstOff++)
+                        if (mask[srcOff])
+                            count[dstOff]++;
+                }
+            }
+
+            final boolean[] mask = new boolean[w * h];
+
+            switch (operator)
+            {
+                case AND:
+                    // contained in all ROI
+                    for (int i = 0; i < mask.length; i++)
+                        mask[i] = count[i] == rois.length;
+                    break;
+                case OR:
+                    // contained in at least one ROI
+                    for (int i = 0; i < mask.length; i++)
+                        mask[i] = count[i] > 0;
+                    break;
+                case XOR:
+                    // contained in an odd number of ROI
+                    for (int i = 0; i < mask.length; i++)
+                        mask[i] = (count[i] & 1) != 0;
+                    break;
+            }
+
+            return new BooleanMask2D(bounds2D, mask);
+        }
+    }
+
     /**
      * Merge the specified array of {@link ROI} with the given {@link BooleanOperator}.<br>
+     * All ROIs are accumulated at once in the merge bounds (slices are processed in parallel) and the result is
+     * returned as a new area ROI.
      * 
      * @param rois
      *        ROIs we want to merge.
@@ -1356,46 +1526,80 @@ public class ROIUtil
     {
         if (rois.size() == 0)
             return null;
+        if (rois.size() == 1)
+            return rois.get(0).getCopy();
 
-        ROI result = rois.get(0).getCopy();
+        final Rectangle5D bounds5D = getMergeBounds(rois, operator);
 
-        // copy can fail...
-        if (result != null)
+        // empty intersection
+        if ((operator == BooleanOperator.AND) && bounds5D.isEmpty())
         {
-            switch (operator)
+            final ROI result = new ROI2DArea();
+            result.setName("Intersection");
+            return result;
+        }
+
+        final int dim = getEffectiveDimension(bounds5D);
+
+        // we want integer bounds now
+        final Rectangle5D.Integer bounds = bounds5D.toInteger();
+        final Dimension5D.Integer roiSize = getOpDim(dim, bounds);
+        // get 3D and 4D bounds
+        final Rectangle3D.Integer bounds3D = (Rectangle3D.Integer) bounds.toRectangle3D();
+        final Rectangle4D.Integer bounds4D = (Rectangle4D.Integer) bounds.toRectangle4D();
+
+        final ROI[] roiArray = rois.toArray(new ROI[rois.size()]);
+        final Rectangle5D[] roisBounds = new Rectangle5D[roiArray.length];
+
+        for (int i = 0; i < roiArray.length; i++)
+            roisBounds[i] = roiArray[i].getBounds5D();
+
+        // compute merged slices in parallel
+        final BooleanMask2D slices[] = new BooleanMask2D[roiSize.sizeC * roiSize.sizeT * roiSize.sizeZ];
+
+        if (slices.length > 0)
+            ThreadUtil.forkJoinInvoke(
+                    new MergeTask(roiArray, roisBounds, operator, bounds, roiSize, slices, 0, slices.length));
+
+        final BooleanMask4D mask5D[] = new BooleanMask4D[roiSize.sizeC];
+
+        for (int c = 0; c < roiSize.sizeC; c++)
+        {
+            final BooleanMask3D mask4D[] = new BooleanMask3D[roiSize.sizeT];
+
+            for (int t = 0; t < roiSize.sizeT; t++)
             {
-                case AND:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.intersect(rois.get(i), true);
-                    break;
-                case OR:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.add(rois.get(i), true);
-                    break;
-                case XOR:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.exclusiveAdd(rois.get(i), true);
-                    break;
+                final BooleanMask2D mask3D[] = new BooleanMask2D[roiSize.sizeZ];
+
+                System.arraycopy(slices, ((c * roiSize.sizeT) + t) * roiSize.sizeZ, mask3D, 0, roiSize.sizeZ);
+
+                mask4D[t] = new BooleanMask3D(new Rectangle3D.Integer(bounds3D), mask3D);
             }
+
+            mask5D[c] = new BooleanMask4D(new Rectangle4D.Integer(bounds4D), mask4D);
         }
 
-        // for (int i = 1; i < rois.size(); i++)
-        // {
-        // final ROI roi = rois.get(i);
-        //
-        // switch (operator)
-        // {
-        // case AND:
-        // result = result.getIntersection(roi);
-        // break;
-        // case OR:
-        // result = result.getUnion(roi);
-        // break;
-        // case XOR:
-        // result = result.getExclusiveUnion(roi);
-        // break;
-        // }
-        // }
+        // build the 5D result ROI
+        final BooleanMask5D mask = new BooleanMask5D(bounds, mask5D);
+        // optimize bounds of the new created mask
+        mask.optimizeBounds();
+
+        // get result
+        final ROI result = getOpResult(dim, mask, bounds);
+
+        // set name
+        switch (operator)
+        {
+            case AND:
+                result.setName("Intersection");
+                break;
+            case OR:
+                result.setName("Union");
+                break;
+            case XOR:
+                result.setName("Exclusive union");
+                break;
+        }
 
         return result;
     }
@@ -1716,9 +1920,24 @@ public class ROIUtil
     }
 
     /**
-     * Returns connected component from specified ROI as a list of ROI (Area type).
+     * Returns connected component from specified ROI as a list of ROI (Area type).<br>
+     * Components are computed using 8 connectivity for 2D ROI and 26 connectivity for 3D ROI.
      */
     public static List<ROI> getConnectedComponents(ROI roi) throws UnsupportedOperationException
+    {
+        return getConnectedComponents(roi, (roi instanceof ROI3D) ? 26 : 8);
+    }
+
+    /**
+     * Returns connected component from specified ROI as a list of ROI (Area type).
+     *
+     * @param roi
+     *        the ROI to extract components from (ROI2D or ROI3D)
+     * @param connectivity
+     *        4 or 8 for 2D ROI, 6, 18 or 26 for 3D ROI
+     * @see ComponentLabeler
+     */
+    public static List<ROI> getConnectedComponents(ROI roi, int connectivity) throws UnsupportedOperationException
     {
         final List<ROI> result = new ArrayList<ROI>();
 
@@ -1727,7 +1946,7 @@ public class ROIUtil
             final ROI2D roi2d = (ROI2D) roi;
             int ind = 0;
 
-            for (BooleanMask2D component : roi2d.getBooleanMask(true).getComponents())
+            for (BooleanMask2D component : ComponentLabeler.getComponents(roi2d.getBooleanMask(true), connectivity))
             {
                 final ROI2DArea componentRoi = new ROI2DArea(component);
 
@@ -1746,34 +1965,80 @@ public class ROIUtil
 
         if (roi instanceof ROI3D)
         {
-            // TODO: add label extractor implementation here
-
-            // final ROI3D roi3d = (ROI3D) roi;
-            // int ind = 0;
-            //
-            // for (BooleanMask3D component : roi3d.getBooleanMask(true).getComponents())
-            // {
-            // final ROI2DArea componentRoi = new ROI2DArea(component);
-            //
-            // if (!componentRoi.isEmpty())
-            // {
-            // // keep original ROI informations
-            // componentRoi.setName(roi.getName() + " object #" + ind++);
-            // copyROIProperties(roi, componentRoi, false);
-            //
-            // result.add(componentRoi);
-            // }
-            // }
+            final ROI3D roi3d = (ROI3D) roi;
+            int ind = 0;
 
-            // not yet supported
-            throw new UnsupportedOperationException(
-                    "ROIUtil.getConnectedComponents(ROI): Operation not supported yet for 3D ROI.");
+            for (BooleanMask3D component : ComponentLabeler.getComponents(roi3d.getBooleanMask(true), connectivity))
+            {
+                final ROI3DArea componentRoi = new ROI3DArea(component);
+
+                if (!componentRoi.isEmpty())
+                {
+                    // keep original ROI informations
+                    componentRoi.setName(roi.getName() + OBJECT_SUFFIX + " #" + ind++);
+                    copyROIProperties(roi, componentRoi, false);
+
+                    result.add(componentRoi);
+                }
+            }
+
+            return result;
         }
 
         throw new UnsupportedOperationException(
                 "ROIUtil.getConnectedComponents(ROI): Operation not supported for this ROI: " + roi.getName());
     }
 
+    /**
+     * Returns connected components from specified ROI as a label image (single channel, int data type) where each
+     * component has its own label (from 1 to number of component, 0 is the background).<br>
+     * This is a lighter alternative to {@link #getConnectedComponents(ROI, int)} when there are many components.<br>
+     * A 2D ROI attached to all Z slices (Z = -1) gets its components labeled on every Z slice of the label image.
+     *
+     * @param roi
+     *        the ROI to extract components from (ROI2D or ROI3D)
+     * @param sequence
+     *        sequence used to define the label image dimension (and metadata)
+     * @param connectivity
+     *        4 or 8 for 2D ROI, 6, 18 or 26 for 3D ROI
+     * @see ComponentLabeler
+     */
+    public static Sequence getConnectedComponentLabels(ROI roi, Sequence sequence, int connectivity)
+            throws UnsupportedOperationException
+    {
+        final BooleanMask3D mask;
+
+        if (roi instanceof ROI2D)
+        {
+            final ROI2D roi2d = (ROI2D) roi;
+            final BooleanMask2D mask2d = roi2d.getBooleanMask(true);
+            final Rectangle b = mask2d.bounds;
+            final Rectangle3D.Integer bounds3d = new Rectangle3D.Integer(b.x, b.y, roi2d.getZ(), b.width, b.height,
+                    1);
+
+            // ROI on all Z slices --> infinite Z dimension (components labeled on every slice)
+            if (roi2d.getZ() == -1)
+                bounds3d.setInfiniteZ();
+
+            // single slice 3D mask
+            mask = new BooleanMask3D(bounds3d, new BooleanMask2D[] {mask2d});
+        }
+        else if (roi instanceof ROI3D)
+            mask = ((ROI3D) roi).getBooleanMask(true);
+        else
+            throw new UnsupportedOperationException(
+                    "ROIUtil.getConnectedComponentLabels(ROI): Operation not supported for this ROI: "
+                            + roi.getName());
+
+        final Sequence result = ComponentLabeler.getLabelSequence(mask, sequence.getSizeX(), sequence.getSizeY(),
+                sequence.getSizeZ(), connectivity);
+
+        result.copyMetaDataFrom(sequence, false);
+        result.setName(roi.getName() + " labels");
+
+        return result;
+    }
+
     static boolean computePolysFromLine(Line2D line, Point2D edgePt1, Point2D edgePt2, Polygon2D poly1, Polygon2D poly2,
             boolean inner)
     {
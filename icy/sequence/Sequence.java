@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.undo.UndoManager;
 
@@ -71,6 +72,8 @@ import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROI3D;
 import icy.roi.ROIEvent;
+import icy.roi.ROIEvent.ROIEventType;
+import icy.roi.ROIIndex;
 import icy.roi.ROIListener;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
 import icy.sequence.SequenceEvent.SequenceEventType;
@@ -88,6 +91,7 @@ import icy.type.TypeUtil;
 import icy.type.collection.CollectionUtil;
 import icy.type.collection.array.Array1DUtil;
 import icy.type.dimension.Dimension5D;
+import icy.type.point.Point5D;
 import icy.type.rectangle.Rectangle5D;
 import icy.undo.IcyUndoManager;
 import icy.undo.IcyUndoableEdit;
@@ -114,6 +118,41 @@ import ome.xml.meta.OMEXMLMetadata;
 public class Sequence implements SequenceModel, IcyColorModelListener, IcyBufferedImageListener, ChangeListener,
         ROIListener, OverlayListener
 {
+    /**
+     * Fork / join task used to recalculate channels bounds of a list of images
+     */
+    private static class ImagesChannelsBoundsTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -2453466720381096541L;
+
+        final List<IcyBufferedImage> images;
+        final int from;
+        final int to;
+
+        ImagesChannelsBoundsTask(List<IcyBufferedImage> images, int from, int to)
+        {
+            super();
+
+            this.images = images;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+                images.get(from).updateChannelsBounds();
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new ImagesChannelsBoundsTask(images, from, mid),
+                        new ImagesChannelsBoundsTask(images, mid, to));
+            }
+        }
+    }
+
     public static final String DEFAULT_NAME = "no name";
 
     /**
@@ -181,6 +220,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * ROIs
      */
     protected final Set<ROI> rois;
+    /**
+     * ROIs spatial index
+     */
+    protected final ROIIndex roiIndex;
 
     /**
      * id of sequence (uniq during an Icy session)
@@ -293,6 +336,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * internals
      */
     protected boolean channelBoundsInvalid;
+    protected boolean imagesChannelBoundsInvalid;
 
     /**
      * Creates a new empty sequence with specified meta data object and name.
@@ -347,6 +391,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         volumetricImages = new TreeMap<Integer, VolumetricImage>();
         overlays = new HashSet<Overlay>();
         rois = new HashSet<ROI>();
+        roiIndex = new ROIIndex();
         persistent = new SequencePersistent(this);
         undoManager = new IcyUndoManager(this, GeneralPreferences.getHistorySize());
 
@@ -359,6 +404,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         defaultLut = null;
         userLut = null;
         channelBoundsInvalid = false;
+        imagesChannelBoundsInvalid = false;
         // automatic update of channel bounds
         autoUpdateChannelBounds = true;
     }
@@ -597,7 +643,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         try
         {
-            undoManager.addEdit(new DataSequenceEdit(SequenceUtil.getCopy(this, false, false, false), this, name));
+            undoManager.addEdit(new DataSequenceEdit(this, name));
             return true;
         }
         catch (Throwable t)
@@ -2381,6 +2427,56 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         return result;
     }
 
+    /**
+     * Returns all ROI intersecting the specified 5D region.<br>
+     * ROI candidates are retrieved from the sequence ROI spatial index so this method remains fast even with a large
+     * number of ROI.
+     * 
+     * @param region
+     *        the 5D region (use infinite dimension to ignore a dimension)
+     * @param sorted
+     *        If true the returned list is ordered by the ROI id (creation order)
+     */
+    public List<ROI> getROIsIntersecting(Rectangle5D region, boolean sorted)
+    {
+        final List<ROI> result = roiIndex.getIntersecting(region);
+
+        // accurate test
+        for (int i = result.size() - 1; i >= 0; i--)
+            if (!result.get(i).intersects(region))
+                result.remove(i);
+
+        if (sorted)
+            Collections.sort(result, ROI.idComparator);
+
+        return result;
+    }
+
+    /**
+     * Returns all ROI containing the specified 5D position.<br>
+     * ROI candidates are retrieved from the sequence ROI spatial index so this method remains fast even with a large
+     * number of ROI.
+     * 
+     * @param position
+     *        the 5D position
+     * @param sorted
+     *        If true the returned list is ordered by the ROI id (creation order)
+     */
+    public List<ROI> getROIsContaining(Point5D position, boolean sorted)
+    {
+        final List<ROI> result = roiIndex.getContaining(position);
+
+        // accurate test
+        for (int i = result.size() - 1; i >= 0; i--)
+            if (!result.get(i).contains(position))
+                result.remove(i);
+
+        if (sorted)
+            Collections.sort(result, ROI.idComparator);
+
+        return result;
+    }
+
     /**
      * Returns true if the sequence contains at least one selected ROI.
      */
@@ -2812,6 +2908,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         synchronized (rois)
         {
             rois.add(roi);
+            roiIndex.add(roi);
         }
         // add listener to ROI
         roi.addListener(this);
@@ -2859,6 +2956,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
             synchronized (rois)
             {
                 rois.remove(roi);
+                roiIndex.remove(roi);
             }
             // remove listener
             roi.removeListener(this);
@@ -2944,6 +3042,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                         removeOverlay(roi.getOverlay());
 
                         rois.remove(roi);
+                        roiIndex.remove(roi);
                         // remove listener
                         roi.removeListener(this);
                         // notify roi removed
@@ -3311,34 +3410,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @Override
     public IcyBufferedImage getImage(int t, int z)
     {
-        // get image (no data loading at this point)
-        final IcyBufferedImage result = getImage(t, z, false);
-
-        final int sizeZ = getSizeZ();
-        final int sizeT = getSizeT();
-
-        // dumb data prefetch around T
-        for (int i = -5; i < 5; i++)
-        {
-            final int pt = t + i;
-
-            if ((pt != t) && (pt >= 0) && (pt < sizeT))
-                SequencePrefetcher.prefetch(this, pt, z);
-        }
-        // 3D stack ?
-        if (z > 0)
-        {
-            // dumb data prefetch around current Z
-            for (int i = -5; i < 5; i++)
-            {
-                final int pz = z + i;
-
-                if ((pz != z) && (pz >= 0) && (pz < sizeZ))
-                    SequencePrefetcher.prefetch(this, t, pz);
-            }
-        }
-
-        return result;
+        // get image (no data loading at this point, prefetch is driven by the viewers position)
+        return getImage(t, z, false);
     }
 
     /**
@@ -4187,15 +4260,14 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if ((colorModel == null) || isEmpty())
             return;
 
-        final List<VolumetricImage> volumes = getAllVolumetricImage();
+        final List<IcyBufferedImage> images = getAllImage();
 
         beginUpdate();
         try
         {
-            // recalculate images bounds (automatically update sequence bounds with event)
-            for (VolumetricImage volImg : volumes)
-                for (IcyBufferedImage img : volImg.getAllImage())
-                    img.updateChannelsBounds();
+            // recalculate images bounds in parallel (automatically update sequence bounds with event)
+            if (!images.isEmpty())
+                ThreadUtil.forkJoinInvoke(new ImagesChannelsBoundsTask(images, 0, images.size()));
         }
         finally
         {
@@ -7240,6 +7312,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public void dataChanged()
     {
+        // we don't know which images were modified so we will have to recalculate all images bounds
+        imagesChannelBoundsInvalid = true;
         updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, null));
     }
 
@@ -7300,6 +7374,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @Override
     public void roiChanged(ROIEvent event)
     {
+        // ROI bounds may have changed --> update spatial index
+        if (event.getType() == ROIEventType.ROI_CHANGED)
+            roiIndex.update(event.getSource());
+
         // notify the ROI has changed
         roiChanged(event.getSource(), SequenceEventType.CHANGED);
     }
@@ -7319,10 +7397,13 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 // automatic channel bounds update enabled
                 if (autoUpdateChannelBounds)
                 {
-                    // generic CHANGED event
-                    if (event.getSource() == null)
+                    // global data change (images changes already updated their own bounds)
+                    if (imagesChannelBoundsInvalid)
+                    {
+                        imagesChannelBoundsInvalid = false;
                         // recalculate all images bounds (automatically update sequence bounds in imageChange event)
                         recalculateAllImageChannelsBounds();
+                    }
 
                     // refresh sequence channel bounds from images bounds
                     internalUpdateChannelsBounds();
@@ -1,43 +1,169 @@
 /**
- * 
+ *
  */
 package icy.sequence;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.WeakHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
 
 import icy.image.IcyBufferedImage;
+import icy.system.SystemUtil;
 
 /**
- * Class used to accelerate Sequence data access on first loading using data prefetching.
- * 
+ * Class used to accelerate Sequence data access on first loading using data prefetching.<br>
+ * Prefetch requests are processed by a pool of worker threads, closest images from the current position of the
+ * sequence are loaded first. The current position is set by the viewer displaying the sequence (see
+ * {@link #prefetchAround(Sequence, int, int)}) and the images to prefetch around it are defined by the
+ * {@link LookAheadPolicy} of the sequence.<br>
+ * Note that this class does not extend <code>Thread</code> anymore (it uses a pool of worker threads).
+ *
  * @author Stephane
  */
-public class SequencePrefetcher extends Thread
+public class SequencePrefetcher
 {
-    private static class PrefetchEntry
+    /**
+     * Defines which images are prefetched around the current position of a sequence.
+     */
+    public static class LookAheadPolicy
+    {
+        /**
+         * Default policy: 5 slices and 5 frames in both directions.
+         */
+        public final static LookAheadPolicy DEFAULT = new LookAheadPolicy(5, 5, 5, 5);
+        /**
+         * Movie playback policy: only next frames (at current slice).
+         */
+        public final static LookAheadPolicy PLAYBACK = new LookAheadPolicy(0, 0, 0, 16);
+        /**
+         * No prefetch.
+         */
+        public final static LookAheadPolicy NONE = new LookAheadPolicy(0, 0, 0, 0);
+
+        final int zBackward;
+        final int zForward;
+        final int tBackward;
+        final int tForward;
+
+        /**
+         * @param zBackward
+         *        number of slices to prefetch before current Z position
+         * @param zForward
+         *        number of slices to prefetch after current Z position
+         * @param tBackward
+         *        number of frames to prefetch before current T position
+         * @param tForward
+         *        number of frames to prefetch after current T position
+         */
+        public LookAheadPolicy(int zBackward, int zForward, int tBackward, int tForward)
+        {
+            super();
+
+            this.zBackward = Math.max(0, zBackward);
+            this.zForward = Math.max(0, zForward);
+            this.tBackward = Math.max(0, tBackward);
+            this.tForward = Math.max(0, tForward);
+        }
+
+        /**
+         * Returns a policy prefetching the next <code>n</code> slices (and the previous ones if
+         * <code>bothDirection</code> is set).
+         */
+        public static LookAheadPolicy slices(int n, boolean bothDirection)
+        {
+            return new LookAheadPolicy(bothDirection ? n : 0, n, 0, 0);
+        }
+
+        /**
+         * Returns a policy prefetching the next <code>n</code> frames (and the previous ones if
+         * <code>bothDirection</code> is set).
+         */
+        public static LookAheadPolicy frames(int n, boolean bothDirection)
+        {
+            return new LookAheadPolicy(0, 0, bothDirection ? n : 0, n);
+        }
+
+        public int getZBackward()
+        {
+            return zBackward;
+        }
+
+        public int getZForward()
+        {
+            return zForward;
+        }
+
+        public int getTBackward()
+        {
+            return tBackward;
+        }
+
+        public int getTForward()
+        {
+            return tForward;
+        }
+    }
+
+    private static class SequenceState
+    {
+        LookAheadPolicy policy;
+        int t;
+        int z;
+        int generation;
+
+        SequenceState()
+        {
+            super();
+
+            policy = null;
+            t = -1;
+            z = -1;
+            generation = 0;
+        }
+    }
+
+    private static class PrefetchEntry implements Comparable<PrefetchEntry>
     {
         final Reference<Sequence> sequence;
         final int t;
         final int z;
         final int hc;
+        final int generation;
+        final int distance;
+        final long order;
 
-        public PrefetchEntry(Sequence sequence, int t, int z)
+        public PrefetchEntry(Sequence sequence, int t, int z, int generation, int distance, long order)
         {
             super();
 
             this.sequence = new WeakReference<Sequence>(sequence);
             this.t = t;
             this.z = z;
+            this.generation = generation;
+            this.distance = distance;
+            this.order = order;
 
-            hc = sequence.hashCode() ^ (t << 0) ^ (z << 16);
+            hc = System.identityHashCode(sequence) ^ (t << 0) ^ (z << 16);
+        }
+
+        @Override
+        public int compareTo(PrefetchEntry o)
+        {
+            // closest first
+            if (distance != o.distance)
+                return (distance < o.distance) ? -1 : 1;
+            // then most recent request first
+            if (order != o.order)
+                return (order > o.order) ? -1 : 1;
+
+            return 0;
         }
 
         @Override
@@ -60,14 +186,117 @@ public class SequencePrefetcher extends Thread
         }
     }
 
+    private class PrefetchWorker extends Thread
+    {
+        public PrefetchWorker(int index)
+        {
+            super("Sequence prefetcher " + index);
+
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        public void run()
+        {
+            while (!isInterrupted())
+            {
+                final PrefetchEntry entry;
+
+                try
+                {
+                    // wait for something to prefetch
+                    entry = prefetchQueue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    // end
+                    break;
+                }
+
+                // we use weak reference to not retain Sequence with prefetch process..
+                final Sequence entrySeq = entry.sequence.get();
+
+                synchronized (SequencePrefetcher.this)
+                {
+                    prefetchSet.remove(entry);
+
+                    // sequence released or stale entry (position changed since) ? --> ignore
+                    if ((entrySeq == null) || (entry.generation != getState(entrySeq).generation))
+                        continue;
+                }
+
+                try
+                {
+                    // prefetch data
+                    entrySeq.getImage(entry.t, entry.z, true);
+                }
+                catch (Throwable t)
+                {
+                    // prefetch failure is not critical
+                    System.err.println("SequencePrefetcher: cannot prefetch image (t=" + entry.t + ", z=" + entry.z
+                            + "): " + t.getMessage());
+                }
+            }
+        }
+    }
+
     // singleton
     private final static SequencePrefetcher prefetcher = new SequencePrefetcher();
 
+    /**
+     * Prefetch image data at position (t, z) of the specified sequence.
+     */
     public static void prefetch(Sequence sequence, int t, int z)
     {
         prefetcher.prefetchInternal(sequence, t, z);
     }
 
+    /**
+     * Set the current position of the specified sequence to (t, z) and prefetch image data around it depending the
+     * {@link LookAheadPolicy} of the sequence.<br>
+     * Pending prefetch entries of the sequence which are out of the new look-ahead window are canceled.
+     */
+    public static void prefetchAround(Sequence sequence, int t, int z)
+    {
+        prefetcher.prefetchAroundInternal(sequence, t, z);
+    }
+
+    /**
+     * Returns the look-ahead policy used for the specified sequence.
+     */
+    public static LookAheadPolicy getPolicy(Sequence sequence)
+    {
+        return prefetcher.getPolicyInternal(sequence);
+    }
+
+    /**
+     * Set the look-ahead policy used for the specified sequence (<code>null</code> to use the default policy).
+     */
+    public static void setPolicy(Sequence sequence, LookAheadPolicy policy)
+    {
+        prefetcher.setPolicyInternal(sequence, policy);
+    }
+
+    /**
+     * Returns the look-ahead policy used for sequences which don't define a specific one.
+     */
+    public static LookAheadPolicy getDefaultPolicy()
+    {
+        return prefetcher.defaultPolicy;
+    }
+
+    /**
+     * Set the look-ahead policy used for sequences which don't define a specific one.
+     */
+    public static void setDefaultPolicy(LookAheadPolicy policy)
+    {
+        prefetcher.defaultPolicy = (policy == null) ? LookAheadPolicy.DEFAULT : policy;
+    }
+
+    /**
+     * Cancel all pending prefetch for the specified sequence.
+     */
     public static void cancel(Sequence sequence)
     {
         prefetcher.cancelInternal(sequence);
@@ -75,107 +304,197 @@ public class SequencePrefetcher extends Thread
 
     public static void shutdown()
     {
-        prefetcher.interrupt();
+        prefetcher.shutdownInternal();
     }
 
-    private final Set<PrefetchEntry> prefetchSet;
-    private final Deque<PrefetchEntry> prefetchQueue;
+    final Set<PrefetchEntry> prefetchSet;
+    final PriorityBlockingQueue<PrefetchEntry> prefetchQueue;
+    final Map<Sequence, SequenceState> states;
+    final List<PrefetchWorker> workers;
+    volatile LookAheadPolicy defaultPolicy;
+    long entryOrder;
 
-    public SequencePrefetcher()
+    private SequencePrefetcher()
     {
-        super("Sequence prefetcher");
+        super();
 
         prefetchSet = new HashSet<PrefetchEntry>();
-        prefetchQueue = new LinkedBlockingDeque<PrefetchEntry>();
+        prefetchQueue = new PriorityBlockingQueue<PrefetchEntry>();
+        states = new WeakHashMap<Sequence, SequenceState>();
+        workers = new ArrayList<PrefetchWorker>();
+        defaultPolicy = LookAheadPolicy.DEFAULT;
+        entryOrder = 0L;
 
-        start();
+        // image loading is mostly I/O bound, we don't need too many workers
+        final int numWorker = Math.max(2, Math.min(8, SystemUtil.getNumberOfCPUs() / 2));
+
+        for (int i = 0; i < numWorker; i++)
+        {
+            final PrefetchWorker worker = new PrefetchWorker(i);
+
+            workers.add(worker);
+            worker.start();
+        }
     }
 
-    private void prefetchInternal(Sequence sequence, int t, int z)
+    SequenceState getState(Sequence sequence)
     {
-        final PrefetchEntry entry = new PrefetchEntry(sequence, t, z);
+        SequenceState result = states.get(sequence);
 
-        // already in queue ? nothing to do...
-        if (prefetchSet.contains(entry))
-            return;
+        if (result == null)
+        {
+            result = new SequenceState();
+            states.put(sequence, result);
+        }
+
+        return result;
+    }
+
+    private synchronized LookAheadPolicy getPolicyInternal(Sequence sequence)
+    {
+        final LookAheadPolicy result = getState(sequence).policy;
+
+        if (result == null)
+            return defaultPolicy;
 
+        return result;
+    }
+
+    private synchronized void setPolicyInternal(Sequence sequence, LookAheadPolicy policy)
+    {
+        getState(sequence).policy = policy;
+    }
+
+    private boolean needPrefetch(Sequence sequence, int t, int z)
+    {
         final IcyBufferedImage image = sequence.getImage(t, z, false);
 
-        // nothing to prefetch here
-        if (image == null)
+        // nothing to prefetch here or data already initialized
+        return (image != null) && !image.isDataInitialized();
+    }
+
+    /**
+     * Add a prefetch entry, should be called while holding the prefetcher lock
+     */
+    private void addEntry(Sequence sequence, SequenceState state, int t, int z)
+    {
+        final int distance = Math.abs(t - state.t) + Math.abs(z - state.z);
+        final PrefetchEntry entry = new PrefetchEntry(sequence, t, z, state.generation, distance,
+                entryOrder++);
+
+        // already in queue ? nothing to do...
+        if (prefetchSet.contains(entry))
             return;
 
-        // data already initialized..
-        if (image.isDataInitialized())
+        prefetchSet.add(entry);
+        prefetchQueue.add(entry);
+    }
+
+    private void prefetchInternal(Sequence sequence, int t, int z)
+    {
+        if (!needPrefetch(sequence, t, z))
             return;
 
-        synchronized (prefetchSet)
+        synchronized (this)
         {
-            prefetchSet.add(entry);
-            prefetchQueue.addFirst(entry);
+            final SequenceState state = getState(sequence);
+
+            // no position defined yet --> use this one
+            if (state.t == -1)
+            {
+                state.t = t;
+                state.z = z;
+            }
+
+            addEntry(sequence, state, t, z);
         }
     }
 
-    private void cancelInternal(Sequence sequence)
+    private void prefetchAroundInternal(Sequence sequence, int t, int z)
     {
-        final List<PrefetchEntry> toRemove = new ArrayList<PrefetchEntry>();
+        final int sizeT = sequence.getSizeT();
+        final int sizeZ = sequence.getSizeZ();
+        final List<int[]> positions = new ArrayList<int[]>();
+        final LookAheadPolicy policy;
 
-        // build list of element to remove
-        synchronized (prefetchSet)
+        synchronized (this)
         {
-            final Iterator<PrefetchEntry> it = prefetchSet.iterator();
+            final SequenceState state = getState(sequence);
 
-            while (it.hasNext())
-            {
-                final PrefetchEntry entry = it.next();
-                final Sequence entrySeq = entry.sequence.get();
+            // same position ? nothing to do
+            if ((state.t == t) && (state.z == z))
+                return;
 
-                if ((entrySeq == null) || (entrySeq == sequence))
-                    toRemove.add(entry);
-            }
+            state.t = t;
+            state.z = z;
+            // position changed --> all pending entries are stale (we rebuild them with new priorities)
+            state.generation++;
+            removeEntries(sequence);
+
+            policy = (state.policy == null) ? defaultPolicy : state.policy;
+        }
+
+        // build list of images to prefetch
+        for (int pt = Math.max(0, t - policy.tBackward); pt <= Math.min(sizeT - 1, t + policy.tForward); pt++)
+            if ((pt != t) && needPrefetch(sequence, pt, z))
+                positions.add(new int[] {pt, z});
+        for (int pz = Math.max(0, z - policy.zBackward); pz <= Math.min(sizeZ - 1, z + policy.zForward); pz++)
+            if ((pz != z) && needPrefetch(sequence, t, pz))
+                positions.add(new int[] {t, pz});
+
+        synchronized (this)
+        {
+            final SequenceState state = getState(sequence);
 
-            prefetchSet.removeAll(toRemove);
-            prefetchQueue.removeAll(toRemove);
+            // position changed in the meantime ? --> don't add entries anymore
+            if ((state.t != t) || (state.z != z))
+                return;
+
+            for (int[] pos : positions)
+                addEntry(sequence, state, pos[0], pos[1]);
         }
     }
 
-    @Override
-    public void run()
+    /**
+     * Remove all pending entries for the specified sequence (or released sequences), should be called while holding
+     * the prefetcher lock
+     */
+    private void removeEntries(Sequence sequence)
     {
-        while (!interrupted())
+        final List<PrefetchEntry> toRemove = new ArrayList<PrefetchEntry>();
+        final Iterator<PrefetchEntry> it = prefetchSet.iterator();
+
+        // build list of element to remove
+        while (it.hasNext())
         {
-            final PrefetchEntry entry;
+            final PrefetchEntry entry = it.next();
+            final Sequence entrySeq = entry.sequence.get();
 
-            synchronized (prefetchSet)
-            {
-                entry = prefetchQueue.pollFirst();
-                if (entry != null)
-                    prefetchSet.remove(entry);
-            }
+            if ((entrySeq == null) || (entrySeq == sequence))
+                toRemove.add(entry);
+        }
 
-            // need to prefetch something ?
-            if (entry != null)
-            {
-                // we use weak reference to not retain Sequence with prefetch process..
-                final Sequence entrySeq = entry.sequence.get();
+        prefetchSet.removeAll(toRemove);
+        prefetchQueue.removeAll(toRemove);
+    }
 
-                // prefetch data
-                if (entrySeq != null)
-                    entrySeq.getImage(entry.t, entry.z, true);
-            }
-            else
-            {
-                // nothing to do..
-                try
-                {
-                    // sleep a bit
-                    sleep(1);
-                }
-                catch (InterruptedException e)
-                {
-                    // ignore safely
-                }
-            }
-        }
+    private synchronized void cancelInternal(Sequence sequence)
+    {
+        final SequenceState state = states.get(sequence);
+
+        // invalidate entries currently taken by workers
+        if (state != null)
+            state.generation++;
+
+        removeEntries(sequence);
+    }
+
+    private synchronized void shutdownInternal()
+    {
+        prefetchSet.clear();
+        prefetchQueue.clear();
+
+        for (PrefetchWorker worker : workers)
+            worker.interrupt();
     }
 }
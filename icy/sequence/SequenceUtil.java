@@ -23,11 +23,16 @@ import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.swing.SwingConstants;
 
@@ -35,6 +40,8 @@ import icy.common.listener.ProgressListener;
 import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageUtil;
 import icy.image.IcyBufferedImageUtil.FilterType;
+import icy.image.ImageResampler;
+import icy.image.cache.ImageCache;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormap.LinearColorMap;
 import icy.image.lut.LUT;
@@ -42,8 +49,11 @@ import icy.math.Scaler;
 import icy.painter.Overlay;
 import icy.roi.BooleanMask2D;
 import icy.roi.ROI;
+import icy.system.SystemUtil;
+import icy.system.thread.ThreadUtil;
 import icy.type.DataType;
 import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.ArrayUtil;
 import icy.type.point.Point3D;
 import icy.type.rectangle.Rectangle3D;
 import icy.type.rectangle.Rectangle5D;
@@ -1656,6 +1666,63 @@ public class SequenceUtil
         return outSequence;
     }
 
+    /**
+     * Build a view of the specified channels of the source sequence (data are shared, not copied).
+     * 
+     * @see SequenceView
+     * @see #extractChannels(Sequence, int...)
+     */
+    public static SequenceView extractChannelsView(Sequence source, int... channels)
+    {
+        final SequenceView result = new SequenceView(source, channels);
+
+        // sequence name
+        if (channels.length > 1)
+        {
+            String s = "";
+            for (int i = 0; i < channels.length; i++)
+                s += " " + channels[i];
+
+            result.setName(source.getName() + " (channels" + s + ")");
+        }
+        else if (channels.length == 1)
+            result.setName(source.getName() + " (" + source.getChannelName(channels[0]) + ")");
+
+        return result;
+    }
+
+    /**
+     * Build a view of the specified Z slice of the source sequence (data are shared, not copied).
+     * 
+     * @see SequenceView
+     * @see #extractSlice(Sequence, int)
+     */
+    public static SequenceView extractSliceView(Sequence source, int z)
+    {
+        final SequenceView result = new SequenceView(source, new Rectangle5D.Integer(0, 0, z, 0, 0, source.getSizeX(),
+                source.getSizeY(), 1, source.getSizeT(), source.getSizeC()));
+
+        result.setName(source.getName() + " (slice " + z + ")");
+
+        return result;
+    }
+
+    /**
+     * Build a view of the specified T frame of the source sequence (data are shared, not copied).
+     * 
+     * @see SequenceView
+     * @see #extractFrame(Sequence, int)
+     */
+    public static SequenceView extractFrameView(Sequence source, int t)
+    {
+        final SequenceView result = new SequenceView(source, new Rectangle5D.Integer(0, 0, 0, t, 0, source.getSizeX(),
+                source.getSizeY(), source.getSizeZ(), 1, source.getSizeC()));
+
+        result.setName(source.getName() + " (frame " + t + ")");
+
+        return result;
+    }
+
     /**
      * Converts the source sequence to the specified data type.<br>
      * This method returns a new sequence (the source sequence is not modified).
@@ -1672,12 +1739,36 @@ public class SequenceUtil
      * @return converted sequence
      */
     public static Sequence convertToType(Sequence source, DataType dataType, boolean rescale, boolean useDataBounds)
+    {
+        return convertToType(source, dataType, rescale, useDataBounds, null);
+    }
+
+    /**
+     * Converts the source sequence to the specified data type.<br>
+     * This method returns a new sequence (the source sequence is not modified).
+     * 
+     * @param source
+     *        Source sequence to convert
+     * @param dataType
+     *        Data type wanted
+     * @param rescale
+     *        Indicate if we want to scale data value according to data (or data type) range
+     * @param useDataBounds
+     *        Only used when <code>rescale</code> parameter is true.<br>
+     *        Specify if we use the data bounds for rescaling instead of data type bounds.
+     * @param pl
+     *        ProgressListener to indicate processing progress (can be <code>null</code>).
+     * @return converted sequence (<code>null</code> if the process has been canceled)
+     * @see #convertType(Sequence, DataType, Scaler[], ProgressListener)
+     */
+    public static Sequence convertToType(Sequence source, DataType dataType, boolean rescale, boolean useDataBounds,
+            ProgressListener pl)
     {
         if (source == null)
             return null;
 
         if (!rescale)
-            return convertType(source, dataType, null);
+            return convertType(source, dataType, null, pl);
 
         // convert with rescale
         final double boundsDst[] = dataType.getDefaultBounds();
@@ -1702,7 +1793,7 @@ public class SequenceUtil
         }
 
         // use scaler to scale data
-        return convertType(source, dataType, scalers);
+        return convertType(source, dataType, scalers, pl);
     }
 
     /**
@@ -1778,38 +1869,48 @@ public class SequenceUtil
      * @return converted image
      */
     public static Sequence convertType(Sequence source, DataType dataType, Scaler[] scalers)
+    {
+        return convertType(source, dataType, scalers, null);
+    }
+
+    /**
+     * Converts the source sequence to the specified data type.<br>
+     * This method returns a new sequence (the source sequence is not modified).<br>
+     * Planes are converted in parallel with a bounded number of plane in memory at once. If the source sequence is
+     * volatile then the converted images are also volatile so large sequences can be converted without holding both
+     * in memory.
+     * 
+     * @param source
+     *        Source sequence to convert
+     * @param dataType
+     *        data type wanted.
+     * @param scalers
+     *        scalers for scaling internal data during conversion (1 scaler per channel).<br>
+     *        Can be set to <code>null</code> to avoid value conversion.
+     * @param pl
+     *        ProgressListener to indicate processing progress (can be <code>null</code>).
+     * @return converted sequence (<code>null</code> if the process has been canceled)
+     */
+    public static Sequence convertType(Sequence source, DataType dataType, Scaler[] scalers, ProgressListener pl)
     {
         final Sequence output = new Sequence(OMEUtil.createOMEXMLMetadata(source.getOMEXMLMetadata()));
+        final boolean volatileOutput = source.isVolatile() && ImageCache.isEnabled();
+        final boolean done;
 
         output.beginUpdate();
         try
         {
-            for (int t = 0; t < source.getSizeT(); t++)
-            {
-                for (int z = 0; z < source.getSizeZ(); z++)
-                {
-                    final IcyBufferedImage converted = IcyBufferedImageUtil.convertType(source.getImage(t, z), dataType,
-                            scalers);
-
-                    // FIXME : why we did that ??
-                    // this is not a good idea to force bounds when rescale = false
-
-                    // set bounds manually for the converted image
-                    // for (int c = 0; c < getSizeC(); c++)
-                    // {
-                    // converted.setComponentBounds(c, boundsDst);
-                    // converted.setComponentUserBounds(c, boundsDst);
-                    // }
-
-                    output.setImage(t, z, converted);
-                }
-            }
+            done = convertPlanes(source, dataType, scalers, null, output, volatileOutput, pl);
         }
         finally
         {
             output.endUpdate();
         }
 
+        // canceled
+        if (!done)
+            return null;
+
         // preserve channel informations
         for (int c = 0; c < source.getSizeC(); c++)
         {
@@ -1826,6 +1927,178 @@ public class SequenceUtil
         return output;
     }
 
+    /**
+     * Converts the source sequence data into the specified {@link SequenceBuilder} (which defines the wanted data
+     * type).<br>
+     * Planes are converted in parallel with a bounded number of plane in memory at once, the builder can use a
+     * pre-allocated (volatile) target sequence to avoid an intermediate copy.
+     * 
+     * @param source
+     *        Source sequence to convert
+     * @param builder
+     *        builder receiving converted data, it should have the same dimension than the source sequence
+     * @param scalers
+     *        scalers for scaling internal data during conversion (1 scaler per channel).<br>
+     *        Can be set to <code>null</code> to avoid value conversion.
+     * @param pl
+     *        ProgressListener to indicate processing progress (can be <code>null</code>).
+     * @return <code>false</code> if the process has been canceled, <code>true</code> otherwise
+     * @throws IllegalArgumentException
+     *         if builder dimension does not match source dimension
+     */
+    public static boolean convertType(Sequence source, SequenceBuilder builder, Scaler[] scalers, ProgressListener pl)
+            throws IllegalArgumentException
+    {
+        if ((builder.getSizeX() != source.getSizeX()) || (builder.getSizeY() != source.getSizeY())
+                || (builder.getSizeZ() != source.getSizeZ()) || (builder.getSizeT() != source.getSizeT())
+                || (builder.getSizeC() != source.getSizeC()))
+            throw new IllegalArgumentException("SequenceUtil.convertType(..): builder dimension should match source.");
+
+        builder.beginUpdate();
+        try
+        {
+            return convertPlanes(source, builder.getDataType(), scalers, builder, null, false, pl);
+        }
+        finally
+        {
+            builder.endUpdate();
+        }
+    }
+
+    /**
+     * Convert source planes in parallel (bounded number of plane in flight).<br>
+     * Converted planes are directly written in <code>builder</code> if not <code>null</code>, else they are set (in
+     * order) in <code>output</code>.
+     * 
+     * @return <code>false</code> if the process has been canceled
+     */
+    private static boolean convertPlanes(final Sequence source, final DataType dataType, final Scaler[] scalers,
+            final SequenceBuilder builder, Sequence output, final boolean volatileOutput, ProgressListener pl)
+    {
+        final int sizeT = source.getSizeT();
+        final int sizeZ = source.getSizeZ();
+        final int numPlane = sizeT * sizeZ;
+        // maximum number of plane being converted (bound memory usage)
+        final int maxInFlight = SystemUtil.getNumberOfCPUs() * 2;
+        final ExecutorService executor = ThreadUtil.createThreadPool("Sequence type converter");
+        final ArrayDeque<Future<IcyBufferedImage>> inFlight = new ArrayDeque<Future<IcyBufferedImage>>(maxInFlight);
+
+        try
+        {
+            int submitted = 0;
+            int done = 0;
+
+            while (done < numPlane)
+            {
+                // fill the pipeline
+                while ((submitted < numPlane) && ((submitted - done) < maxInFlight))
+                {
+                    final int t = submitted / sizeZ;
+                    final int z = submitted % sizeZ;
+
+                    inFlight.add(executor.submit(new Callable<IcyBufferedImage>()
+                    {
+                        @Override
+                        public IcyBufferedImage call() throws Exception
+                        {
+                            return convertPlane(source, t, z, dataType, scalers, builder, volatileOutput);
+                        }
+                    }));
+
+                    submitted++;
+                }
+
+                // get next converted plane (in order)
+                final IcyBufferedImage image = inFlight.poll().get();
+
+                if ((output != null) && (image != null))
+                    output.setImage(done / sizeZ, done % sizeZ, image);
+
+                done++;
+
+                // canceled ?
+                if ((pl != null) && !pl.notifyProgress(done, numPlane))
+                    return false;
+            }
+
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            // restore interrupted state and stop here
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new RuntimeException(cause);
+        }
+        finally
+        {
+            // cancel remaining conversions (if any)
+            for (Future<IcyBufferedImage> future : inFlight)
+                future.cancel(true);
+
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Convert the specified source plane (written in <code>builder</code> if not <code>null</code>, returned otherwise)
+     */
+    static IcyBufferedImage convertPlane(Sequence source, int t, int z, DataType dataType, Scaler[] scalers,
+            SequenceBuilder builder, boolean volatileOutput)
+    {
+        final IcyBufferedImage image = source.getImage(t, z);
+
+        if (image == null)
+            return null;
+
+        if (builder == null)
+        {
+            final IcyBufferedImage result = IcyBufferedImageUtil.convertType(image, dataType, scalers);
+
+            // release data to the cache as soon as possible
+            if (volatileOutput && (result != null))
+                result.setVolatile(true);
+
+            return result;
+        }
+
+        final boolean srcSigned = image.getDataType_().isSigned();
+        final boolean dstSigned = dataType.isSigned();
+
+        for (int c = 0; c < image.getSizeC(); c++)
+        {
+            final Object dst = builder.getData(t, z, c);
+
+            // no rescale ?
+            if ((scalers == null) || (c >= scalers.length) || scalers[c].isNull())
+                // simple type change
+                ArrayUtil.arrayToSafeArray(image.getDataXY(c), dst, srcSigned, dstSigned);
+            else
+            {
+                // first we convert in double
+                final double[] darray = Array1DUtil.arrayToDoubleArray(image.getDataXY(c), srcSigned);
+                // then we scale data
+                scalers[c].scale(darray);
+                // and finally we convert in wanted datatype
+                Array1DUtil.doubleArrayToSafeArray(darray, dst, dstSigned);
+            }
+
+            builder.validateData(t, z, c);
+        }
+
+        return null;
+    }
+
     /**
      * Return a rotated version of the source sequence with specified parameters.
      * 
@@ -1850,9 +2123,14 @@ public class SequenceUtil
         try
         {
             for (int t = 0; t < sizeT; t++)
+            {
+                // rotate all planes of the volume in parallel
+                final IcyBufferedImage[] images = ImageResampler.rotate(getImages(source, t), xOrigin, yOrigin, angle,
+                        filterType);
+
                 for (int z = 0; z < sizeZ; z++)
-                    result.setImage(t, z,
-                            IcyBufferedImageUtil.rotate(source.getImage(t, z), xOrigin, yOrigin, angle, filterType));
+                    result.setImage(t, z, images[z]);
+            }
         }
         finally
         {
@@ -1931,13 +2209,29 @@ public class SequenceUtil
         final int sizeZ = source.getSizeZ();
         final Sequence result = new Sequence(OMEUtil.createOMEXMLMetadata(source.getOMEXMLMetadata()));
 
+        final boolean resize = resizeContent && ((width != source.getSizeX()) || (height != source.getSizeY()));
+
         result.beginUpdate();
         try
         {
             for (int t = 0; t < sizeT; t++)
-                for (int z = 0; z < sizeZ; z++)
-                    result.setImage(t, z, IcyBufferedImageUtil.scale(source.getImage(t, z), width, height,
-                            resizeContent, xAlign, yAlign, filterType));
+            {
+                if (resize)
+                {
+                    // resample all planes of the volume in parallel
+                    final IcyBufferedImage[] images = ImageResampler.scale(getImages(source, t), width, height,
+                            filterType);
+
+                    for (int z = 0; z < sizeZ; z++)
+                        result.setImage(t, z, images[z]);
+                }
+                else
+                {
+                    for (int z = 0; z < sizeZ; z++)
+                        result.setImage(t, z, IcyBufferedImageUtil.scale(source.getImage(t, z), width, height,
+                                resizeContent, xAlign, yAlign, filterType));
+                }
+            }
         }
         finally
         {
@@ -2014,6 +2308,90 @@ public class SequenceUtil
         return scale(source, width, height, FilterType.BILINEAR);
     }
 
+    /**
+     * Return a copy of the sequence with specified size in X, Y and Z (content is resampled).<br>
+     * Useful to get isotropic voxel from anisotropic stack (pixel size is updated accordingly).
+     * 
+     * @param source
+     *        source sequence
+     * @param width
+     *        wanted size X
+     * @param height
+     *        wanted size Y
+     * @param depth
+     *        wanted size Z
+     * @param filterType
+     *        filter method used for resampling
+     * @throws IllegalArgumentException
+     *         if Z resampling is requested and a volume of the source sequence has missing planes
+     */
+    public static Sequence scale(Sequence source, int width, int height, int depth, FilterType filterType)
+            throws IllegalArgumentException
+    {
+        final int sizeZ = source.getSizeZ();
+
+        // cannot resample along Z with missing planes, check it first so we do not return a partially resampled result
+        if ((depth != sizeZ) && (depth > 0))
+        {
+            final int sizeT = source.getSizeT();
+
+            for (int t = 0; t < sizeT; t++)
+                for (int z = 0; z < sizeZ; z++)
+                    if (source.getImage(t, z) == null)
+                        throw new IllegalArgumentException("Cannot resample along Z: missing plane at T=" + t
+                                + ", Z=" + z + " in sequence '" + source.getName() + "'");
+        }
+
+        // XY resampling
+        final Sequence result = scale(source, width, height, true, 0, 0, filterType);
+
+        if ((depth == sizeZ) || (depth <= 0))
+            return result;
+
+        final int sizeT = result.getSizeT();
+
+        result.beginUpdate();
+        try
+        {
+            for (int t = 0; t < sizeT; t++)
+            {
+                // all planes are present (checked above)
+                final IcyBufferedImage[] images = getImages(result, t);
+                final IcyBufferedImage[] resampled = ImageResampler.resampleZ(images, depth, filterType);
+
+                // remove extra planes
+                for (int z = sizeZ - 1; z >= depth; z--)
+                    result.removeImage(t, z);
+                for (int z = 0; z < depth; z++)
+                    result.setImage(t, z, resampled[z]);
+            }
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        // update pixel size
+        final double sz = (double) sizeZ / depth;
+        if ((sz != 0d) && !Double.isInfinite(sz))
+            result.setPixelSizeZ(result.getPixelSizeZ() * sz);
+
+        return result;
+    }
+
+    /**
+     * Returns all images of the specified volume (entries can be <code>null</code>)
+     */
+    static IcyBufferedImage[] getImages(Sequence source, int t)
+    {
+        final IcyBufferedImage[] result = new IcyBufferedImage[source.getSizeZ()];
+
+        for (int z = 0; z < result.length; z++)
+            result[z] = source.getImage(t, z);
+
+        return result;
+    }
+
     /**
      * Creates a new sequence from the specified region of the source sequence.
      */
@@ -2103,6 +2481,23 @@ public class SequenceUtil
         return result;
     }
 
+    /**
+     * Creates a view of the specified region of the source sequence.<br>
+     * Data are shared with the source sequence (no copy) as long as the whole XY plane is used, cropped XY planes are
+     * copied.
+     * 
+     * @see SequenceView
+     * @see #getSubSequence(Sequence, icy.type.rectangle.Rectangle5D.Integer)
+     */
+    public static SequenceView getSubSequenceView(Sequence source, Rectangle5D.Integer region)
+    {
+        final SequenceView result = new SequenceView(source, region);
+
+        result.setName(source.getName() + " (crop)");
+
+        return result;
+    }
+
     /**
      * @deprecated Use {@link #getSubSequence(Sequence, icy.type.rectangle.Rectangle5D.Integer)} instead.
      */
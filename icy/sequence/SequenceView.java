@@ -0,0 +1,428 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import java.awt.Rectangle;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import icy.common.listener.weak.WeakListener;
+import icy.image.IcyBufferedImage;
+import icy.image.IcyBufferedImageEvent;
+import icy.image.IcyBufferedImageListener;
+import icy.image.IcyBufferedImageUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array2DUtil;
+import icy.type.rectangle.Rectangle5D;
+import icy.util.OMEUtil;
+import ome.xml.meta.OMEXMLMetadata;
+
+/**
+ * Sequence view of a region (Z / T range and channel subset) of a source sequence.<br>
+ * The view shares the source images data (no pixel copy) so modifying view data modifies the source sequence data
+ * (source sequence is notified of the change).<br>
+ * Planes are shared only when the whole XY plane is viewed and the source image is not volatile, otherwise the plane
+ * data is copied.<br>
+ * The view follows source data changes of shared planes but not source structure changes (image added or
+ * removed), call {@link #dispose()} when the view is not used anymore to stop following them.<br>
+ * Use {@link #materialize()} to get a detached copy of the view.
+ *
+ * @author Stephane
+ */
+public class SequenceView extends Sequence
+{
+    /**
+     * Weak listener on source images so the source images do not retain the view
+     */
+    protected static class SourceImageListener extends WeakListener<SequenceView> implements IcyBufferedImageListener
+    {
+        public SourceImageListener(SequenceView view)
+        {
+            super(view);
+        }
+
+        @Override
+        public void removeListener(Object source)
+        {
+            if (source != null)
+                ((IcyBufferedImage) source).removeListener(this);
+        }
+
+        @Override
+        public void imageChanged(IcyBufferedImageEvent e)
+        {
+            final SequenceView view = getListener(e.getImage());
+
+            if (view != null)
+                view.sourceImageChanged(e);
+        }
+    }
+
+    /**
+     * source sequence
+     */
+    protected final Sequence source;
+    /**
+     * view image --> source image (only for images sharing data)
+     */
+    protected final Map<IcyBufferedImage, IcyBufferedImage> sourceImages;
+    /**
+     * source image --> view image (reverse of {@link #sourceImages}, both are guarded by <code>sourceImages</code>)
+     */
+    protected final Map<IcyBufferedImage, IcyBufferedImage> viewImages;
+    /**
+     * listener on shared source images
+     */
+    protected final SourceImageListener sourceListener;
+    /**
+     * images being notified by the current thread (avoid view <--> source loop)
+     */
+    protected final ThreadLocal<Set<IcyBufferedImage>> forwarding;
+
+    /**
+     * Create a view of the specified region of the source sequence.
+     *
+     * @param source
+     *        source sequence
+     * @param region
+     *        viewed region (infinite dimension means the whole dimension)
+     */
+    public SequenceView(Sequence source, Rectangle5D.Integer region)
+    {
+        super(OMEUtil.createOMEXMLMetadata(source.getOMEXMLMetadata()));
+
+        this.source = source;
+        sourceImages = new WeakHashMap<IcyBufferedImage, IcyBufferedImage>();
+        viewImages = new WeakHashMap<IcyBufferedImage, IcyBufferedImage>();
+        sourceListener = new SourceImageListener(this);
+        forwarding = createForwardingSet();
+
+        final int startZ;
+        final int endZ;
+        final int startT;
+        final int endT;
+        final int startC;
+        final int endC;
+
+        if (region.isInfiniteZ())
+        {
+            startZ = 0;
+            endZ = source.getSizeZ();
+        }
+        else
+        {
+            startZ = Math.max(0, region.z);
+            endZ = Math.min(source.getSizeZ(), region.z + region.sizeZ);
+        }
+        if (region.isInfiniteT())
+        {
+            startT = 0;
+            endT = source.getSizeT();
+        }
+        else
+        {
+            startT = Math.max(0, region.t);
+            endT = Math.min(source.getSizeT(), region.t + region.sizeT);
+        }
+        if (region.isInfiniteC())
+        {
+            startC = 0;
+            endC = source.getSizeC();
+        }
+        else
+        {
+            startC = Math.max(0, region.c);
+            endC = Math.min(source.getSizeC(), region.c + region.sizeC);
+        }
+
+        final int[] channels = new int[Math.max(0, endC - startC)];
+        for (int c = 0; c < channels.length; c++)
+            channels[c] = startC + c;
+
+        final Rectangle region2d;
+
+        if (region.isInfiniteX() && region.isInfiniteY())
+            region2d = null;
+        else
+            region2d = region.toRectangle2D().getBounds().intersection(source.getBounds2D());
+
+        initialize(region2d, startZ, endZ, startT, endT, channels);
+    }
+
+    /**
+     * Create a view of the specified channels of the source sequence.
+     *
+     * @param source
+     *        source sequence
+     * @param channels
+     *        viewed channels
+     */
+    public SequenceView(Sequence source, int... channels)
+    {
+        super(OMEUtil.createOMEXMLMetadata(source.getOMEXMLMetadata()));
+
+        this.source = source;
+        sourceImages = new WeakHashMap<IcyBufferedImage, IcyBufferedImage>();
+        viewImages = new WeakHashMap<IcyBufferedImage, IcyBufferedImage>();
+        sourceListener = new SourceImageListener(this);
+        forwarding = createForwardingSet();
+
+        initialize(null, 0, source.getSizeZ(), 0, source.getSizeT(), channels);
+    }
+
+    private static ThreadLocal<Set<IcyBufferedImage>> createForwardingSet()
+    {
+        return new ThreadLocal<Set<IcyBufferedImage>>()
+        {
+            @Override
+            protected Set<IcyBufferedImage> initialValue()
+            {
+                return new HashSet<IcyBufferedImage>();
+            }
+        };
+    }
+
+    protected void initialize(Rectangle region2d, int startZ, int endZ, int startT, int endT, int[] channels)
+    {
+        final boolean fullXY = (region2d == null)
+                || ((region2d.width == source.getSizeX()) && (region2d.height == source.getSizeY()));
+        final Rectangle rect = (region2d == null) ? source.getBounds2D() : region2d;
+        final OMEXMLMetadata metadata = getOMEXMLMetadata();
+
+        // keep only metadata for the viewed channels
+        for (int ch = MetaDataUtil.getNumChannel(metadata, 0) - 1; ch >= 0; ch--)
+        {
+            boolean remove = true;
+
+            for (int c : channels)
+            {
+                if (c == ch)
+                {
+                    remove = false;
+                    break;
+                }
+            }
+
+            if (remove)
+                MetaDataUtil.removeChannel(metadata, 0, ch);
+        }
+        // single slice or frame ? keep only metadata for these planes
+        if (((endZ - startZ) == 1) || ((endT - startT) == 1))
+            MetaDataUtil.keepPlanes(metadata, 0, ((endT - startT) == 1) ? startT : -1,
+                    ((endZ - startZ) == 1) ? startZ : -1, -1);
+
+        beginUpdate();
+        try
+        {
+            for (int t = startT; t < endT; t++)
+            {
+                for (int z = startZ; z < endZ; z++)
+                {
+                    final IcyBufferedImage srcImg = source.getImage(t, z);
+
+                    if (srcImg == null)
+                        continue;
+
+                    final IcyBufferedImage img;
+
+                    if (fullXY && !srcImg.isVolatile())
+                    {
+                        final DataType dataType = srcImg.getDataType_();
+                        final Object[] data = Array2DUtil.createArray(dataType, channels.length);
+
+                        for (int c = 0; c < channels.length; c++)
+                            data[c] = srcImg.getDataXY(channels[c]);
+
+                        // share source data
+                        img = new IcyBufferedImage(srcImg.getSizeX(), srcImg.getSizeY(), data, dataType.isSigned(),
+                                false);
+
+                        // channel bounds are the same
+                        for (int c = 0; c < channels.length; c++)
+                        {
+                            final double[] bounds = srcImg.getChannelBounds(channels[c]);
+                            img.setChannelBounds(c, bounds[0], bounds[1]);
+                        }
+
+                        synchronized (sourceImages)
+                        {
+                            sourceImages.put(img, srcImg);
+                            viewImages.put(srcImg, img);
+                        }
+                        // follow source data changes
+                        srcImg.addListener(sourceListener);
+                    }
+                    else
+                        // cannot share data here, copy
+                        img = IcyBufferedImageUtil
+                                .extractChannels(IcyBufferedImageUtil.getSubImage(srcImg, rect, 0, srcImg.getSizeC()),
+                                        channels);
+
+                    setImage(t - startT, z - startZ, img);
+                }
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+
+        // preserve channel informations
+        for (int c = 0; c < channels.length; c++)
+        {
+            final int ch = channels[c];
+
+            setChannelName(c, source.getChannelName(ch));
+            setDefaultColormap(c, source.getDefaultColorMap(ch), true);
+            setColormap(c, source.getColorMap(ch));
+        }
+
+        setName(source.getName() + " (view)");
+
+        // adjust position X, Y, Z
+        setPositionX(source.getPositionX() + (rect.x * source.getPixelSizeX()));
+        setPositionY(source.getPositionY() + (rect.y * source.getPixelSizeY()));
+        setPositionZ(source.getPositionZ() + (startZ * source.getPixelSizeZ()));
+        // adjust TimeStamp
+        if (channels.length > 0)
+            setTimeStamp(source.getTimeStamp()
+                    + (long) (source.getPositionTOffset(startT, startZ, channels[0]) * 1000d));
+    }
+
+    /**
+     * Returns the source sequence of this view.
+     */
+    public Sequence getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified image of this view shares its data with the source sequence.
+     */
+    public boolean isShared(IcyBufferedImage image)
+    {
+        synchronized (sourceImages)
+        {
+            return sourceImages.containsKey(image);
+        }
+    }
+
+    /**
+     * Stop following source data changes (listeners on source images are removed).<br>
+     * Data are still shared but changes are not notified anymore between the view and the source sequence.
+     */
+    public void dispose()
+    {
+        synchronized (sourceImages)
+        {
+            for (IcyBufferedImage srcImg : viewImages.keySet())
+                srcImg.removeListener(sourceListener);
+
+            viewImages.clear();
+            sourceImages.clear();
+        }
+    }
+
+    @Override
+    public void closed()
+    {
+        super.closed();
+
+        dispose();
+    }
+
+    /**
+     * Returns a detached copy of this view (data are copied, modifying it does not modify the source sequence).
+     */
+    public Sequence materialize()
+    {
+        final Sequence result = SequenceUtil.getCopy(this, false, false, false);
+
+        result.setName(getName());
+
+        return result;
+    }
+
+    /**
+     * Called when a shared source image changed.
+     */
+    protected void sourceImageChanged(IcyBufferedImageEvent e)
+    {
+        final IcyBufferedImage srcImg = e.getImage();
+
+        // data modified from the source (and not notified by us) --> notify view image (data are shared)
+        if ((e.getType() == IcyBufferedImageEvent.IcyBufferedImageEventType.DATA_CHANGED)
+                && !forwarding.get().contains(srcImg))
+        {
+            final IcyBufferedImage img;
+
+            synchronized (sourceImages)
+            {
+                img = viewImages.get(srcImg);
+            }
+
+            if (img != null)
+                forwardDataChanged(img);
+        }
+    }
+
+    /**
+     * Notify data change of the specified image, marking it so its own notification is not forwarded back.
+     */
+    protected void forwardDataChanged(IcyBufferedImage image)
+    {
+        final Set<IcyBufferedImage> images = forwarding.get();
+
+        images.add(image);
+        try
+        {
+            image.dataChanged();
+        }
+        finally
+        {
+            images.remove(image);
+        }
+    }
+
+    @Override
+    public void imageChanged(IcyBufferedImageEvent e)
+    {
+        final IcyBufferedImage img = e.getImage();
+
+        // data modified from the view (and not notified by us) --> notify source image (data are shared)
+        if ((e.getType() == IcyBufferedImageEvent.IcyBufferedImageEventType.DATA_CHANGED)
+                && !forwarding.get().contains(img))
+        {
+            final IcyBufferedImage srcImg;
+
+            synchronized (sourceImages)
+            {
+                srcImg = sourceImages.get(img);
+            }
+
+            if (srcImg != null)
+                forwardDataChanged(srcImg);
+        }
+
+        super.imageChanged(e);
+    }
+}
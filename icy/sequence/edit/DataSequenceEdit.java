@@ -1,30 +1,379 @@
 /**
- * 
+ *
  */
 package icy.sequence.edit;
 
+import icy.image.IcyBufferedImage;
 import icy.sequence.Sequence;
+import icy.system.IcyExceptionHandler;
+import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+import icy.util.ZipUtil;
 
 import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
+import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
 /**
- * Default lazy sequence data undoable edit (do a complete sequence data copy to restore previous
- * state).<br>
- * Do not handle redo operation to not consume too much memory.
- * 
+ * Sequence data undoable edit.<br>
+ * Sequence data are stored as packed planes (image per T, Z position) to restore previous state. Planes which are not
+ * modified by the operation are discarded on first undo (we cannot know when the operation is done before) so only
+ * modified planes are kept in memory after that, and they are kept packed.<br>
+ * Both undo and redo operations are supported.
+ *
  * @author Stephane
  */
 public class DataSequenceEdit extends AbstractSequenceEdit
 {
-    Sequence previous;
+    /**
+     * Packed sequence data (all channels of an image packed together), indexed by (T, Z) position.
+     */
+    protected static class Snapshot
+    {
+        final int sizeX;
+        final int sizeY;
+        final int sizeC;
+        final DataType dataType;
+        // packed planes (null if no image at this position)
+        final TreeMap<Long, byte[]> planes;
+        // contains all planes of the sequence
+        boolean complete;
+
+        /**
+         * Create a snapshot of the specified sequence positions (all positions if <code>keys</code> is
+         * <code>null</code>)
+         */
+        Snapshot(Sequence sequence, Collection<Long> keys)
+        {
+            super();
+
+            sizeX = sequence.getSizeX();
+            sizeY = sequence.getSizeY();
+            sizeC = sequence.getSizeC();
+            dataType = sequence.getDataType_();
+            planes = new TreeMap<Long, byte[]>();
+            complete = (keys == null);
+
+            final List<Long> positions = new ArrayList<Long>();
+
+            if (keys == null)
+            {
+                final int sizeT = sequence.getSizeT();
+                final int sizeZ = sequence.getSizeZ();
+
+                for (int t = 0; t < sizeT; t++)
+                    for (int z = 0; z < sizeZ; z++)
+                        positions.add(Long.valueOf(getKey(t, z)));
+            }
+            else
+                positions.addAll(keys);
+
+            final IcyBufferedImage[] images = new IcyBufferedImage[positions.size()];
+            final byte[][] packed = new byte[images.length][];
+
+            for (int i = 0; i < images.length; i++)
+            {
+                final long key = positions.get(i).longValue();
+                images[i] = sequence.getImage(getT(key), getZ(key));
+            }
+
+            // pack planes in parallel
+            if (images.length > 0)
+                ThreadUtil.forkJoinInvoke(new PackTask(images, packed, 0, images.length));
+
+            for (int i = 0; i < images.length; i++)
+                planes.put(positions.get(i), packed[i]);
+        }
+
+        /**
+         * Returns <code>true</code> if the specified sequence has the same structure than this snapshot (in which case
+         * it can be restored in place).
+         */
+        boolean isSameStructure(Sequence sequence)
+        {
+            if ((sequence.getSizeX() != sizeX) || (sequence.getSizeY() != sizeY) || (sequence.getSizeC() != sizeC)
+                    || (sequence.getDataType_() != dataType))
+                return false;
+
+            for (Entry<Long, byte[]> entry : planes.entrySet())
+            {
+                final long key = entry.getKey().longValue();
+                final IcyBufferedImage image = sequence.getImage(getT(key), getZ(key));
+
+                // image presence changed
+                if ((image == null) != (entry.getValue() == null))
+                    return false;
+            }
+
+            // same number of image
+            if (complete && (planes.size() != (sequence.getSizeT() * sequence.getSizeZ())))
+                return false;
+
+            return true;
+        }
+
+        /**
+         * Discard planes which are identical in the specified sequence (snapshot is not complete anymore).<br>
+         * Does nothing if sequence structure changed.
+         */
+        void prune(Sequence sequence)
+        {
+            if (!isSameStructure(sequence))
+                return;
+
+            final Long[] keys = planes.keySet().toArray(new Long[planes.size()]);
+            final IcyBufferedImage[] images = new IcyBufferedImage[keys.length];
+            final byte[][] packed = new byte[keys.length][];
+            final boolean[] unchanged = new boolean[keys.length];
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                final long key = keys[i].longValue();
+
+                images[i] = sequence.getImage(getT(key), getZ(key));
+                packed[i] = planes.get(keys[i]);
+            }
+
+            // compare planes in parallel
+            if (keys.length > 0)
+                ThreadUtil.forkJoinInvoke(new CompareTask(images, packed, unchanged, 0, keys.length));
+
+            for (int i = 0; i < keys.length; i++)
+                if (unchanged[i])
+                    planes.remove(keys[i]);
+
+            complete = false;
+        }
+
+        /**
+         * Restore the snapshot into the specified sequence
+         */
+        void restore(Sequence sequence) throws DataFormatException
+        {
+            final Inflater inflater = new Inflater();
+
+            sequence.beginUpdate();
+            try
+            {
+                // structure changed --> rebuild all images
+                if (complete && !isSameStructure(sequence))
+                {
+                    sequence.removeAllImages();
+
+                    for (Entry<Long, byte[]> entry : planes.entrySet())
+                    {
+                        final long key = entry.getKey().longValue();
+                        final byte[] data = entry.getValue();
+
+                        if (data != null)
+                        {
+                            final IcyBufferedImage image = new IcyBufferedImage(sizeX, sizeY, sizeC, dataType);
+
+                            image.setRawData(ZipUtil.unpack(inflater, data), false);
+                            sequence.setImage(getT(key), getZ(key), image);
+                        }
+                    }
+                }
+                else
+                {
+                    // restore modified planes in place
+                    for (Entry<Long, byte[]> entry : planes.entrySet())
+                    {
+                        final long key = entry.getKey().longValue();
+                        final byte[] data = entry.getValue();
+                        final IcyBufferedImage image = sequence.getImage(getT(key), getZ(key));
+
+                        if ((data != null) && (image != null))
+                            image.setRawData(ZipUtil.unpack(inflater, data), false);
+                    }
+                }
+            }
+            finally
+            {
+                sequence.endUpdate();
+                inflater.end();
+            }
+        }
+
+        static long getKey(int t, int z)
+        {
+            return (((long) t) << 32) | (z & 0xFFFFFFFFL);
+        }
+
+        static int getT(long key)
+        {
+            return (int) (key >> 32);
+        }
+
+        static int getZ(long key)
+        {
+            return (int) key;
+        }
+    }
+
+    /**
+     * Pack images data in parallel
+     */
+    private static class PackTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 4418923675830915367L;
+
+        final IcyBufferedImage[] images;
+        final byte[][] packed;
+        final int from;
+        final int to;
+
+        PackTask(IcyBufferedImage[] images, byte[][] packed, int from, int to)
+        {
+            super();
+
+            this.images = images;
+            this.packed = packed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+            {
+                final IcyBufferedImage image = images[from];
+
+                if (image != null)
+                {
+                    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+                    try
+                    {
+                        packed[from] = ZipUtil.pack(deflater, image.getRawData(false), -1);
+                    }
+                    finally
+                    {
+                        deflater.end();
+                    }
+                }
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new PackTask(images, packed, from, mid), new PackTask(images, packed, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Compare images data with packed data in parallel
+     */
+    private static class CompareTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -1722935140585301632L;
+
+        final IcyBufferedImage[] images;
+        final byte[][] packed;
+        final boolean[] unchanged;
+        final int from;
+        final int to;
+
+        CompareTask(IcyBufferedImage[] images, byte[][] packed, boolean[] unchanged, int from, int to)
+        {
+            super();
+
+            this.images = images;
+            this.packed = packed;
+            this.unchanged = unchanged;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+            {
+                final IcyBufferedImage image = images[from];
+
+                // no image in both
+                if (image == null)
+                    unchanged[from] = (packed[from] == null);
+                else if (packed[from] != null)
+                {
+                    final Inflater inflater = new Inflater();
+
+                    try
+                    {
+                        unchanged[from] = Arrays.equals(ZipUtil.unpack(inflater, packed[from]),
+                                image.getRawData(false));
+                    }
+                    catch (DataFormatException e)
+                    {
+                        // keep it
+                        unchanged[from] = false;
+                    }
+                    finally
+                    {
+                        inflater.end();
+                    }
+                }
+            }
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new CompareTask(images, packed, unchanged, from, mid),
+                        new CompareTask(images, packed, unchanged, mid, to));
+            }
+        }
+    }
+
+    /**
+     * previous data
+     */
+    protected Snapshot undoData;
+    /**
+     * data after the operation (built on first undo)
+     */
+    protected Snapshot redoData;
+
+    /**
+     * Create a data undoable edit from the current sequence data (should be called before the sequence data are
+     * modified).
+     */
+    public DataSequenceEdit(Sequence sequence, String name, Image icon)
+    {
+        super(sequence, name, icon);
+
+        undoData = new Snapshot(sequence, null);
+        redoData = null;
+    }
+
+    /**
+     * Create a data undoable edit from the current sequence data (should be called before the sequence data are
+     * modified).
+     */
+    public DataSequenceEdit(Sequence sequence, String name)
+    {
+        this(sequence, name, (Image) null);
+    }
 
     public DataSequenceEdit(Sequence previous, Sequence sequence, String name, Image icon)
     {
         super(sequence, name, icon);
 
-        this.previous = previous;
+        undoData = new Snapshot(previous, null);
+        redoData = null;
     }
 
     public DataSequenceEdit(Sequence previous, Sequence sequence, String name)
@@ -47,13 +396,51 @@ public class DataSequenceEdit extends AbstractSequenceEdit
     {
         super.undo();
 
-        // undo
-        getSequence().copyDataFrom(previous);
+        final Sequence sequence = getSequence();
+
+        try
+        {
+            // first undo --> save current state for redo (only modified planes)
+            if (redoData == null)
+            {
+                if (undoData.complete)
+                    undoData.prune(sequence);
+
+                redoData = new Snapshot(sequence, undoData.complete ? null : undoData.planes.keySet());
+            }
+
+            // undo
+            undoData.restore(sequence);
+        }
+        catch (DataFormatException e)
+        {
+            IcyExceptionHandler.showErrorMessage(e, true);
+        }
+    }
+
+    @Override
+    public void redo() throws CannotRedoException
+    {
+        super.redo();
+
+        try
+        {
+            // redo
+            redoData.restore(getSequence());
+        }
+        catch (DataFormatException e)
+        {
+            IcyExceptionHandler.showErrorMessage(e, true);
+        }
     }
 
     @Override
-    public boolean canRedo()
+    public void die()
     {
-        return false;
+        super.die();
+
+        // release data
+        undoData = null;
+        redoData = null;
     }
 }
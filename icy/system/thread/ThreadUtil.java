@@ -26,6 +26,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -88,9 +90,13 @@ public class ThreadUtil
     private static final InstanceProcessor instanceProcessors[];
     // low priority single Runnable / Callable instance processor
     private static final InstanceProcessor bgInstanceProcessors[];
+    // fork / join pool for parallel computation
+    private static final ForkJoinPool forkJoinPool;
 
     static
     {
+        forkJoinPool = new ForkJoinPool(Math.max(1, SystemUtil.getNumberOfCPUs()));
+
         if (SystemUtil.is32bits())
         {
             int wantedThread = SystemUtil.getNumberOfCPUs();
@@ -133,6 +139,7 @@ public class ThreadUtil
      */
     public static void shutdown()
     {
+        forkJoinPool.shutdown();
         bgProcessor.shutdown();
         for (int i = 0; i < instanceProcessors.length; i++)
         {
@@ -153,7 +160,7 @@ public class ThreadUtil
             if (!bgInstanceProcessors[i].isTerminated())
                 return false;
         }
-        return bgProcessor.isTerminated();
+        return bgProcessor.isTerminated() && forkJoinPool.isTerminated();
     }
 
     /**
@@ -572,6 +579,28 @@ public class ThreadUtil
         return result;
     }
 
+    /**
+     * Returns the shared fork / join pool used for parallel computation (number of thread = number
+     * of core of the system).
+     */
+    public static ForkJoinPool getForkJoinPool()
+    {
+        return forkJoinPool;
+    }
+
+    /**
+     * Execute the specified fork / join task and returns its result.<br>
+     * The task is directly executed if we are already inside a fork / join pool, otherwise it is
+     * submitted to the shared fork / join pool (see {@link #getForkJoinPool()}).
+     */
+    public static <T> T forkJoinInvoke(ForkJoinTask<T> task)
+    {
+        if (ForkJoinTask.inForkJoinPool())
+            return task.invoke();
+
+        return forkJoinPool.invoke(task);
+    }
+
     /**
      * Same as {@link Thread#sleep(long)} except Exception is caught and ignored.
      */
@@ -0,0 +1,428 @@
+package icy.type.geom;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Scanline rasterizer used to compute boolean mask of polygonal shapes (polygon, polyline, rectangle, line) and
+ * ellipses without going through a Java2D image.<br>
+ * Pixel (i, j) of the mask is considered as the unit square centered on (<code>x + i</code>, <code>y + j</code>) in
+ * shape coordinates:
+ * <ul>
+ * <li>shape interior is filled from pixel centers (center on the left or top edge is inside)</li>
+ * <li>in inclusive mode pixels intersected by the shape outline are added to the mask</li>
+ * <li>in exclusive mode pixels intersected by the shape outline are removed from the mask so only pixels fully
+ * contained in the shape remain</li>
+ * </ul>
+ * Only closed sub paths are filled, open sub paths (polyline) only contribute by their outline.<br>
+ * Note that for self overlapping paths using the non zero winding rule, edges crossing the interior are still
+ * considered as outline.<br>
+ * Shapes containing curves (except {@link Ellipse2D}) are not supported, the caller should then use the Java2D
+ * rendering way.
+ *
+ * @author Stephane
+ */
+public class ShapeRasterizer
+{
+    /**
+     * Returns <code>true</code> if the specified shape can be rasterized by {@link #getBooleanMask(Shape, double,
+     * double, int, int, boolean)}.
+     */
+    public static boolean isSupported(Shape shape)
+    {
+        if (shape instanceof Ellipse2D)
+        {
+            final Ellipse2D ellipse = (Ellipse2D) shape;
+            return (ellipse.getWidth() > 0d) && (ellipse.getHeight() > 0d);
+        }
+
+        final PathIterator pathIt = shape.getPathIterator(null);
+        final double crd[] = new double[6];
+
+        while (!pathIt.isDone())
+        {
+            switch (pathIt.currentSegment(crd))
+            {
+                case PathIterator.SEG_QUADTO:
+                case PathIterator.SEG_CUBICTO:
+                    return false;
+            }
+
+            pathIt.next();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the boolean mask of the specified shape for the given region or <code>null</code> if the shape is not
+     * supported (see {@link #isSupported(Shape)}).<br>
+     * if pixel (i, j) is contained in the shape then result[(j * width) + i] = true
+     *
+     * @param shape
+     *        the shape to rasterize
+     * @param x
+     *        X position (in shape coordinates) of the center of the first mask pixel
+     * @param y
+     *        Y position (in shape coordinates) of the center of the first mask pixel
+     * @param width
+     *        width of the mask
+     * @param height
+     *        height of the mask
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels are included in the mask, otherwise only
+     *        fully contained pixels are.
+     */
+    public static boolean[] getBooleanMask(Shape shape, double x, double y, int width, int height, boolean inclusive)
+    {
+        if ((width <= 0) || (height <= 0))
+            return new boolean[0];
+
+        if (shape instanceof Ellipse2D)
+        {
+            final Ellipse2D ellipse = (Ellipse2D) shape;
+
+            if ((ellipse.getWidth() <= 0d) || (ellipse.getHeight() <= 0d))
+                return null;
+
+            final boolean[] result = new boolean[width * height];
+            rasterizeEllipse(ellipse.getCenterX() - x, ellipse.getCenterY() - y, ellipse.getWidth() / 2d,
+                    ellipse.getHeight() / 2d, width, height, inclusive, result);
+            return result;
+        }
+
+        final EdgeList edges = EdgeList.create(shape.getPathIterator(AffineTransform.getTranslateInstance(-x, -y)));
+
+        // curves in path --> not supported
+        if (edges == null)
+            return null;
+
+        final boolean[] result = new boolean[width * height];
+
+        // fill interior from pixel centers
+        edges.fill(width, height, result);
+        // then add or remove pixels intersected by outline
+        for (int e = 0; e < edges.size; e++)
+            drawEdge(edges.x0[e], edges.y0[e], edges.x1[e], edges.y1[e], width, height, inclusive, result);
+
+        return result;
+    }
+
+    /**
+     * Ellipse is computed analytically for each row (center and radius are given in mask pixel coordinates)
+     */
+    private static void rasterizeEllipse(double cx, double cy, double rx, double ry, int width, int height,
+            boolean inclusive, boolean[] result)
+    {
+        final int startY = Math.max(0, (int) Math.floor(cy - ry - 0.5d) + 1);
+        final int endY = Math.min(height - 1, (int) Math.ceil(cy + ry + 0.5d) - 1);
+
+        for (int j = startY; j <= endY; j++)
+        {
+            final double top = j - 0.5d;
+            final double bottom = j + 0.5d;
+            final double halfWidth;
+
+            if (inclusive)
+            {
+                // maximum extent of the ellipse in the row
+                if ((top <= cy) && (bottom >= cy))
+                    halfWidth = rx;
+                else
+                    halfWidth = getEllipseHalfWidth((top > cy) ? top : bottom, cy, rx, ry);
+
+                // only touching the row
+                if (halfWidth <= 0d)
+                    continue;
+
+                // pixels with an open square intersecting the ellipse extent
+                fillRow(result, j * width, width, Math.floor(cx - halfWidth - 0.5d) + 1,
+                        Math.ceil(cx + halfWidth + 0.5d));
+            }
+            else
+            {
+                // row should be fully contained in ellipse vertical extent
+                if ((top < (cy - ry)) || (bottom > (cy + ry)))
+                    continue;
+
+                // minimum extent of the ellipse in the row (ellipse is convex)
+                halfWidth = Math.min(getEllipseHalfWidth(top, cy, rx, ry), getEllipseHalfWidth(bottom, cy, rx, ry));
+
+                // pixels with a square fully contained in the ellipse extent
+                fillRow(result, j * width, width, Math.ceil(cx - halfWidth + 0.5d),
+                        Math.floor(cx + halfWidth - 0.5d) + 1);
+            }
+        }
+    }
+
+    private static double getEllipseHalfWidth(double y, double cy, double rx, double ry)
+    {
+        final double dy = (y - cy) / ry;
+        return rx * Math.sqrt(Math.max(0d, 1d - (dy * dy)));
+    }
+
+    /**
+     * Set pixels from <code>start</code> (inclusive) to <code>end</code> (exclusive) to true in the specified mask row
+     */
+    static void fillRow(boolean[] result, int offset, int width, double start, double end)
+    {
+        final int s = (int) Math.max(0d, start);
+        final int e = (int) Math.min(width, end);
+
+        for (int i = s; i < e; i++)
+            result[offset + i] = true;
+    }
+
+    /**
+     * Set all pixels intersected by the specified segment to the given value (segment is given in mask pixel
+     * coordinates, pixel (i, j) is the open unit square centered on (i, j))
+     */
+    private static void drawEdge(double x0, double y0, double x1, double y1, int width, int height, boolean value,
+            boolean[] result)
+    {
+        final double minY = Math.min(y0, y1);
+        final double maxY = Math.max(y0, y1);
+        final int startY = (int) Math.max(0d, Math.floor(minY - 0.5d) + 1);
+        final int endY = (int) Math.min(height - 1, Math.ceil(maxY + 0.5d) - 1);
+        final double dxdy = (y0 != y1) ? (x1 - x0) / (y1 - y0) : 0d;
+
+        for (int j = startY; j <= endY; j++)
+        {
+            double xa, xb;
+
+            // horizontal segment
+            if (y0 == y1)
+            {
+                xa = x0;
+                xb = x1;
+            }
+            else
+            {
+                // clip segment to row
+                xa = x0 + ((Math.max(minY, j - 0.5d) - y0) * dxdy);
+                xb = x0 + ((Math.min(maxY, j + 0.5d) - y0) * dxdy);
+            }
+
+            if (xa > xb)
+            {
+                final double tmp = xa;
+                xa = xb;
+                xb = tmp;
+            }
+
+            final int s = (int) Math.max(0d, Math.floor(xa - 0.5d) + 1);
+            final int e = (int) Math.min(width - 1, Math.ceil(xb + 0.5d) - 1);
+            final int offset = j * width;
+
+            for (int i = s; i <= e; i++)
+                result[offset + i] = value;
+        }
+    }
+
+    /**
+     * Segments of a flat path (all segments are used for the outline, only closed sub path segments for the fill)
+     */
+    private static class EdgeList
+    {
+        double[] x0;
+        double[] y0;
+        double[] x1;
+        double[] y1;
+        boolean[] closed;
+        int size;
+        final boolean evenOdd;
+
+        EdgeList(int windingRule)
+        {
+            super();
+
+            x0 = new double[16];
+            y0 = new double[16];
+            x1 = new double[16];
+            y1 = new double[16];
+            closed = new boolean[16];
+            size = 0;
+            evenOdd = (windingRule == PathIterator.WIND_EVEN_ODD);
+        }
+
+        /**
+         * Build edge list from path, returns <code>null</code> if the path contains curves
+         */
+        static EdgeList create(PathIterator pathIt)
+        {
+            final EdgeList result = new EdgeList(pathIt.getWindingRule());
+            final double crd[] = new double[6];
+            double startX = 0d;
+            double startY = 0d;
+            double lastX = 0d;
+            double lastY = 0d;
+            int subPathStart = 0;
+
+            while (!pathIt.isDone())
+            {
+                switch (pathIt.currentSegment(crd))
+                {
+                    case PathIterator.SEG_MOVETO:
+                        startX = lastX = crd[0];
+                        startY = lastY = crd[1];
+                        subPathStart = result.size;
+                        // single point sub path still intersects a pixel
+                        result.add(lastX, lastY, lastX, lastY);
+                        break;
+
+                    case PathIterator.SEG_LINETO:
+                        result.add(lastX, lastY, crd[0], crd[1]);
+                        lastX = crd[0];
+                        lastY = crd[1];
+                        break;
+
+                    case PathIterator.SEG_CLOSE:
+                        result.add(lastX, lastY, startX, startY);
+                        // sub path edges are used for fill
+                        for (int e = subPathStart; e < result.size; e++)
+                            result.closed[e] = true;
+                        lastX = startX;
+                        lastY = startY;
+                        subPathStart = result.size;
+                        break;
+
+                    default:
+                        return null;
+                }
+
+                pathIt.next();
+            }
+
+            return result;
+        }
+
+        void add(double xa, double ya, double xb, double yb)
+        {
+            if (size == x0.length)
+            {
+                final int newLen = size * 2;
+
+                x0 = copyOf(x0, newLen);
+                y0 = copyOf(y0, newLen);
+                x1 = copyOf(x1, newLen);
+                y1 = copyOf(y1, newLen);
+
+                final boolean[] newClosed = new boolean[newLen];
+                System.arraycopy(closed, 0, newClosed, 0, size);
+                closed = newClosed;
+            }
+
+            x0[size] = xa;
+            y0[size] = ya;
+            x1[size] = xb;
+            y1[size] = yb;
+            size++;
+        }
+
+        private static double[] copyOf(double[] array, int len)
+        {
+            final double[] result = new double[len];
+            System.arraycopy(array, 0, result, 0, array.length);
+            return result;
+        }
+
+        /**
+         * Fill the interior of closed sub paths (a pixel is inside if its center is inside the path according to its
+         * winding rule).<br>
+         * Edges are bucketed by their first row so each row only processes its active edges.
+         */
+        void fill(int width, int height, boolean[] result)
+        {
+            // first edge index for each row (linked through next)
+            final int[] rowFirst = new int[height];
+            final int[] next = new int[size];
+            int numEdge = 0;
+
+            Arrays.fill(rowFirst, -1);
+
+            for (int e = 0; e < size; e++)
+            {
+                // only closed and not horizontal edges
+                if (!closed[e] || (y0[e] == y1[e]))
+                    continue;
+
+                final double top = Math.min(y0[e], y1[e]);
+                final double bottom = Math.max(y0[e], y1[e]);
+                // first and last row centers in [top, bottom[
+                final double startY = Math.max(0d, Math.ceil(top));
+                final double endY = Math.min(height, Math.ceil(bottom));
+
+                if (startY >= endY)
+                    continue;
+
+                final int row = (int) startY;
+                next[e] = rowFirst[row];
+                rowFirst[row] = e;
+                numEdge++;
+            }
+
+            if (numEdge == 0)
+                return;
+
+            final int[] active = new int[numEdge];
+            final double[] xs = new double[numEdge];
+            final int[] dirs = new int[numEdge];
+            int numActive = 0;
+
+            for (int j = 0; j < height; j++)
+            {
+                // remove edges ending before this row
+                int n = 0;
+                for (int k = 0; k < numActive; k++)
+                {
+                    final int e = active[k];
+
+                    if (Math.max(y0[e], y1[e]) > j)
+                        active[n++] = e;
+                }
+                numActive = n;
+
+                // add edges starting on this row
+                for (int e = rowFirst[j]; e != -1; e = next[e])
+                    active[numActive++] = e;
+
+                if (numActive == 0)
+                    continue;
+
+                // compute crossings and sort them (insertion sort as active edge count is usually small)
+                for (int k = 0; k < numActive; k++)
+                {
+                    final int e = active[k];
+                    final double x = x0[e] + (((j - y0[e]) * (x1[e] - x0[e])) / (y1[e] - y0[e]));
+                    final int dir = (y1[e] > y0[e]) ? 1 : -1;
+                    int m = k - 1;
+
+                    while ((m >= 0) && (xs[m] > x))
+                    {
+                        xs[m + 1] = xs[m];
+                        dirs[m + 1] = dirs[m];
+                        m--;
+                    }
+
+                    xs[m + 1] = x;
+                    dirs[m + 1] = dir;
+                }
+
+                // fill spans according to winding rule
+                final int offset = j * width;
+                int winding = 0;
+
+                for (int k = 0; k < (numActive - 1); k++)
+                {
+                    winding += dirs[k];
+
+                    if (evenOdd ? ((winding & 1) != 0) : (winding != 0))
+                        fillRow(result, offset, width, Math.ceil(xs[k]), Math.ceil(xs[k + 1]));
+                }
+            }
+        }
+    }
+}
@@ -28,8 +28,6 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -79,12 +77,6 @@ public class XMLUtil
     private static DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
     // static transformer factory
     private static TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    // static Deflater
-    // private static Deflater deflater = new Deflater(2, true);
-    private static Deflater deflater = new Deflater(2);
-    // static Inflater
-    // private static Inflater inflater = new Inflater(true);
-    private static Inflater inflater = new Inflater();
 
     static
     {
@@ -1106,11 +1098,8 @@ public class XMLUtil
         // get packed byte data
         final byte[] result = (byte[]) ArrayUtil.stringToArray1D(value, DataType.BYTE, true, ":");
 
-        synchronized (inflater)
-        {
-            // unpack and return
-            return ZipUtil.unpack(inflater, result);
-        }
+        // unpack and return
+        return ZipUtil.unpack(ZipUtil.getThreadInflater(), result);
     }
 
     private static String toString(boolean value)
@@ -1140,12 +1129,7 @@ public class XMLUtil
 
     public static String toString(byte[] value)
     {
-        final byte[] packed;
-
-        synchronized (deflater)
-        {
-            packed = ZipUtil.pack(deflater, value, -1);
-        }
+        final byte[] packed = ZipUtil.pack(ZipUtil.getThreadDeflater(), value, -1);
 
         // pack data and convert to string
         return ArrayUtil.array1DToString(packed, false, true, ":", -1);
@@ -36,6 +36,42 @@ import java.util.zip.ZipFile;
  */
 public class ZipUtil
 {
+    // per thread Deflater / Inflater (avoid global lock when packing from several threads)
+    private static final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>()
+    {
+        @Override
+        protected Deflater initialValue()
+        {
+            return new Deflater(2);
+        }
+    };
+    private static final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>()
+    {
+        @Override
+        protected Inflater initialValue()
+        {
+            return new Inflater();
+        }
+    };
+
+    /**
+     * Returns the Deflater object of the current thread (fast compression level).<br>
+     * It can be used with {@link #pack(Deflater, byte[], int)} to pack data from several threads without global lock.
+     */
+    public static Deflater getThreadDeflater()
+    {
+        return deflater.get();
+    }
+
+    /**
+     * Returns the Inflater object of the current thread.<br>
+     * It can be used with {@link #unpack(Inflater, byte[])} to unpack data from several threads without global lock.
+     */
+    public static Inflater getThreadInflater()
+    {
+        return inflater.get();
+    }
+
     /**
      * Compress the specified array of byte with given level of compression and return packed data.<br/>
      * 
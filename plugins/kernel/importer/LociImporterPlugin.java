@@ -13,6 +13,9 @@ import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.filechooser.FileFilter;
 
@@ -25,11 +28,14 @@ import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageUtil;
 import icy.image.IcyBufferedImageUtil.FilterType;
 import icy.image.ImageUtil;
+import icy.image.cache.PyramidCache;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormap.LinearColorMap;
 import icy.plugin.abstract_.PluginSequenceFileImporter;
+import icy.preferences.ApplicationPreferences;
 import icy.preferences.GeneralPreferences;
 import icy.sequence.MetaDataUtil;
+import icy.system.IcyExceptionHandler;
 import icy.system.SystemUtil;
 import icy.system.thread.Processor;
 import icy.type.DataType;
@@ -591,6 +597,129 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         }
     }
 
+    /**
+     * Build the missing power of 2 sub resolution levels of a (Z, T) plane in the pyramid cache.<br>
+     * Each level is computed from the previous one (level 1 from original data) by tile, tiles being processed in
+     * parallel.
+     */
+    class LociPyramidBuilder
+    {
+        class PyramidChunkWorker implements Callable<Object>
+        {
+            final int cx;
+            final int cy;
+
+            public PyramidChunkWorker(int cx, int cy)
+            {
+                super();
+
+                this.cx = cx;
+                this.cy = cy;
+            }
+
+            @SuppressWarnings("resource")
+            @Override
+            public Object call() throws Exception
+            {
+                final Rectangle bounds = cache.getChunkBounds(level, cx, cy);
+                // corresponding region in previous level
+                final Rectangle srcRegion = new Rectangle(bounds.x * 2, bounds.y * 2, bounds.width * 2,
+                        bounds.height * 2);
+                final Object[] srcData;
+
+                // level 1 ? --> compute from original data
+                if (level == 1)
+                {
+                    // use our own reader (don't modify the shared reader state)
+                    final IFormatReader r = getReader(series);
+
+                    try
+                    {
+                        srcData = (Object[]) getImage(r, srcRegion, z, t, -1, 0).getDataXYC();
+                    }
+                    finally
+                    {
+                        releaseReader(r);
+                    }
+                }
+                else
+                    srcData = cache.getRegion(level - 1, srcRegion, z, t);
+
+                final boolean signed = cache.getDataType().isSigned();
+                final Object[] data = Array2DUtil.createArray(cache.getDataType(), srcData.length);
+
+                for (int ch = 0; ch < srcData.length; ch++)
+                    data[ch] = IcyBufferedImageUtil.downscaleBy2(srcData[ch], srcRegion.width, srcRegion.height,
+                            signed, true);
+
+                cache.setChunk(level, z, t, cx, cy, data);
+
+                return null;
+            }
+        }
+
+        final PyramidCache cache;
+        final int series;
+        final int z;
+        final int t;
+        int level;
+
+        public LociPyramidBuilder(PyramidCache cache, int series, int resolution, int z, int t)
+                throws IOException, InterruptedException
+        {
+            super();
+
+            this.cache = cache;
+            this.series = series;
+            this.z = z;
+            this.t = t;
+
+            final Processor processor = new Processor(SystemUtil.getNumberOfCPUs());
+
+            processor.setThreadName("Pyramid level builder");
+
+            try
+            {
+                for (level = 1; level <= resolution; level++)
+                {
+                    // already built
+                    if (cache.isLevelAvailable(level, z, t))
+                        continue;
+
+                    final List<Future<Object>> results = new ArrayList<Future<Object>>();
+
+                    for (int cy = 0; cy < cache.getChunkCountY(level); cy++)
+                        for (int cx = 0; cx < cache.getChunkCountX(level); cx++)
+                            results.add(processor.submit(new PyramidChunkWorker(cx, cy)));
+
+                    // wait for completion of the whole level (next level depends on it)
+                    for (Future<Object> result : results)
+                    {
+                        try
+                        {
+                            result.get();
+                        }
+                        catch (ExecutionException e)
+                        {
+                            throw new IOException("Cannot build pyramid level " + level, e.getCause());
+                        }
+                    }
+
+                    cache.setLevelAvailable(level, z, t);
+                }
+            }
+            finally
+            {
+                processor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Minimum XY plane size (in pixel) to use the pyramid cache
+     */
+    protected static final long PYRAMID_MIN_PLANE_SIZE = 4096L * 4096L;
+
     /**
      * Main image reader used to retrieve a specific format reader
      */
@@ -622,6 +751,13 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
      */
     protected boolean originalMetadata;
     protected boolean groupFiles;
+    protected boolean pyramidCacheEnabled;
+
+    /**
+     * Sub resolution levels cache (used when the file does not provide them)
+     */
+    protected PyramidCache pyramidCache;
+    protected int pyramidCacheSeries;
 
     /**
      * internal resolution levels
@@ -661,7 +797,10 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
 
         originalMetadata = false;
         groupFiles = true;
+        pyramidCacheEnabled = GeneralPreferences.getPyramidCache();
         resolutions = null;
+        pyramidCache = null;
+        pyramidCacheSeries = -1;
         openedPath = null;
         openFlags = 0;
     }
@@ -770,6 +909,27 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         groupFiles = value;
     }
 
+    /**
+     * When set to <code>true</code> the importer will build and store on disk the missing sub resolution levels of
+     * large images so they are computed only once.
+     * 
+     * @see #setPyramidCacheEnabled(boolean)
+     */
+    public boolean isPyramidCacheEnabled()
+    {
+        return pyramidCacheEnabled;
+    }
+
+    /**
+     * When set to <code>true</code> the importer will build and store on disk the missing sub resolution levels of
+     * large images (see {@link #PYRAMID_MIN_PLANE_SIZE}) so they are computed only once instead of down scaling
+     * original data on each {@link #getImage(int, int, Rectangle, int, int, int)} call.
+     */
+    public void setPyramidCacheEnabled(boolean value)
+    {
+        pyramidCacheEnabled = value;
+    }
+
     @Override
     public List<FileFilter> getFileFilters()
     {
@@ -871,6 +1031,7 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
             openFlags = flags;
             // need to update resolution levels
             resolutions = null;
+            releasePyramidCache();
 
             return true;
         }
@@ -887,6 +1048,7 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() != null)
         {
             openedPath = null;
+            releasePyramidCache();
 
             synchronized (readersPool)
             {
@@ -1019,6 +1181,24 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         }
     }
 
+    /**
+     * Returns a reader set on the specified series and full resolution level.<br>
+     * Unlike {@link #prepareReader(int, int)} the shared reader state is not modified so it can be used while other
+     * read operations are occurring.<br>
+     * Any obtained reader should be released using {@link #releaseReader(IFormatReader)}
+     */
+    protected IFormatReader getReader(int series) throws FormatException, IOException
+    {
+        final IFormatReader result = getReader();
+
+        if (result.getSeries() != series)
+            result.setSeries(series);
+        if (result.getResolution() != 0)
+            result.setResolution(0);
+
+        return result;
+    }
+
     /**
      * Release the reader obtained through {@link #getReader()} to the reader pool.
      * 
@@ -1283,6 +1463,15 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        // sub resolution not available in the file ? --> try to use the pyramid cache
+        if ((resolution > 0) && pyramidCacheEnabled && !isResolutionAvailable(series, resolution))
+        {
+            final IcyBufferedImage image = getImageFromPyramid(series, resolution, rectangle, z, t, c);
+
+            if (image != null)
+                return image.getDataXY(0);
+        }
+
         try
         {
             // prepare reader and get down scale factor
@@ -1323,6 +1512,15 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        // sub resolution not available in the file ? --> try to use the pyramid cache
+        if ((resolution > 0) && pyramidCacheEnabled && !isResolutionAvailable(series, resolution))
+        {
+            final IcyBufferedImage result = getImageFromPyramid(series, resolution, rectangle, z, t, c);
+
+            if (result != null)
+                return result;
+        }
+
         try
         {
             // prepare reader and get down scale factor if wanted resolution is not available
@@ -1410,6 +1608,128 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         return new LociTilePixelsReader(series, resolution, region, z, t, c, tileW, tileH, listener).result;
     }
 
+    /**
+     * Returns the pyramid cache for the specified series or <code>null</code> if the image is not large enough to use
+     * it (or if the cache cannot be created).
+     */
+    protected synchronized PyramidCache getPyramidCache(int series) throws UnsupportedFormatException, IOException
+    {
+        if ((pyramidCache != null) && (pyramidCacheSeries == series))
+            return pyramidCache;
+
+        // series changed --> release previous one
+        releasePyramidCache();
+
+        final OMEXMLMetadata meta = getOMEXMLMetaData();
+        final int sizeX = MetaDataUtil.getSizeX(meta, series);
+        final int sizeY = MetaDataUtil.getSizeY(meta, series);
+
+        // no need to cache sub resolutions of small image
+        if (((long) sizeX * (long) sizeY) < PYRAMID_MIN_PLANE_SIZE)
+            return null;
+
+        final String root = getPyramidCacheRoot();
+        final PyramidCache result = PyramidCache.open(root + "/" + PyramidCache.getFolderName(getOpened(), series),
+                sizeX, sizeY, MetaDataUtil.getSizeC(meta, series), MetaDataUtil.getDataType(meta, series));
+
+        if (!result.isEnabled())
+        {
+            result.release();
+            return null;
+        }
+
+        // limit disk space used by pyramid caches
+        PyramidCache.cleanup(root, GeneralPreferences.getPyramidCacheSize() * 1024L * 1024L);
+
+        pyramidCache = result;
+        pyramidCacheSeries = series;
+
+        return result;
+    }
+
+    /**
+     * Release the current pyramid cache (if any)
+     */
+    protected synchronized void releasePyramidCache()
+    {
+        if (pyramidCache != null)
+            pyramidCache.release();
+
+        pyramidCache = null;
+        pyramidCacheSeries = -1;
+    }
+
+    /**
+     * Returns the image at the specified sub resolution level from the pyramid cache (missing levels are built first)
+     * or <code>null</code> if the pyramid cache cannot be used.
+     */
+    protected IcyBufferedImage getImageFromPyramid(int series, int resolution, Rectangle rectangle, int z, int t,
+            int c) throws UnsupportedFormatException, IOException
+    {
+        final PyramidCache cache = getPyramidCache(series);
+
+        if (cache == null)
+            return null;
+
+        try
+        {
+            // level not yet built ?
+            if (!cache.isLevelAvailable(resolution, z, t))
+            {
+                // avoid concurrent build of the same level
+                synchronized (cache)
+                {
+                    // check again, it may have been built in the meantime
+                    if (!cache.isLevelAvailable(resolution, z, t))
+                    {
+                        new LociPyramidBuilder(cache, series, resolution, z, t);
+
+                        // cache grown, limit disk space used by pyramid caches
+                        PyramidCache.cleanup(getPyramidCacheRoot(),
+                                GeneralPreferences.getPyramidCacheSize() * 1024L * 1024L);
+                    }
+                }
+            }
+
+            Rectangle region = new Rectangle(cache.getSizeX(resolution), cache.getSizeY(resolution));
+            // adapt region to wanted resolution
+            if (rectangle != null)
+                region = region.intersection(new Rectangle(rectangle.x >> resolution, rectangle.y >> resolution,
+                        rectangle.width >> resolution, rectangle.height >> resolution));
+
+            final Object[] data = cache.getRegion(resolution, region, z, t);
+            final boolean signed = cache.getDataType().isSigned();
+
+            if (c == -1)
+                return new IcyBufferedImage(region.width, region.height, data, signed);
+
+            return new IcyBufferedImage(region.width, region.height, data[c], signed);
+        }
+        catch (InterruptedException e)
+        {
+            throw new ClosedByInterruptException();
+        }
+        catch (IOException e)
+        {
+            // interrupted --> don't try anything else
+            if (e instanceof ClosedByInterruptException)
+                throw e;
+
+            // cannot use pyramid cache --> original data will be down scaled instead
+            IcyExceptionHandler.showErrorMessage(e, false, false);
+
+            return null;
+        }
+    }
+
+    /**
+     * Returns the folder containing all pyramid caches
+     */
+    protected static String getPyramidCacheRoot()
+    {
+        return ApplicationPreferences.getCachePath() + "/icy_pyramid";
+    }
+
     /**
      * Load a thumbnail version of the image located at (Z, T) position from the specified
      * {@link IFormatReader} and
@@ -0,0 +1,490 @@
+package plugins.kernel.roi.descriptor.intensity;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import icy.image.IcyBufferedImage;
+import icy.roi.BooleanMask2D;
+import icy.roi.ROI;
+import icy.sequence.Sequence;
+import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.rectangle.Rectangle5D;
+import plugins.kernel.roi.descriptor.intensity.ROIIntensityDescriptorsPlugin.IntensityDescriptorInfos;
+
+/**
+ * Intensity statistics (min, max, sum, mean and standard deviation) computation engine for ROI.<br>
+ * Statistics are computed directly from the image primitive data arrays using the ROI {@link BooleanMask2D} rows: each
+ * row is processed by runs of contiguous pixels so there is no per pixel virtual call nor boxing. Planes (Z, T, C) are
+ * processed in parallel and partial results are merged using the pairwise (Chan et al.) formula so the variance stays
+ * numerically stable even for large pixel count.
+ *
+ * @author Stephane
+ */
+public class ROIIntensityStatistics
+{
+    /**
+     * Partial statistics (count, min, max, sum, mean and sum of squared deviation from the mean)
+     */
+    static class Statistics
+    {
+        long count;
+        double min;
+        double max;
+        double sum;
+        double mean;
+        double m2;
+
+        Statistics()
+        {
+            super();
+
+            count = 0L;
+            min = Double.MAX_VALUE;
+            max = -Double.MAX_VALUE;
+            sum = 0d;
+            mean = 0d;
+            m2 = 0d;
+        }
+
+        /**
+         * Merge the specified run statistics (count, min, max, sum and m2 around the run mean)
+         */
+        void add(long n, double runMin, double runMax, double runSum, double runM2)
+        {
+            if (n == 0L)
+                return;
+
+            if (runMin < min)
+                min = runMin;
+            if (runMax > max)
+                max = runMax;
+
+            final double runMean = runSum / n;
+
+            if (count == 0L)
+            {
+                mean = runMean;
+                m2 = runM2;
+            }
+            else
+            {
+                final long total = count + n;
+                final double delta = runMean - mean;
+
+                mean += (delta * n) / total;
+                m2 += runM2 + (((delta * delta) * count) * n) / total;
+            }
+
+            count += n;
+            sum += runSum;
+        }
+
+        void add(Statistics stats)
+        {
+            add(stats.count, stats.min, stats.max, stats.sum, stats.m2);
+        }
+    }
+
+    /**
+     * Fork / join task computing the statistics of a list of planes
+     */
+    private static class StatisticsTask extends RecursiveTask<Statistics>
+    {
+        private static final long serialVersionUID = -1532541236484957301L;
+
+        final Sequence sequence;
+        final ROI roi;
+        final boolean inclusive;
+        final List<int[]> planes;
+        final BooleanMask2D fixedMask;
+
+        StatisticsTask(Sequence sequence, ROI roi, boolean inclusive, List<int[]> planes, BooleanMask2D fixedMask)
+        {
+            super();
+
+            this.sequence = sequence;
+            this.roi = roi;
+            this.inclusive = inclusive;
+            this.planes = planes;
+            this.fixedMask = fixedMask;
+        }
+
+        @Override
+        protected Statistics compute()
+        {
+            // single plane --> direct computation
+            if (planes.size() == 1)
+            {
+                final int[] pos = planes.get(0);
+                final int z = pos[0];
+                final int t = pos[1];
+                final int c = pos[2];
+                final BooleanMask2D mask;
+
+                if (fixedMask != null)
+                    mask = fixedMask;
+                else
+                    mask = getMask(roi, z, t, c, inclusive);
+
+                final Statistics result = new Statistics();
+
+                accumulate(sequence.getImage(t, z), c, mask, result);
+
+                return result;
+            }
+
+            final int half = planes.size() / 2;
+            final StatisticsTask left = new StatisticsTask(sequence, roi, inclusive, planes.subList(0, half),
+                    fixedMask);
+            final StatisticsTask right = new StatisticsTask(sequence, roi, inclusive,
+                    planes.subList(half, planes.size()), fixedMask);
+
+            left.fork();
+            final Statistics result = right.compute();
+            result.add(left.join());
+
+            return result;
+        }
+    }
+
+    /**
+     * Returns the 2D mask of the ROI for the specified plane position (same rules than SequenceDataIterator)
+     */
+    static BooleanMask2D getMask(ROI roi, int z, int t, int c, boolean inclusive)
+    {
+        switch (roi.getDimension())
+        {
+            case 2:
+                // ignore Z, T and C roi informations (wanted for fixed Z, T and C positions)
+                return roi.getBooleanMask2D(-1, -1, -1, inclusive);
+
+            case 3:
+                // ignore T and C roi informations (wanted for fixed T and C positions)
+                return roi.getBooleanMask2D(z, -1, -1, inclusive);
+
+            case 4:
+                // ignore C roi information (wanted for fixed C position)
+                return roi.getBooleanMask2D(z, t, -1, inclusive);
+
+            // assume 5D
+            default:
+                return roi.getBooleanMask2D(z, t, c, inclusive);
+        }
+    }
+
+    /**
+     * Compute the intensity statistics of the specified ROI on the given Sequence.
+     *
+     * @param roi
+     *        the ROI on which we want to compute the intensity statistics
+     * @param sequence
+     *        the Sequence used to compute the intensity statistics
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels in the ROI are included.
+     */
+    public static IntensityDescriptorInfos compute(ROI roi, Sequence sequence, boolean inclusive)
+    {
+        final IntensityDescriptorInfos result = new IntensityDescriptorInfos();
+        final Statistics stats = computeStatistics(roi, sequence, inclusive);
+
+        if (stats.count > 0L)
+        {
+            result.min = stats.min;
+            result.mean = stats.mean;
+            result.max = stats.max;
+            result.sum = stats.sum;
+            result.deviation = Math.sqrt(stats.m2 / stats.count);
+        }
+        else
+        {
+            result.min = 0d;
+            result.mean = 0d;
+            result.max = 0d;
+            result.sum = 0d;
+            result.deviation = 0d;
+        }
+
+        return result;
+    }
+
+    static Statistics computeStatistics(ROI roi, Sequence sequence, boolean inclusive)
+    {
+        // get the planes to process
+        final Rectangle5D.Integer bounds = (Rectangle5D.Integer) sequence.getBounds5D()
+                .createIntersection(roi.getBounds5D());
+        final List<int[]> planes = new ArrayList<int[]>();
+
+        for (int t = bounds.t; t < bounds.t + bounds.sizeT; t++)
+            for (int z = bounds.z; z < bounds.z + bounds.sizeZ; z++)
+                for (int c = bounds.c; c < bounds.c + bounds.sizeC; c++)
+                    planes.add(new int[] {z, t, c});
+
+        if (planes.isEmpty())
+            return new Statistics();
+
+        // 2D ROI --> same mask for all planes
+        final BooleanMask2D fixedMask;
+        if (roi.getDimension() == 2)
+            fixedMask = roi.getBooleanMask2D(-1, -1, -1, inclusive);
+        else
+            fixedMask = null;
+
+        return ThreadUtil.forkJoinInvoke(new StatisticsTask(sequence, roi, inclusive, planes, fixedMask));
+    }
+
+    /**
+     * Accumulate statistics of the image pixels (channel c) contained in the mask
+     */
+    static void accumulate(IcyBufferedImage image, int c, BooleanMask2D mask, Statistics stats)
+    {
+        if ((image == null) || (mask == null) || mask.isEmpty())
+            return;
+
+        final int sizeX = image.getSizeX();
+        final Rectangle region = mask.bounds.intersection(new Rectangle(sizeX, image.getSizeY()));
+
+        if (region.isEmpty())
+            return;
+
+        final Object data = image.getDataXY(c);
+        final DataType dataType = image.getDataType_();
+        final boolean[] maskData = mask.mask;
+        final int maskW = mask.bounds.width;
+        final int endX = region.x + region.width;
+
+        for (int y = region.y; y < region.y + region.height; y++)
+        {
+            int maskOff = ((y - mask.bounds.y) * maskW) - mask.bounds.x;
+            final int dataOff = y * sizeX;
+            int x = region.x;
+
+            while (x < endX)
+            {
+                // find start of run
+                while ((x < endX) && !maskData[maskOff + x])
+                    x++;
+                if (x >= endX)
+                    break;
+
+                final int start = x;
+
+                // find end of run
+                while ((x < endX) && maskData[maskOff + x])
+                    x++;
+
+                accumulateRun(data, dataType, dataOff + start, x - start, stats);
+            }
+        }
+    }
+
+    /**
+     * Accumulate statistics of a run of contiguous pixels (two passes on the run to get a stable variance)
+     */
+    static void accumulateRun(Object data, DataType dataType, int offset, int length, Statistics stats)
+    {
+        final int end = offset + length;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum = 0d;
+        double m2 = 0d;
+        double mean;
+
+        switch (dataType)
+        {
+            case UBYTE:
+            {
+                final byte[] array = (byte[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i] & 0xFF;
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = (array[i] & 0xFF) - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case BYTE:
+            {
+                final byte[] array = (byte[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i];
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = array[i] - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case USHORT:
+            {
+                final short[] array = (short[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i] & 0xFFFF;
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = (array[i] & 0xFFFF) - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case SHORT:
+            {
+                final short[] array = (short[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i];
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = array[i] - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case UINT:
+            {
+                final int[] array = (int[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i] & 0xFFFFFFFFL;
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = (array[i] & 0xFFFFFFFFL) - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case INT:
+            {
+                final int[] array = (int[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i];
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = array[i] - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case FLOAT:
+            {
+                final float[] array = (float[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i];
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = array[i] - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            case DOUBLE:
+            {
+                final double[] array = (double[]) data;
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = array[i];
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = array[i] - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+
+            default:
+            {
+                // long data and others --> generic (slower) access
+                for (int i = offset; i < end; i++)
+                {
+                    final double v = Array1DUtil.getValue(data, i, dataType);
+                    if (v < min)
+                        min = v;
+                    if (v > max)
+                        max = v;
+                    sum += v;
+                }
+                mean = sum / length;
+                for (int i = offset; i < end; i++)
+                {
+                    final double d = Array1DUtil.getValue(data, i, dataType) - mean;
+                    m2 += d * d;
+                }
+                break;
+            }
+        }
+
+        stats.add(length, min, max, sum, m2);
+    }
+}
@@ -47,8 +47,10 @@ import icy.gui.inspector.RoisPanel;
 import icy.image.ImageUtil;
 import icy.main.Icy;
 import icy.painter.VtkPainter;
+import icy.preferences.GeneralPreferences;
 import icy.resource.ResourceUtil;
 import icy.roi.BooleanMask2D;
+import icy.roi.BooleanMaskCodec;
 import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROIEvent;
@@ -1037,6 +1039,44 @@ public class ROI2DArea extends ROI2D
     public static final String ID_BOUNDS_H = "boundsH";
     // protected static final String ID_BOOLMASK_LEN = "boolMaskLen";
     public static final String ID_BOOLMASK_DATA = "boolMaskData";
+    public static final String ID_BOOLMASK_RUNS = "boolMaskRuns";
+
+    /**
+     * Mask encoded in the compact run length format with the bounds it has been computed from
+     */
+    protected static class EncodedMask
+    {
+        final Rectangle bounds;
+        final String runs;
+
+        EncodedMask(Rectangle bounds, String runs)
+        {
+            super();
+
+            this.bounds = bounds;
+            this.runs = runs;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the mask is saved in the compact run length format (see {@link BooleanMaskCodec})
+     * when saving to XML, <code>false</code> if the legacy format is used (default).<br>
+     * This is defined by the {@link GeneralPreferences#getCompactROIMask()} preference.
+     */
+    public static boolean isCompactXMLFormat()
+    {
+        return GeneralPreferences.getCompactROIMask();
+    }
+
+    /**
+     * Set to <code>true</code> to save the mask in the compact run length format (see {@link BooleanMaskCodec}) when
+     * saving to XML, <code>false</code> to use the legacy format (readable by older version).<br>
+     * Both formats are always supported for loading.
+     */
+    public static void setCompactXMLFormat(boolean value)
+    {
+        GeneralPreferences.setCompactROIMask(value);
+    }
 
     /**
      * image containing the mask
@@ -1055,6 +1095,7 @@ public class ROI2DArea extends ROI2D
     protected final byte[] blue;
     protected IndexColorModel colorModel;
     protected byte[] maskData; // 0 = false, 1 = true
+    protected CachedReference<EncodedMask> cachedEncodedMask;
     protected double translateX, translateY;
     protected Color previousColor;
     protected boolean boundsNeedUpdate;
@@ -2574,8 +2615,14 @@ public class ROI2DArea extends ROI2D
             rect.width = XMLUtil.getElementIntValue(node, ID_BOUNDS_W, 0);
             rect.height = XMLUtil.getElementIntValue(node, ID_BOUNDS_H, 0);
 
-            // retrieve mask data
-            final byte[] data = XMLUtil.getElementBytesValue(node, ID_BOOLMASK_DATA, new byte[0]);
+            // retrieve mask data (compact format first)
+            final String runs = XMLUtil.getElementValue(node, ID_BOOLMASK_RUNS, null);
+            final byte[] data;
+
+            if (runs != null)
+                data = BooleanMaskCodec.decode(rect, runs);
+            else
+                data = XMLUtil.getElementBytesValue(node, ID_BOOLMASK_DATA, new byte[0]);
 
             // an error occurred while retrieved XML data
             if (data == null)
@@ -2592,12 +2639,84 @@ public class ROI2DArea extends ROI2D
         return true;
     }
 
+    /**
+     * Returns the mask encoded in the compact run length format (see {@link BooleanMaskCodec}).<br>
+     * The result is cached until the ROI is modified so this method can be called from several threads to prepare
+     * XML saving in parallel.
+     */
+    public String getEncodedMask()
+    {
+        final EncodedMask result = getEncodedMaskInternal();
+
+        if (result == null)
+            return null;
+
+        return result.runs;
+    }
+
+    /**
+     * Returns the mask encoded in the compact run length format together with the bounds it has been computed from
+     * (same snapshot) or <code>null</code> if the mask is not valid.
+     */
+    protected EncodedMask getEncodedMaskInternal()
+    {
+        final long modCount = getModificationCount();
+        final CachedReference<EncodedMask> ref = cachedEncodedMask;
+        EncodedMask result = (ref != null) ? ref.get(modCount) : null;
+
+        if (result == null)
+        {
+            final byte[] data;
+            final Rectangle bnds;
+
+            synchronized (maskData)
+            {
+                // need to duplicate to avoid array change during encoding
+                data = maskData.clone();
+                bnds = new Rectangle(bounds);
+            }
+
+            final int len = bnds.width * bnds.height;
+
+            // invalid --> return null
+            if ((len > 0) && (len != data.length))
+                return null;
+
+            result = new EncodedMask(bnds, BooleanMaskCodec.encode(bnds, data));
+            cachedEncodedMask = new CachedReference<EncodedMask>(result, modCount);
+        }
+
+        return result;
+    }
+
     @Override
     public boolean saveToXML(Node node)
     {
         if (!super.saveToXML(node))
             return false;
 
+        if (isCompactXMLFormat())
+        {
+            // bounds and mask data from the same snapshot
+            final EncodedMask encoded = getEncodedMaskInternal();
+
+            // invalid --> return false
+            if (encoded == null)
+                return false;
+
+            final Rectangle bnds = encoded.bounds;
+
+            // retrieve mask bounds
+            XMLUtil.setElementIntValue(node, ID_BOUNDS_X, bnds.x);
+            XMLUtil.setElementIntValue(node, ID_BOUNDS_Y, bnds.y);
+            XMLUtil.setElementIntValue(node, ID_BOUNDS_W, bnds.width);
+            XMLUtil.setElementIntValue(node, ID_BOUNDS_H, bnds.height);
+            // set mask data as run length encoded string
+            XMLUtil.setElementValue(node, ID_BOOLMASK_RUNS, encoded.runs);
+
+            return true;
+        }
+
         final byte[] data;
         final Rectangle bnds;
 
@@ -23,18 +23,16 @@ import icy.painter.LineAnchor2D;
 import icy.resource.ResourceUtil;
 import icy.roi.ROI;
 import icy.type.geom.Polyline2D;
+import icy.type.geom.ShapeRasterizer;
 import icy.type.point.Point2DUtil;
 import icy.type.point.Point5D;
 import icy.util.XMLUtil;
 
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -318,23 +316,8 @@ public class ROI2DPolyLine extends ROI2DShape
         if (!inclusive)
             return new boolean[w * h];
 
-        final BufferedImage maskImg = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        final Graphics2D g = maskImg.createGraphics();
-
-        // draw shape in image
-        g.setColor(Color.white);
-        g.translate(-x, -y);
-        g.draw(shape);
-        g.dispose();
-
-        // use the image to define the mask
-        final byte[] maskData = ((DataBufferByte) maskImg.getRaster().getDataBuffer()).getData();
-        final boolean[] result = new boolean[w * h];
-
-        for (int i = 0; i < result.length; i++)
-            result[i] = (maskData[i] != 0);
-
-        return result;
+        // polyline is an open path so only pixels intersected by the line are set
+        return ShapeRasterizer.getBooleanMask(shape, x + 0.5d, y + 0.5d, w, h, true);
     }
 
     @Override
@@ -61,6 +61,7 @@ import icy.roi.edit.Point2DMovedROIEdit;
 import icy.roi.edit.Point2DRemovedROIEdit;
 import icy.sequence.Sequence;
 import icy.system.thread.ThreadUtil;
+import icy.type.geom.ShapeRasterizer;
 import icy.type.point.Point2DUtil;
 import icy.type.point.Point5D;
 import icy.util.EventUtil;
@@ -1660,6 +1661,12 @@ public abstract class ROI2DShape extends ROI2D implements Shape
         if (inclusive && (width == 1) && (height == 1) && getPosition().equals(new Point(x, y)))
             return new boolean[] {true};
 
+        // use the scanline rasterizer whenever possible (faster and exact)
+        final boolean[] mask = ShapeRasterizer.getBooleanMask(shape, x, y, width, height, inclusive);
+        if (mask != null)
+            return mask;
+
+        // arbitrary shape (containing curves) --> use Java2D rendering
         final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
         final Graphics2D g = img.createGraphics();
 
@@ -48,6 +48,9 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import org.w3c.dom.Node;
 
 import plugins.kernel.canvas.VtkCanvas;
 import plugins.kernel.roi.roi2d.ROI2DArea;
@@ -65,6 +68,40 @@ import vtk.vtkProp;
  */
 public class ROI3DArea extends ROI3DStack<ROI2DArea>
 {
+    /**
+     * Encode slices mask in parallel (encoded masks are cached in slices)
+     */
+    private static class EncodeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 6113871426392740542L;
+
+        final ROI2DArea[] areas;
+        final int from;
+        final int to;
+
+        EncodeTask(ROI2DArea[] areas, int from, int to)
+        {
+            super();
+
+            this.areas = areas;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) == 1)
+                areas[from].getEncodedMask();
+            else
+            {
+                final int mid = (from + to) / 2;
+
+                invokeAll(new EncodeTask(areas, from, mid), new EncodeTask(areas, mid, to));
+            }
+        }
+    }
+
     public class ROI3DAreaPainter extends ROI3DStackPainter implements Runnable
     {
         // VTK 3D objects
@@ -1178,4 +1215,24 @@ public class ROI3DArea extends ROI3DStack<ROI2DArea>
 
         super.onChanged(object);
     }
+
+    @Override
+    public boolean saveToXML(Node node)
+    {
+        // encode slices in parallel first so slices XML saving just reuse the cached result
+        if (ROI2DArea.isCompactXMLFormat())
+        {
+            final ROI2DArea[] areas;
+
+            synchronized (slices)
+            {
+                areas = slices.values().toArray(new ROI2DArea[slices.size()]);
+            }
+
+            if (areas.length > 1)
+                ThreadUtil.forkJoinInvoke(new EncodeTask(areas, 0, areas.length));
+        }
+
+        return super.saveToXML(node);
+    }
 }